@@ -0,0 +1,146 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import com.example.demo.HomeController.FavoriteRow;
+import com.example.demo.HomeController.FoodRow;
+import com.example.demo.HomeController.IntakeRow;
+import com.example.demo.HomeController.MakerRow;
+import com.example.demo.HomeController.NutritionRow;
+
+/*
+ * 	ベンチマーク用のデータ（DBから取得した形と同じ列・型で作る）
+ */
+final class BenchData {
+
+	static final LocalDate DATE = LocalDate.of(2026, 1, 27);
+
+	private BenchData() {
+	}
+
+	// 行をRowMapperで変換する（DBから読んだときと同じ変換を通す）
+	static <T> List<T> map(List<Map<String, Object>> rows, RowMapper<T> mapper) {
+		List<T> mapped = new ArrayList<>(rows.size());
+		try (ResultSet rs = StubResultSet.of(rows)) {
+			while (rs.next()) {
+				mapped.add(mapper.mapRow(rs, mapped.size()));
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+		return mapped;
+	}
+
+	// getDailyRecordsの結果行（intake / intake_onceを交互に）
+	static List<Map<String, Object>> intakeRows(int count) {
+		List<Map<String, Object>> rows = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			boolean once = (i % 4 == 3);
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("intake_id", 1000L + i);
+			row.put("intake_once_id", once ? 1000L + i : 0L);
+			row.put("eaten_date", DATE.toString());
+			row.put("eaten_time", LocalTime.of(7, 0).plusMinutes(i * 7L % 900).toString() + ":00");
+			row.put("qty", new BigDecimal(i % 3 == 0 ? "1.5" : "1.0"));
+			row.put("food_name", "食品" + i);
+			row.put("class_name", once ? "簡易登録" : "普通");
+			row.put("calorie", 80 + i % 250);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	static List<IntakeRow> intakeRecords(int count) {
+		return map(intakeRows(count), IntakeRepository.INTAKE_ROW_MAPPER);
+	}
+
+	// getFavoriteListの結果行
+	static List<Map<String, Object>> favoriteRows(int count) {
+		List<Map<String, Object>> rows = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Map<String, Object> fav = new LinkedHashMap<>();
+			fav.put("food_name", "お気に入り食品" + i);
+			fav.put("class_name", "普通");
+			fav.put("favorite_id", 5000 + i);
+			fav.put("nutrition_id", 9000 + i);
+			rows.add(fav);
+		}
+		return rows;
+	}
+
+	static List<FavoriteRow> favorites(int count) {
+		return map(favoriteRows(count), IntakeRepository.FAVORITE_ROW_MAPPER);
+	}
+
+	// カタログ（メーカー10件あたり食品・食品1件あたり栄養情報3件）
+	static List<Map<String, Object>> makerRows(int foods) {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int m = 0; m < Math.max(1, foods / 10); m++) {
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("maker_id", 100 + m);
+			row.put("maker_name", String.format("メーカー%04d", m));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	static List<Map<String, Object>> foodRows(int foods) {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		int makers = Math.max(1, foods / 10);
+		for (int f = 0; f < foods; f++) {
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("food_id", 1000 + f);
+			row.put("food_name", String.format("食品%05d", f));
+			row.put("maker_id", 100 + f % makers);
+			row.put("maker_name", String.format("メーカー%04d", f % makers));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	static List<Map<String, Object>> nutritionRows(int foods) {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		int makers = Math.max(1, foods / 10);
+		String[] classes = { "大", "普通", "小" };
+		for (int f = 0; f < foods; f++) {
+			for (int c = 0; c < classes.length; c++) {
+				Map<String, Object> row = new LinkedHashMap<>();
+				row.put("nutrition_id", 10000 + f * 3 + c);
+				row.put("class_name", classes[c]);
+				row.put("calorie", 100 + c * 50);
+				row.put("protein", new BigDecimal("2.5"));
+				row.put("lipid", new BigDecimal("3.0"));
+				row.put("carbo", new BigDecimal("20.0"));
+				row.put("salt", new BigDecimal("0.25"));
+				row.put("food_id", 1000 + f);
+				row.put("food_name", String.format("食品%05d", f));
+				row.put("maker_id", 100 + f % makers);
+				row.put("maker_name", String.format("メーカー%04d", f % makers));
+				rows.add(row);
+			}
+		}
+		return rows;
+	}
+
+	static List<MakerRow> makers(int foods) {
+		return map(makerRows(foods), IntakeRepository.MAKER_ROW_MAPPER);
+	}
+
+	static List<FoodRow> foods(int foods) {
+		return map(foodRows(foods), IntakeRepository.FOOD_ROW_MAPPER);
+	}
+
+	static List<NutritionRow> nutritions(int foods) {
+		return map(nutritionRows(foods), IntakeRepository.NUTRITION_ROW_MAPPER);
+	}
+}
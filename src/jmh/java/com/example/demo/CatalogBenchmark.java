@@ -0,0 +1,56 @@
+package com.example.demo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.demo.HomeController.FoodRow;
+import com.example.demo.HomeController.MakerRow;
+import com.example.demo.HomeController.NutritionRow;
+
+/*
+ * 	カタログ（メーカー・食品・栄養情報）のスナップショット作成と参照
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CatalogBenchmark {
+
+	// 食品の件数（メーカーは1/10、栄養情報は3倍）
+	@Param({ "10", "100", "1000" })
+	public int catalogSize;
+
+	private List<MakerRow> makers;
+	private List<FoodRow> foods;
+	private List<NutritionRow> nutritions;
+	private CatalogSnapshot snapshot;
+
+	@Setup
+	public void setup() {
+		makers = BenchData.makers(catalogSize);
+		foods = BenchData.foods(catalogSize);
+		nutritions = BenchData.nutritions(catalogSize);
+		snapshot = new CatalogSnapshot(0, makers, foods, nutritions);
+	}
+
+	@Benchmark
+	public CatalogSnapshot build() {
+		return new CatalogSnapshot(0, makers, foods, nutritions);
+	}
+
+	@Benchmark
+	public Object lookup() {
+		long foodId = 1000 + catalogSize / 2;
+		snapshot.getHeaderInfo(foodId);
+		snapshot.getNutritionList(foodId);
+		return snapshot.getNutritionInfo(10000 + (catalogSize / 2) * 3L);
+	}
+}
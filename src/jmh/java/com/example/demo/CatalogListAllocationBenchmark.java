@@ -0,0 +1,80 @@
+package com.example.demo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+
+import com.example.demo.HomeController.FoodRow;
+import com.example.demo.HomeController.MakerRow;
+import com.example.demo.HomeController.NutritionRow;
+
+/*
+ * 	カタログ一覧（メーカー・食品・栄養情報）の行変換で割り当てるメモリ量
+ * 	・xxxAsMap：変更前のqueryForList（ColumnMapRowMapperで1行ごとにMapを作る）
+ * 	・xxxAsRecord：変更後の専用RowMapper（1行ごとにrecordを作る）
+ * 	・bytes/opは -prof gc の gc.alloc.rate.norm で比較する
+ * 	　./mvnw -Pjmh test-compile exec:exec -Djmh.args="CatalogListAllocation -prof gc -f 1 -wi 3 -i 5"
+ * 	・StubResultSetの呼び出し自体の割り当ては両方に同じだけ含まれる（差を見る）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CatalogListAllocationBenchmark {
+
+	// 食品の件数（メーカーは1/10、栄養情報は3倍）
+	@Param({ "100", "1000" })
+	public int catalogSize;
+
+	private final ColumnMapRowMapper columnMapRowMapper = new ColumnMapRowMapper();
+
+	private List<Map<String, Object>> makerRows;
+	private List<Map<String, Object>> foodRows;
+	private List<Map<String, Object>> nutritionRows;
+
+	@Setup
+	public void setup() {
+		makerRows = BenchData.makerRows(catalogSize);
+		foodRows = BenchData.foodRows(catalogSize);
+		nutritionRows = BenchData.nutritionRows(catalogSize);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> makersAsMap() {
+		return BenchData.map(makerRows, columnMapRowMapper);
+	}
+
+	@Benchmark
+	public List<MakerRow> makersAsRecord() {
+		return BenchData.map(makerRows, IntakeRepository.MAKER_ROW_MAPPER);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> foodsAsMap() {
+		return BenchData.map(foodRows, columnMapRowMapper);
+	}
+
+	@Benchmark
+	public List<FoodRow> foodsAsRecord() {
+		return BenchData.map(foodRows, IntakeRepository.FOOD_ROW_MAPPER);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> nutritionsAsMap() {
+		return BenchData.map(nutritionRows, columnMapRowMapper);
+	}
+
+	@Benchmark
+	public List<NutritionRow> nutritionsAsRecord() {
+		return BenchData.map(nutritionRows, IntakeRepository.NUTRITION_ROW_MAPPER);
+	}
+}
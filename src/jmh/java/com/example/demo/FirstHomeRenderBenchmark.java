@@ -0,0 +1,82 @@
+package com.example.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/*
+ * 	起動から最初のホーム画面（/）の表示が成功するまでの時間（コールドスタート）
+ * 	・JVMを起動し直した直後に1回だけ測る（forkごとに1回。JITもクラスの読み込みも初回の状態）
+ * 	・アプリと同じ設定（DBはspring.datasource.*）で起動し、最初のアクセスで作られたユーザーは最後に削除する
+ * 	・aot=trueは ./mvnw -Paot,jmh ... でAOTの定義を生成したときだけ指定できる
+ * 	・CDSアーカイブの効果を測るときは -jvmArgsAppend -XX:SharedArchiveFile=... を付ける
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(5)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class FirstHomeRenderBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean lazy;
+
+	@Param({ "false" })
+	public boolean aot;
+
+	private ConfigurableApplicationContext context;
+	private String userId;
+
+	@Benchmark
+	public int startAndRenderHome() throws Exception {
+		// AOTの定義を使うかは起動前にシステムプロパティで決まる
+		System.setProperty("spring.aot.enabled", Boolean.toString(aot));
+		context = new SpringApplicationBuilder(CalorieCheckerApplication.class)
+				.properties("server.port=0", "spring.main.banner-mode=off",
+						"spring.main.lazy-initialization=" + lazy)
+				.run();
+		String port = context.getEnvironment().getProperty("local.server.port");
+
+		HttpResponse<String> res = HttpClient.newHttpClient().send(
+				HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/")).build(),
+				HttpResponse.BodyHandlers.ofString());
+		if (res.statusCode() != 200) {
+			throw new IllegalStateException("GET / returned " + res.statusCode());
+		}
+		userId = res.headers().allValues("Set-Cookie").stream()
+				.filter(c -> c.startsWith("cc_uid="))
+				.map(c -> c.substring("cc_uid=".length(), c.indexOf(';') < 0 ? c.length() : c.indexOf(';')))
+				.findFirst().orElse(null);
+		return res.body().length();
+	}
+
+	@TearDown(Level.Iteration)
+	public void stop() {
+		if (context == null) {
+			return;
+		}
+		if (userId != null) {
+			context.getBean(JdbcTemplate.class).update("DELETE FROM users WHERE user_id = ?", userId);
+		}
+		context.close();
+	}
+}
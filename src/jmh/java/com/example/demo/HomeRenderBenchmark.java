@@ -0,0 +1,90 @@
+package com.example.demo;
+
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.Cookie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+/*
+ * 	ホーム画面の表示（コントローラー → サービス → 代替リポジトリ → Thymeleafでの描画）
+ * 	・リポジトリはメモリ上のデータを返す代替（StandInIntakeRepository）なので、SQLの実行・DBとの通信は含まない
+ * 	　（測るのはコントローラー・サービスの処理と描画だけ。行の変換はRowMappingBenchmark、SQLはSqlStats・Server-Timingで見る）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HomeRenderBenchmark {
+
+	private static final String USER_ID = "00000000-0000-0000-0000-00000000bench";
+
+	@Param({ "5", "20", "100" })
+	public int recordsPerDay;
+
+	@Param({ "0", "10", "50" })
+	public int favoritesPerUser;
+
+	@Param({ "100" })
+	public int catalogSize;
+
+	private HomeController controller;
+	private SpringTemplateEngine engine;
+	private JakartaServletWebApplication application;
+
+	@Setup
+	public void setup() {
+		StandInIntakeRepository intakeRepo = new StandInIntakeRepository(recordsPerDay, favoritesPerUser, catalogSize);
+		UserIdCache userIdCache = new UserIdCache(600, 30, 10000);
+		LastAccessBuffer lastAccessBuffer = new LastAccessBuffer(intakeRepo, Integer.MAX_VALUE, Integer.MAX_VALUE, "daily");
+		DataVersion dataVersion = new DataVersion(intakeRepo, "bench");
+		IntakeService intakeSvc = new IntakeService(intakeRepo, userIdCache, lastAccessBuffer,
+				new HistoryCache(100, 32), new FavoriteCache(100), new CatalogCache(1 << 24), dataVersion, 500, 20000);
+		controller = new HomeController(intakeSvc, null, dataVersion);
+
+		ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+		resolver.setPrefix("templates/");
+		resolver.setSuffix(".html");
+		resolver.setTemplateMode(TemplateMode.HTML);
+		resolver.setCharacterEncoding("UTF-8");
+		resolver.setCacheable(true);
+		engine = new SpringTemplateEngine();
+		engine.setTemplateResolver(resolver);
+
+		application = JakartaServletWebApplication.buildApplication(new MockServletContext());
+	}
+
+	@Benchmark
+	public String render() {
+		MockHttpServletRequest req = new MockHttpServletRequest("GET", "/");
+		req.setCookies(new Cookie("cc_uid", USER_ID));
+		MockHttpServletResponse res = new MockHttpServletResponse();
+		ExtendedModelMap model = new ExtendedModelMap();
+		model.addAttribute("appVersion", "bench");
+
+		String view = controller.home(BenchData.DATE.toString(), model, new ServletWebRequest(req, res), req, res);
+
+		WebContext context = new WebContext(application.buildExchange(req, res), Locale.JAPAN, model);
+		StringWriter out = new StringWriter(16 * 1024);
+		engine.process(view, context, out);
+		return out.toString();
+	}
+}
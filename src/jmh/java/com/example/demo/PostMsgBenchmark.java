@@ -0,0 +1,50 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.demo.HomeController.IntakeRow;
+
+/*
+ * 	ポスト用メッセージの作成（IntakeService.getPostMsg）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PostMsgBenchmark {
+
+	@Param({ "1", "10", "50" })
+	public int recordsPerDay;
+
+	private IntakeService intakeSvc;
+	private List<IntakeRow> records;
+	private LocalDate today;
+
+	@Setup
+	public void setup() {
+		// getPostMsgは他の依存を使わない
+		intakeSvc = new IntakeService(null, null, null, null, null, null, null, 500, 20000);
+		records = BenchData.intakeRecords(recordsPerDay);
+		today = BenchData.DATE;
+	}
+
+	@Benchmark
+	public String today() {
+		return intakeSvc.getPostMsg(today, BenchData.DATE, 1234, records, records.size() / 2);
+	}
+
+	@Benchmark
+	public String pastDay() {
+		return intakeSvc.getPostMsg(today.plusDays(3), BenchData.DATE, 1234, records, records.size() / 2);
+	}
+}
@@ -0,0 +1,66 @@
+package com.example.demo;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.demo.HomeController.HomeData;
+import com.example.demo.HomeController.IntakeRow;
+
+/*
+ * 	履歴行の変換（getDailyRecordsのRowMapper）と、合計カロリー・kcalTotalの計算
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RowMappingBenchmark {
+
+	@Param({ "5", "20", "100" })
+	public int recordsPerDay;
+
+	private List<Map<String, Object>> rows;
+	private List<IntakeRow> records;
+
+	@Setup
+	public void setup() {
+		rows = BenchData.intakeRows(recordsPerDay);
+		records = BenchData.intakeRecords(recordsPerDay);
+	}
+
+	@Benchmark
+	public List<IntakeRow> mapDailyRecords() throws SQLException {
+		List<IntakeRow> mapped = new ArrayList<>(rows.size());
+		try (ResultSet rs = StubResultSet.of(rows)) {
+			while (rs.next()) {
+				mapped.add(IntakeRepository.INTAKE_ROW_MAPPER.mapRow(rs, mapped.size()));
+			}
+		}
+		return mapped;
+	}
+
+	@Benchmark
+	public int kcalTotal() {
+		int sum = 0;
+		for (IntakeRow r : records) {
+			sum += r.kcalTotal();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public HomeData homeDataTotal() {
+		return HomeData.of(records, List.of());
+	}
+}
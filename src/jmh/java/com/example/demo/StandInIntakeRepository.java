@@ -0,0 +1,66 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.servlet.http.Cookie;
+
+import com.example.demo.HomeController.FavoriteRow;
+import com.example.demo.HomeController.HomeData;
+import com.example.demo.HomeController.IntakeRow;
+
+/*
+ * 	DBの代わりにメモリ上のデータを返すIntakeRepository（ベンチマーク用）
+ * 	・履歴はRowMapperを通して毎回変換する（DBから読んだときと同じ処理を通す）
+ * 	・ホーム画面・カタログの参照で使うメソッドだけを差し替える
+ */
+class StandInIntakeRepository extends IntakeRepository {
+
+	private final List<Map<String, Object>> intakeRows;
+	private final List<FavoriteRow> favorites;
+	private final int catalogFoods;
+
+	StandInIntakeRepository(int recordsPerDay, int favoritesPerUser, int catalogFoods) {
+		super(null);
+		this.intakeRows = BenchData.intakeRows(recordsPerDay);
+		this.favorites = BenchData.favorites(favoritesPerUser);
+		this.catalogFoods = catalogFoods;
+	}
+
+	@Override
+	public String chkUserId(Cookie c) {
+		return c.getValue();
+	}
+
+	@Override
+	public void registUserId(String userId) {
+	}
+
+	@Override
+	public long getDataVersion(String userId) {
+		return 0;
+	}
+
+	@Override
+	public List<IntakeRow> getDailyRecords(String userId, LocalDate eatenDate) {
+		return BenchData.map(intakeRows, INTAKE_ROW_MAPPER);
+	}
+
+	@Override
+	public List<FavoriteRow> getFavoriteList(String userId) {
+		return new ArrayList<>(favorites);
+	}
+
+	@Override
+	public HomeData getHomeData(String userId, LocalDate eatenDate, boolean withFavorites) {
+		return HomeData.of(getDailyRecords(userId, eatenDate), withFavorites ? getFavoriteList(userId) : new ArrayList<>());
+	}
+
+	@Override
+	public CatalogSnapshot getCatalogSnapshot(String userId, long version) {
+		return new CatalogSnapshot(version, BenchData.makers(catalogFoods), BenchData.foods(catalogFoods),
+				BenchData.nutritions(catalogFoods));
+	}
+}
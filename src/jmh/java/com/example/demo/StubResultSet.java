@@ -0,0 +1,68 @@
+package com.example.demo;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * 	メモリ上の行をResultSetとして見せる（RowMapperの変換だけを測るため）
+ * 	・next / getString / getLong / getInt / getDouble / getBigDecimal / getObject / wasNull / close のみ対応
+ * 	・getMetaData（列数・列名）と列番号でのgetObjectはColumnMapRowMapper（queryForList）用
+ * 	・値は保持しているオブジェクトをそのまま返す（ドライバ側の変換の割り当ては含まない）
+ */
+final class StubResultSet {
+
+	private StubResultSet() {
+	}
+
+	static ResultSet of(List<Map<String, Object>> rows) {
+		List<String> columns = rows.isEmpty() ? List.of() : List.copyOf(rows.get(0).keySet());
+		ResultSetMetaData metaData = metaData(columns);
+		int[] cursor = { -1 };
+		boolean[] wasNull = { false };
+		return (ResultSet) Proxy.newProxyInstance(
+				ResultSet.class.getClassLoader(),
+				new Class<?>[] { ResultSet.class },
+				(proxy, method, args) -> {
+					String name = method.getName();
+					switch (name) {
+					case "next":
+						return ++cursor[0] < rows.size();
+					case "close":
+						return null;
+					case "wasNull":
+						return wasNull[0];
+					case "getMetaData":
+						return metaData;
+					default:
+						break;
+					}
+					String column = (args[0] instanceof Integer index) ? columns.get(index - 1) : (String) args[0];
+					Object value = rows.get(cursor[0]).get(column);
+					wasNull[0] = (value == null);
+					return switch (name) {
+					case "getString" -> value == null ? null : value.toString();
+					case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+					case "getInt" -> value == null ? 0 : ((Number) value).intValue();
+					case "getDouble" -> value == null ? 0d : ((Number) value).doubleValue();
+					case "getBigDecimal" -> (value == null || value instanceof BigDecimal) ? value : new BigDecimal(value.toString());
+					case "getObject" -> value;
+					default -> throw new UnsupportedOperationException(name);
+					};
+				});
+	}
+
+	private static ResultSetMetaData metaData(List<String> columns) {
+		return (ResultSetMetaData) Proxy.newProxyInstance(
+				ResultSetMetaData.class.getClassLoader(),
+				new Class<?>[] { ResultSetMetaData.class },
+				(proxy, method, args) -> switch (method.getName()) {
+				case "getColumnCount" -> columns.size();
+				case "getColumnLabel", "getColumnName" -> columns.get((Integer) args[0] - 1);
+				default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
@@ -0,0 +1,118 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/*
+ * 	同時に処理するリクエスト数をDBのコネクションプールに合わせて絞るフィルター
+ * 	・許可数を超えたリクエストは待ち行列で待つ（仮想スレッドなので待っている間のコストは小さい）
+ * 	・待ち行列が上限を超えた場合、待ち時間の上限を過ぎた場合はすぐに503を返す
+ * 	　（全リクエストがgetConnectionで詰まってまとめてタイムアウトするのを防ぐ）
+ * 	・静的ファイルはDBを使わないので対象外
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionGate extends OncePerRequestFilter {
+
+	private final Semaphore permits;
+	private final int maxPermits;
+	private final int maxQueue;
+	private final long maxWaitMillis;
+
+	// 待っているリクエスト数
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder shed = new LongAdder();
+
+	public AdmissionGate(@Value("${app.admission.permits:${spring.datasource.hikari.maximumPoolSize:10}}") int maxPermits,
+			@Value("${app.admission.max-queue:200}") int maxQueue,
+			@Value("${app.admission.max-wait-ms:2000}") long maxWaitMillis) {
+		this.permits = new Semaphore(maxPermits, true);
+		this.maxPermits = maxPermits;
+		this.maxQueue = maxQueue;
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		// 拡張子付きのパス（css / 画像など）は静的ファイル
+		String uri = request.getRequestURI();
+		return uri.lastIndexOf('.') > uri.lastIndexOf('/');
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		if (!acquire()) {
+			shed.increment();
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			response.setHeader("Retry-After", "1");
+			response.setContentType("text/plain;charset=UTF-8");
+			response.getWriter().write("混み合っています。しばらくしてから再度お試しください。");
+			return;
+		}
+		admitted.increment();
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			permits.release();
+		}
+	}
+
+	// 空きがあればすぐに、無ければ待ち行列に入って待つ（待ち行列が一杯・時間切れならfalse）
+	private boolean acquire() {
+		if (permits.tryAcquire()) {
+			return true;
+		}
+		if (waiting.incrementAndGet() > maxQueue) {
+			waiting.decrementAndGet();
+			return false;
+		}
+		try {
+			return permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			waiting.decrementAndGet();
+		}
+	}
+
+	public int getInFlight() {
+		return maxPermits - permits.availablePermits();
+	}
+
+	public int getMaxPermits() {
+		return maxPermits;
+	}
+
+	public int getQueueDepth() {
+		return waiting.get();
+	}
+
+	public int getMaxQueue() {
+		return maxQueue;
+	}
+
+	public long getAdmitted() {
+		return admitted.sum();
+	}
+
+	public long getShed() {
+		return shed.sum();
+	}
+}
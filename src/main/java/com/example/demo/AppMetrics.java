@@ -0,0 +1,76 @@
+package com.example.demo;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/*
+ * 	アプリ独自の統計（/manage/statsと同じ値）をメトリクスとして公開する
+ * 	・同時処理数の制限・キャッシュ・最終アクセス日時の書き込み待ち
+ * 	・エクスポート（app_export_*）はDataExporterが自分で登録する（管理画面・エクスポート用のBeanを起動時に作らないため）
+ * 	・コネクションプール（hikaricp_*）と画面ごとの応答時間（http_server_requests_*）はSpring Bootの自動設定で公開される
+ */
+@Component
+public class AppMetrics implements MeterBinder {
+
+	private final AdmissionGate admissionGate;
+	private final UserIdCache userIdCache;
+	private final HistoryCache historyCache;
+	private final FavoriteCache favoriteCache;
+	private final CatalogCache catalogCache;
+	private final LastAccessBuffer lastAccessBuffer;
+
+	public AppMetrics(AdmissionGate admissionGate, UserIdCache userIdCache,
+			HistoryCache historyCache, FavoriteCache favoriteCache, CatalogCache catalogCache,
+			LastAccessBuffer lastAccessBuffer) {
+		this.admissionGate = admissionGate;
+		this.userIdCache = userIdCache;
+		this.historyCache = historyCache;
+		this.favoriteCache = favoriteCache;
+		this.catalogCache = catalogCache;
+		this.lastAccessBuffer = lastAccessBuffer;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("app.admission.in.flight", admissionGate, AdmissionGate::getInFlight).register(registry);
+		Gauge.builder("app.admission.queue.depth", admissionGate, AdmissionGate::getQueueDepth).register(registry);
+		FunctionCounter.builder("app.admission.admitted", admissionGate, AdmissionGate::getAdmitted).register(registry);
+		FunctionCounter.builder("app.admission.shed", admissionGate, AdmissionGate::getShed).register(registry);
+
+		FunctionCounter.builder("app.cache.gets", userIdCache, UserIdCache::getHits)
+				.tags("cache", "userId", "result", "hit").register(registry);
+		FunctionCounter.builder("app.cache.gets", userIdCache, UserIdCache::getNegativeHits)
+				.tags("cache", "userId", "result", "negativeHit").register(registry);
+		FunctionCounter.builder("app.cache.gets", userIdCache, UserIdCache::getMisses)
+				.tags("cache", "userId", "result", "miss").register(registry);
+		Gauge.builder("app.cache.size", userIdCache, UserIdCache::getSize).tag("cache", "userId").register(registry);
+
+		FunctionCounter.builder("app.cache.gets", historyCache, HistoryCache::getHits)
+				.tags("cache", "history", "result", "hit").register(registry);
+		FunctionCounter.builder("app.cache.gets", historyCache, HistoryCache::getMisses)
+				.tags("cache", "history", "result", "miss").register(registry);
+		FunctionCounter.builder("app.cache.invalidations", historyCache, HistoryCache::getInvalidations)
+				.tag("cache", "history").register(registry);
+		Gauge.builder("app.cache.size", historyCache, HistoryCache::getUserCount).tag("cache", "history").register(registry);
+
+		bindUserCache(registry, "favorite", favoriteCache);
+		bindUserCache(registry, "catalog", catalogCache);
+
+		Gauge.builder("app.last.access.pending", lastAccessBuffer, LastAccessBuffer::getPendingCount).register(registry);
+	}
+
+	private static <V> void bindUserCache(MeterRegistry registry, String name, UserCache<V> cache) {
+		FunctionCounter.builder("app.cache.gets", cache, UserCache::getHits)
+				.tags("cache", name, "result", "hit").register(registry);
+		FunctionCounter.builder("app.cache.gets", cache, UserCache::getMisses)
+				.tags("cache", name, "result", "miss").register(registry);
+		FunctionCounter.builder("app.cache.evictions", cache, UserCache::getEvictions).tag("cache", name).register(registry);
+		FunctionCounter.builder("app.cache.invalidations", cache, UserCache::getInvalidations).tag("cache", name).register(registry);
+		Gauge.builder("app.cache.size", cache, UserCache::getSize).tag("cache", name).register(registry);
+		Gauge.builder("app.cache.weight", cache, UserCache::getWeight).tag("cache", name).register(registry);
+	}
+}
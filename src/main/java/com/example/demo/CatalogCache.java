@@ -0,0 +1,18 @@
+package com.example.demo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+ * 	ユーザーごとのカタログ（CatalogSnapshot）を保持するキャッシュ
+ * 	・メーカー・食品・栄養情報の登録・更新・削除で無効化し、次の参照時に作り直す
+ * 	・読み込んだときのデータの版（users.data_version）と今の版が違えば作り直す（別のインスタンスでの書き込み）
+ * 	・推定メモリ量の合計が上限を超えたら、最近使われていないユーザーから破棄
+ */
+@Component
+public class CatalogCache extends UserCache<CatalogSnapshot> {
+
+	public CatalogCache(@Value("${app.catalog-cache.max-bytes:33554432}") long maxBytes) {
+		super(maxBytes, CatalogSnapshot::estimatedBytes);
+	}
+}
@@ -0,0 +1,156 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import com.example.demo.HomeController.FoodRow;
+import com.example.demo.HomeController.MakerRow;
+import com.example.demo.HomeController.NutritionRow;
+
+/*
+ * 	ユーザーごとのメーカー・食品・栄養情報（カタログ）をまとめた読み取り専用のスナップショット
+ * 	・IntakeRepositoryの一覧取得メソッドと同じ並び・同じ型で返す
+ * 	・作成後は書き換えない（変更があればスナップショットごと作り直す）
+ */
+public final class CatalogSnapshot {
+
+	// 読み込み時のキャッシュの世代番号
+	private final long version;
+	private final long estimatedBytes;
+
+	private final List<MakerRow> makers;
+	private final List<FoodRow> foodsAll;
+	private final List<NutritionRow> nutritionsAll;
+	// key: maker_id
+	private final Map<Long, String> makerNames;
+	private final Map<Long, List<FoodRow>> foodsByMaker;
+	// key: food_id
+	private final Map<Long, FoodRow> headerInfos;
+	private final Map<Long, List<NutritionRow>> nutritionsByFood;
+	// key: nutrition_id
+	private final Map<Long, NutritionRow> nutritionInfos;
+
+	/*
+	 * 	@param	version 読み込み前に取得したデータの版（users.data_version）
+	 *	@param	makers getMakerListと同じ並び
+	 *	@param	foods getFoodListAllと同じ並び
+	 *	@param	nutritions getNutritionListAllの並び（food / makerは外部結合）
+	 */
+	public CatalogSnapshot(long version, List<MakerRow> makers, List<FoodRow> foods, List<NutritionRow> nutritions) {
+		this.version = version;
+
+		Map<Long, String> makerNames = new HashMap<>();
+		for (MakerRow m : makers) {
+			makerNames.put(m.makerId(), m.makerName());
+		}
+
+		Map<Long, List<FoodRow>> foodsByMaker = new HashMap<>();
+		Map<Long, FoodRow> headerInfos = new HashMap<>();
+		for (FoodRow f : foods) {
+			foodsByMaker.computeIfAbsent(f.makerId(), k -> new ArrayList<>()).add(f);
+			headerInfos.put(f.foodId(), f);
+		}
+
+		List<NutritionRow> nutritionsAll = new ArrayList<>();
+		Map<Long, List<NutritionRow>> nutritionsByFood = new HashMap<>();
+		Map<Long, NutritionRow> nutritionInfos = new HashMap<>();
+		for (NutritionRow n : nutritions) {
+			nutritionsByFood.computeIfAbsent(n.foodId(), k -> new ArrayList<>()).add(n);
+
+			// 食品・メーカーが削除済みのものは一覧・詳細には出さない
+			if (n.foodName() == null || n.makerName() == null) {
+				continue;
+			}
+			nutritionsAll.add(n);
+			nutritionInfos.put(n.nutritionId(), n);
+		}
+
+		this.makers = List.copyOf(makers);
+		this.foodsAll = List.copyOf(foods);
+		this.nutritionsAll = List.copyOf(nutritionsAll);
+		this.makerNames = Map.copyOf(makerNames);
+		this.foodsByMaker = freezeGroups(foodsByMaker);
+		this.headerInfos = Map.copyOf(headerInfos);
+		this.nutritionsByFood = freezeGroups(nutritionsByFood);
+		this.nutritionInfos = Map.copyOf(nutritionInfos);
+		this.estimatedBytes = estimate(makers, foods, nutritions);
+	}
+
+	private static <T> Map<Long, List<T>> freezeGroups(Map<Long, List<T>> groups) {
+		Map<Long, List<T>> frozen = new HashMap<>();
+		groups.forEach((k, v) -> frozen.put(k, List.copyOf(v)));
+		return Map.copyOf(frozen);
+	}
+
+	// 保持している行のおおよそのメモリ量（recordのヘッダ・フィールド、文字列、BigDecimal、索引の参照から推定）
+	private static long estimate(List<MakerRow> makers, List<FoodRow> foods, List<NutritionRow> nutritions) {
+		long bytes = 0;
+		for (MakerRow m : makers) {
+			bytes += 24 + 16 + string(m.makerName());
+		}
+		for (FoodRow f : foods) {
+			// 一覧・メーカー別・food_id別の3か所から参照される
+			bytes += 40 + 3 * 16 + string(f.foodName()) + string(f.makerName());
+		}
+		for (NutritionRow n : nutritions) {
+			bytes += 72 + 3 * 16 + 4 * 40 + string(n.className()) + string(n.foodName()) + string(n.makerName());
+		}
+		return bytes;
+	}
+
+	private static long string(String s) {
+		return (s == null) ? 0 : 40 + s.length() * 2L;
+	}
+
+	private static <T> T require(T value) {
+		if (value == null) {
+			throw new EmptyResultDataAccessException(1);
+		}
+		return value;
+	}
+
+	public long version() {
+		return version;
+	}
+
+	public long estimatedBytes() {
+		return estimatedBytes;
+	}
+
+	public List<MakerRow> getMakerList() {
+		return makers;
+	}
+
+	public String getMakerName(long makerId) {
+		return require(makerNames.get(makerId));
+	}
+
+	public List<FoodRow> getFoodList(long makerId) {
+		return foodsByMaker.getOrDefault(makerId, List.of());
+	}
+
+	public List<FoodRow> getFoodListAll() {
+		return foodsAll;
+	}
+
+	public FoodRow getHeaderInfo(long foodId) {
+		return require(headerInfos.get(foodId));
+	}
+
+	public List<NutritionRow> getNutritionList(long foodId) {
+		return nutritionsByFood.getOrDefault(foodId, List.of());
+	}
+
+	public List<NutritionRow> getNutritionListAll() {
+		return nutritionsAll;
+	}
+
+	// お気に入りIDは含まない（お気に入りは別に取得する）
+	public NutritionRow getNutritionInfo(long nutritionId) {
+		return require(nutritionInfos.get(nutritionId));
+	}
+}
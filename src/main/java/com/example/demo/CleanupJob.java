@@ -1,29 +1,346 @@
 package com.example.demo;
 
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
+/*
+ * 	使われていないユーザー（登録後に一度も再訪していない）と、その関連行を削除するジョブ
+ * 	・users → user_purge（削除待ち）への移動と、関連行（お気に入り・履歴・カタログ・日別集計）の削除を
+ * 	　chunk-size件ずつ別々の短いトランザクションで行い、チャンクの間はpause-msだけ待つ（ロックを長く持たない）
+ * 	・途中で止まっても、次の実行でjob_state（対象の基準日時）とuser_purgeから続きを行う
+ * 	・以前の版で関連行だけが残ったユーザーも、初回に一度だけ探してuser_purgeに入れる
+ * 	・行ロックはSKIP LOCKEDで取り、別のインスタンスが同時に実行しても同じ行を取り合わない
+ * 	・最終アクセス日時は各インスタンスのLastAccessBufferが溜めてから書き出すので、基準日時を決めた後
+ * 	　flush-wait-msだけ待ってから削除する（基準日時より前の再訪は、どのインスタンスの分も反映されている）
+ * 	　基準日時より後の再訪が、他のインスタンスで書き出される前に削除に当たった場合は残らない
+ * 	　（実行は週1回・利用の少ない時間帯なので、この間の初めての再訪だけが対象になる）
+ */
 @Component
 public class CleanupJob {
 
+    static final String JOB_NAME = "cleanup";
+    static final String ORPHAN_JOB_NAME = "cleanup.orphans";
+
+    private static final String PHASE_IDLE = "idle";
+    private static final String PHASE_SELECT = "select";
+    private static final String PHASE_PURGE = "purge";
+    private static final String PHASE_DONE = "done";
+
+    // 1チャンクのロック待ちの上限（超えたら中断し、次の実行で続きから）
+    private static final String LOCK_TIMEOUT = "5s";
+
+    // 関連行を削除するテーブル（参照する側から順に）
+    private static final List<String> PURGE_TABLES = List.of(
+            "favorite", "intake", "intake_once", "daily_summary", "nutrition", "food", "maker");
+
+    // 関連行だけが残ったユーザーを探すテーブルと主キー（daily_summaryはintake / intake_onceから見つかる）
+    private static final String[][] ORPHAN_TABLES = {
+            { "maker", "maker_id" }, { "food", "food_id" }, { "nutrition", "nutrition_id" },
+            { "intake", "intake_id" }, { "intake_once", "intake_id" }, { "favorite", "favorite_id" } };
+
     private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final UserIdCache userIdCache;
+    private final LastAccessBuffer lastAccessBuffer;
+    private final FavoriteCache favoriteCache;
+    private final CatalogCache catalogCache;
+    private final MeterRegistry registry;
+    private final JobCoordinator jobCoordinator;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final long flushWaitMillis;
 
-    public CleanupJob(JdbcTemplate jdbc) {
+    // 削除したユーザー数（app_cleanup_deleted_users_total）
+    private final Counter deletedUsers;
+    // 実行したチャンク数（app_cleanup_chunks_total）
+    private final Counter chunks;
+    // 実行時間（app_cleanup_duration_seconds）
+    private final Timer duration;
+    // 実行中なら1（app_cleanup_running）
+    private final AtomicInteger running = new AtomicInteger();
+
+    public CleanupJob(JdbcTemplate jdbc, TransactionTemplate tx, UserIdCache userIdCache, LastAccessBuffer lastAccessBuffer,
+            FavoriteCache favoriteCache, CatalogCache catalogCache,
+            MeterRegistry registry, JobCoordinator jobCoordinator,
+            @Value("${app.cleanup.chunk-size:500}") int chunkSize,
+            @Value("${app.cleanup.pause-ms:200}") long pauseMillis,
+            @Value("${app.cleanup.flush-wait-ms:75000}") long flushWaitMillis) {
         this.jdbc = jdbc;
+        this.tx = tx;
+        this.userIdCache = userIdCache;
+        this.lastAccessBuffer = lastAccessBuffer;
+        this.favoriteCache = favoriteCache;
+        this.catalogCache = catalogCache;
+        this.registry = registry;
+        this.jobCoordinator = jobCoordinator;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.flushWaitMillis = flushWaitMillis;
+        this.deletedUsers = Counter.builder("app.cleanup.deleted.users").register(registry);
+        this.chunks = Counter.builder("app.cleanup.chunks").register(registry);
+        this.duration = Timer.builder("app.cleanup.duration").register(registry);
+        Gauge.builder("app.cleanup.running", running, AtomicInteger::get).register(registry);
     }
 
-    // 毎週月曜日 4:00 に実行
+    // 毎週月曜日 4:00 に実行（複数のインスタンスのうち1つだけ）
     @Scheduled(cron = "0 0 4 ? * MON", zone = "Asia/Tokyo")
-    public void deleteUnusedUser() {
-    	String sql = """
-    			DELETE FROM users
-    			WHERE regist_date = last_access_date;
-    			""";
-        int deleted = jdbc.update(sql);
-
-        System.out.println(
-            "[CleanupJob] deleted rows = " + deleted
-        );
+    public void scheduledDeleteUnusedUser() {
+        jobCoordinator.runExclusive(JOB_NAME, this::deleteUnusedUser);
+    }
+
+    /*
+     * 	使われていないユーザーと関連行を削除するメソッド
+     * 	（中断された場合は、次の実行で同じ基準日時のまま続きから行う）
+     *	@return	今回usersから削除したユーザー数
+     */
+    public int deleteUnusedUser() {
+        long start = System.nanoTime();
+        running.set(1);
+        try {
+            // このインスタンスの未反映のアクセス日時を先に書き出しておく（再訪ユーザーを消さないため）
+            lastAccessBuffer.flush();
+
+            // 前回が途中で止まっていれば、同じ基準日時で続きから
+            Map<String, Object> state = loadState(JOB_NAME);
+            Timestamp cutoff;
+            if (state == null || PHASE_IDLE.equals(state.get("phase"))) {
+                cutoff = jdbc.queryForObject("SELECT localtimestamp", Timestamp.class);
+                saveState(JOB_NAME, PHASE_SELECT, cutoff, null);
+            } else {
+                cutoff = (Timestamp) state.get("cutoff");
+                System.out.println("[CleanupJob] resume phase = " + state.get("phase") + ", cutoff = " + cutoff);
+            }
+
+            int orphanUsers = enqueueOrphanUsers();
+            awaitOtherInstances(cutoff);
+            int users = deleteUsers(cutoff);
+            saveState(JOB_NAME, PHASE_PURGE, cutoff, null);
+            long rows = purgeRows();
+            saveState(JOB_NAME, PHASE_IDLE, null, null);
+
+            System.out.println(
+                "[CleanupJob] deleted users = " + users + ", orphan users = " + orphanUsers + ", rows = " + rows
+            );
+            return users;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("[CleanupJob] interrupted (resume next run)");
+            return 0;
+        } finally {
+            running.set(0);
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // 他のインスタンスが、基準日時より前のアクセス日時を書き出すまで待つ（再開時など、既に経っていれば待たない）
+    private void awaitOtherInstances(Timestamp cutoff) throws InterruptedException {
+        String sql = """
+                SELECT greatest(0, extract(epoch FROM ?::timestamp + ?::bigint * interval '1 millisecond' - localtimestamp) * 1000)::bigint;
+                """;
+        long waitMillis = jdbc.queryForObject(sql, Long.class, cutoff, flushWaitMillis);
+        if (waitMillis > 0) {
+            System.out.println("[CleanupJob] waiting " + waitMillis + " ms for other instances to flush last access dates");
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    // 対象のユーザーをusersから削除し、削除待ちに入れる（チャンクごと）
+    private int deleteUsers(Timestamp cutoff) throws InterruptedException {
+        // 基準日時より後に登録したユーザー（実行中に来た新規ユーザー）は対象外
+        String sql = """
+                WITH target AS (
+                    SELECT user_id
+                    FROM users
+                    WHERE regist_date = last_access_date
+                      AND regist_date < ?
+                    ORDER BY user_id
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED
+                ), deleted AS (
+                    DELETE FROM users u
+                    USING target t
+                    WHERE u.user_id = t.user_id
+                    RETURNING u.user_id
+                ), queued AS (
+                    INSERT INTO user_purge (user_id)
+                    SELECT user_id FROM deleted
+                    ON CONFLICT (user_id) DO NOTHING
+                )
+                SELECT user_id FROM deleted;
+                """;
+        int total = 0;
+        while (true) {
+            List<String> deleted = inChunk(() -> jdbc.queryForList(sql, String.class, cutoff, chunkSize));
+
+            // 削除したユーザーはキャッシュからも外す
+            userIdCache.invalidate(deleted);
+            favoriteCache.invalidate(deleted);
+            catalogCache.invalidate(deleted);
+            deletedUsers.increment(deleted.size());
+            total += deleted.size();
+
+            if (deleted.size() < chunkSize) {
+                return total;
+            }
+            pause();
+        }
+    }
+
+    // 削除待ちのユーザーの関連行を、テーブルごとにチャンク単位で削除する
+    private long purgeRows() throws InterruptedException {
+        // この時点までに削除待ちに入ったユーザーは、以下ですべての関連行が削除される
+        Timestamp purgeStart = jdbc.queryForObject("SELECT localtimestamp", Timestamp.class);
+        long total = 0;
+        for (String table : PURGE_TABLES) {
+            String sql = """
+                    DELETE FROM %s
+                    WHERE ctid = ANY(ARRAY(
+                        SELECT ctid
+                        FROM %s
+                        WHERE regist_user_id IN (SELECT user_id FROM user_purge)
+                        LIMIT ?
+                        FOR UPDATE SKIP LOCKED
+                    ));
+                    """.formatted(table, table);
+            Counter deletedRows = Counter.builder("app.cleanup.deleted.rows").tag("table", table).register(registry);
+            while (true) {
+                int rows = inChunk(() -> jdbc.update(sql, chunkSize));
+                deletedRows.increment(rows);
+                total += rows;
+                if (rows < chunkSize) {
+                    break;
+                }
+                pause();
+            }
+        }
+
+        // 関連行を削除し終えたユーザーを削除待ちから外す
+        String sql = """
+                DELETE FROM user_purge
+                WHERE user_id IN (
+                    SELECT user_id
+                    FROM user_purge
+                    WHERE queued_at <= ?
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED
+                );
+                """;
+        while (inChunk(() -> jdbc.update(sql, purgeStart, chunkSize)) == chunkSize) {
+            pause();
+        }
+        return total;
+    }
+
+    // 以前の版で関連行だけが残ったユーザーを削除待ちに入れる（全件を見終えたら以後は行わない）
+    private int enqueueOrphanUsers() throws InterruptedException {
+        Map<String, Object> state = loadState(ORPHAN_JOB_NAME);
+        if (state != null && PHASE_DONE.equals(state.get("phase"))) {
+            return 0;
+        }
+        // 前回の続き（テーブル・主キー）から
+        int from = 0;
+        long lastKey = 0;
+        if (state != null) {
+            for (int i = 0; i < ORPHAN_TABLES.length; i++) {
+                if (ORPHAN_TABLES[i][0].equals(state.get("phase"))) {
+                    from = i;
+                    lastKey = ((Number) state.get("last_key")).longValue();
+                }
+            }
+        }
+
+        int total = 0;
+        for (int i = from; i < ORPHAN_TABLES.length; i++) {
+            String table = ORPHAN_TABLES[i][0];
+            String key = ORPHAN_TABLES[i][1];
+            // 主キー順にchunk-size行ずつ見て、usersに居ないユーザーを削除待ちに入れる
+            String sql = """
+                    WITH scanned AS (
+                        SELECT %2$s AS id, regist_user_id
+                        FROM %1$s
+                        WHERE %2$s > ?
+                        ORDER BY %2$s
+                        LIMIT ?
+                    ), queued AS (
+                        INSERT INTO user_purge (user_id)
+                        SELECT DISTINCT s.regist_user_id
+                        FROM scanned s
+                        WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.user_id = s.regist_user_id)
+                        ON CONFLICT (user_id) DO NOTHING
+                        RETURNING user_id
+                    )
+                    SELECT count(*) AS scanned, max(id) AS last_key, (SELECT count(*) FROM queued) AS queued
+                    FROM scanned;
+                    """.formatted(table, key);
+            while (true) {
+                long after = lastKey;
+                Map<String, Object> chunk = inChunk(() -> {
+                    Map<String, Object> row = jdbc.queryForMap(sql, after, chunkSize);
+                    if (row.get("last_key") != null) {
+                        saveState(ORPHAN_JOB_NAME, table, null, ((Number) row.get("last_key")).longValue());
+                    }
+                    return row;
+                });
+                total += ((Number) chunk.get("queued")).intValue();
+                if (((Number) chunk.get("scanned")).intValue() < chunkSize) {
+                    break;
+                }
+                lastKey = ((Number) chunk.get("last_key")).longValue();
+                pause();
+            }
+            lastKey = 0;
+        }
+        saveState(ORPHAN_JOB_NAME, PHASE_DONE, null, null);
+        return total;
+    }
+
+    // 1チャンク = 1トランザクション（ロック待ちが長引いたら中断する）
+    private <T> T inChunk(Supplier<T> work) {
+        T result = tx.execute(status -> {
+            jdbc.execute("SET LOCAL lock_timeout = '" + LOCK_TIMEOUT + "'");
+            return work.get();
+        });
+        chunks.increment();
+        return result;
+    }
+
+    private void pause() throws InterruptedException {
+        if (pauseMillis > 0) {
+            Thread.sleep(pauseMillis);
+        }
+    }
+
+    private Map<String, Object> loadState(String jobName) {
+        List<Map<String, Object>> rows = jdbc.queryForList(
+                "SELECT phase, cutoff, last_key FROM job_state WHERE job_name = ?", jobName);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private void saveState(String jobName, String phase, Timestamp cutoff, Long lastKey) {
+        String sql = """
+                INSERT INTO job_state (job_name, phase, cutoff, last_key)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (job_name) DO UPDATE
+                SET phase = EXCLUDED.phase,
+                    cutoff = EXCLUDED.cutoff,
+                    last_key = EXCLUDED.last_key,
+                    updated_at = now();
+                """;
+        jdbc.update(sql, jobName, phase, cutoff, lastKey);
     }
 }
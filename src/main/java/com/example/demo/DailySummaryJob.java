@@ -0,0 +1,59 @@
+package com.example.demo;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/*
+ * 	日別集計（daily_summary）の作り直し・検証を行う
+ * 	・起動時に集計が空で元データがある場合（導入直後）は全件作成する（複数のインスタンスのうち1つだけ）
+ * 	・管理画面から作り直し（rebuild）と突き合わせ（verify）を実行できる
+ */
+@Component
+public class DailySummaryJob {
+
+	static final String JOB_NAME = "daily-summary.build";
+
+	private final IntakeRepository intakeRepo;
+	private final HistoryCache historyCache;
+	private final DataVersion dataVersion;
+	private final JobCoordinator jobCoordinator;
+
+	public DailySummaryJob(IntakeRepository intakeRepo, HistoryCache historyCache, DataVersion dataVersion,
+			JobCoordinator jobCoordinator) {
+		this.intakeRepo = intakeRepo;
+		this.historyCache = historyCache;
+		this.dataVersion = dataVersion;
+		this.jobCoordinator = jobCoordinator;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void buildIfEmpty() {
+		if (!intakeRepo.isDailySummaryEmpty()) {
+			return;
+		}
+		// 同時に起動した他のインスタンスが作り終えていれば、リースを取れても作り直さない
+		jobCoordinator.runExclusive(JOB_NAME, () -> {
+			if (intakeRepo.isDailySummaryEmpty()) {
+				rebuild();
+			}
+		});
+	}
+
+	public int rebuild() {
+		int rows = intakeRepo.rebuildDailySummary();
+		// 作り直した集計で期間集計も取り直す
+		historyCache.invalidateAll();
+		// 合計が変わる可能性があるので、画面のETagも全ユーザー分変える
+		dataVersion.bumpAll();
+		System.out.println("[DailySummaryJob] rebuilt rows = " + rows);
+		return rows;
+	}
+
+	public List<Map<String, Object>> verify() {
+		return intakeRepo.verifyDailySummary();
+	}
+}
@@ -0,0 +1,228 @@
+package com.example.demo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * 	ユーザーのデータ（食べた記録・簡易登録・メーカー/食品/栄養情報）をCSV / JSONで書き出す仕組み
+ * 	・DBからはfetchSizeずつ受け取り、1行ずつ書き出す（記録が何年分あってもメモリ使用量は一定）
+ * 	・コネクションを使うのは書き出している間だけ（StreamingResponseBodyの中で取得して返す）
+ * 	・同時に書き出す数を絞り、残りのコネクションを画面の表示に残す（超えた分は順番を待つ）
+ * 	・メトリクス（app_export_*）はここで登録する（遅延初期化のときは最初のエクスポートから公開される）
+ */
+@Component
+public class DataExporter {
+
+	public static final String DATA_INTAKE = "intake";
+	public static final String DATA_INTAKE_ONCE = "intake_once";
+	public static final String DATA_CATALOG = "catalog";
+	public static final List<String> DATA_TYPES = List.of(DATA_INTAKE, DATA_INTAKE_ONCE, DATA_CATALOG);
+
+	public static final String FORMAT_CSV = "csv";
+	public static final String FORMAT_JSON = "json";
+
+	private final IntakeRepository intakeRepo;
+	private final Semaphore permits;
+	private final int maxConcurrent;
+
+	private final LongAdder exports = new LongAdder();
+	private final LongAdder exportedRows = new LongAdder();
+
+	public DataExporter(IntakeRepository intakeRepo, MeterRegistry registry,
+			@Value("${app.export.max-concurrent:1}") int maxConcurrent) {
+		this.intakeRepo = intakeRepo;
+		this.permits = new Semaphore(maxConcurrent, true);
+		this.maxConcurrent = maxConcurrent;
+		FunctionCounter.builder("app.export.exports", this, DataExporter::getExports).register(registry);
+		FunctionCounter.builder("app.export.rows", this, DataExporter::getExportedRows).register(registry);
+		Gauge.builder("app.export.running", this, DataExporter::getRunning).register(registry);
+	}
+
+	/*
+	 * 	書き出し処理を作るメソッド（DBへのアクセスはレスポンスに書き出すときに行う）
+	 *	@param	userId ユーザーID
+	 *	@param	data 対象（intake / intake_once / catalog）
+	 *	@param	format 形式（csv / json）
+	 *	@return	StreamingResponseBody
+	 */
+	public StreamingResponseBody stream(String userId, String data, String format) {
+		if (!DATA_TYPES.contains(data)) {
+			throw new IllegalArgumentException("対象が不正です（" + data + "）");
+		}
+		if (!FORMAT_CSV.equals(format) && !FORMAT_JSON.equals(format)) {
+			throw new IllegalArgumentException("形式が不正です（" + format + "）");
+		}
+		boolean json = FORMAT_JSON.equals(format);
+		return out -> {
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("エクスポートが中断されました", e);
+			}
+			try {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+				ResultSetExtractor<Long> extractor = rs -> write(rs, writer, json);
+				long rows = switch (data) {
+				case DATA_INTAKE -> intakeRepo.exportIntakes(userId, extractor);
+				case DATA_INTAKE_ONCE -> intakeRepo.exportIntakeOnces(userId, extractor);
+				default -> intakeRepo.exportCatalog(userId, extractor);
+				};
+				writer.flush();
+				exports.increment();
+				exportedRows.add(rows);
+			} catch (UncheckedIOException e) {
+				// クライアントの切断など（トランザクションは戻してコネクションを返す）
+				throw e.getCause();
+			} finally {
+				permits.release();
+			}
+		};
+	}
+
+	// 見出し（列名）と全行を書き出して行数を返す
+	private static long write(ResultSet rs, Writer writer, boolean json) throws SQLException {
+		ResultSetMetaData meta = rs.getMetaData();
+		int columns = meta.getColumnCount();
+		String[] names = new String[columns];
+		boolean[] numeric = new boolean[columns];
+		for (int i = 0; i < columns; i++) {
+			names[i] = meta.getColumnLabel(i + 1);
+			numeric[i] = isNumeric(meta.getColumnType(i + 1));
+		}
+		String[] values = new String[columns];
+		long rows = 0;
+		try {
+			if (json) {
+				writer.write('[');
+			} else {
+				// ExcelでUTF-8として開けるようにBOMを付ける（CSV取込は見出し行ごと読み飛ばす）
+				writer.write('\uFEFF');
+				writeCsvLine(writer, names);
+			}
+			while (rs.next()) {
+				for (int i = 0; i < columns; i++) {
+					values[i] = rs.getString(i + 1);
+				}
+				if (json) {
+					writer.write(rows == 0 ? "\n" : ",\n");
+					writeJsonObject(writer, names, numeric, values);
+				} else {
+					writeCsvLine(writer, values);
+				}
+				rows++;
+			}
+			if (json) {
+				writer.write("\n]\n");
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return rows;
+	}
+
+	private static boolean isNumeric(int type) {
+		return switch (type) {
+		case Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.NUMERIC, Types.DECIMAL, Types.REAL, Types.DOUBLE -> true;
+		default -> false;
+		};
+	}
+
+	// RFC 4180形式（区切り文字・引用符・改行を含む値は""で囲む）
+	private static void writeCsvLine(Writer writer, String[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			String value = values[i];
+			if (value == null) {
+				continue;
+			}
+			if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+				writer.write('"');
+				writer.write(value.replace("\"", "\"\""));
+				writer.write('"');
+			} else {
+				writer.write(value);
+			}
+		}
+		writer.write("\r\n");
+	}
+
+	private static void writeJsonObject(Writer writer, String[] names, boolean[] numeric, String[] values) throws IOException {
+		writer.write('{');
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			writeJsonString(writer, names[i]);
+			writer.write(':');
+			if (values[i] == null) {
+				writer.write("null");
+			} else if (numeric[i]) {
+				writer.write(values[i]);
+			} else {
+				writeJsonString(writer, values[i]);
+			}
+		}
+		writer.write('}');
+	}
+
+	private static void writeJsonString(Writer writer, String value) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"' -> writer.write("\\\"");
+			case '\\' -> writer.write("\\\\");
+			case '\n' -> writer.write("\\n");
+			case '\r' -> writer.write("\\r");
+			case '\t' -> writer.write("\\t");
+			default -> {
+				if (c < 0x20) {
+					writer.write(String.format("\\u%04x", (int) c));
+				} else {
+					writer.write(c);
+				}
+			}
+			}
+		}
+		writer.write('"');
+	}
+
+	public long getExports() {
+		return exports.sum();
+	}
+
+	public long getExportedRows() {
+		return exportedRows.sum();
+	}
+
+	public int getRunning() {
+		return maxConcurrent - permits.availablePermits();
+	}
+
+	public int getWaiting() {
+		return permits.getQueueLength();
+	}
+}
@@ -0,0 +1,135 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/*
+ * 	ユーザーごとのデータの版（条件付きGETのETagに使う）
+ * 	・版はusers.data_versionに持ち、食べた記録・カタログ・お気に入りを書き込んだトランザクションで一緒に進める
+ * 	　（どのインスタンスで書き込んでも、どのインスタンスでも同じ版が見える）
+ * 	・ETagの確認は主キー検索1回（画面のデータより先に読むので、間に書き込みがあっても古いETagで新しい画面を返すだけ）
+ * 	・アプリの版（app.version）と、静的ファイル・テンプレートの内容の指紋もETagに含める
+ * 	　（app.versionを変えずにデプロイしても、前のリリースの画面（古いハッシュ付きのcssのURLを指す）を304で使わせない）
+ * 	・メモリのキャッシュ（カタログなど）も読み込んだときの版を持ち、版が変わっていれば読み直す
+ * 	　（1リクエストの中では1回だけ読み、ETagの確認とキャッシュの確認で同じ版を使う）
+ */
+@Component
+public class DataVersion {
+
+	// リクエスト中に読んだ版（key: user_id）を置くリクエスト属性
+	private static final String READ_ATTRIBUTE = DataVersion.class.getName() + ".read";
+
+	// 指紋を取る静的ファイル・テンプレート
+	private static final String[] FINGERPRINT_PATTERNS = { "classpath*:static/**", "classpath*:templates/**" };
+
+	private final IntakeRepository intakeRepo;
+	// アプリの版 + 静的ファイル・テンプレートの指紋
+	private final String release;
+
+	@Autowired
+	public DataVersion(IntakeRepository intakeRepo, @Value("${app.version:dev}") String appVersion) {
+		this(intakeRepo, appVersion, resourceFingerprint());
+	}
+
+	DataVersion(IntakeRepository intakeRepo, String appVersion, String resourceFingerprint) {
+		this.intakeRepo = intakeRepo;
+		this.release = appVersion + "|" + resourceFingerprint;
+	}
+
+	/*
+	 * 	静的ファイル・テンプレートの内容から指紋を作るメソッド（起動時に1回）
+	 * 	・ファイルごとのMD5を並べ替えてからまとめる（配置先のパスが違うインスタンスでも同じ値になる）
+	 *	@return	指紋（MD5）
+	 */
+	static String resourceFingerprint() {
+		PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(DataVersion.class.getClassLoader());
+		List<String> digests = new ArrayList<>();
+		try {
+			for (String pattern : FINGERPRINT_PATTERNS) {
+				for (Resource resource : resolver.getResources(pattern)) {
+					if (!resource.isReadable()) {
+						continue;
+					}
+					try (InputStream in = resource.getInputStream()) {
+						digests.add(DigestUtils.md5DigestAsHex(in));
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		digests.sort(null);
+		return DigestUtils.md5DigestAsHex(String.join(",", digests).getBytes(StandardCharsets.UTF_8));
+	}
+
+	// 版を進める（呼び出し側のトランザクション内で。コミットされるまで他からは古い版が見える）
+	public void bump(String userId) {
+		intakeRepo.bumpDataVersion(userId);
+		Map<String, Long> read = readVersions(false);
+		if (read != null) {
+			read.remove(userId);
+		}
+	}
+
+	/*
+	 * 	今の版を取得するメソッド（データより先に読む。間に書き込みがあっても、古い版で新しいデータを持つだけ）
+	 *	@param	userId ユーザーID
+	 *	@return	版（リクエスト中は最初に読んだ値。リクエスト外では毎回DBから読む）
+	 */
+	public long current(String userId) {
+		Map<String, Long> read = readVersions(true);
+		if (read == null) {
+			return intakeRepo.getDataVersion(userId);
+		}
+		return read.computeIfAbsent(userId, intakeRepo::getDataVersion);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Long> readVersions(boolean create) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return null;
+		}
+		Map<String, Long> read = (Map<String, Long>) attributes.getAttribute(READ_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		if (read == null && create) {
+			read = new HashMap<>();
+			attributes.setAttribute(READ_ATTRIBUTE, read, RequestAttributes.SCOPE_REQUEST);
+		}
+		return read;
+	}
+
+	// 全ユーザーの版を進める（日別集計の作り直しなど）
+	public int bumpAll() {
+		return intakeRepo.bumpAllDataVersions();
+	}
+
+	/*
+	 * 	画面のETag（強い検証子）を作るメソッド
+	 *	@param	userId ユーザーID
+	 *	@param	parts 画面・日付など、表示内容を決める値
+	 *	@return	ETag（"で囲んだ値）
+	 */
+	public String etag(String userId, String... parts) {
+		StringBuilder key = new StringBuilder(release).append('|').append(userId)
+				.append('|').append(current(userId));
+		for (String part : parts) {
+			key.append('|').append(part);
+		}
+		return "\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+	}
+}
@@ -0,0 +1,40 @@
+package com.example.demo;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ * 	遅延初期化（spring.main.lazy-initialization=true）でも起動時に作るBean
+ * 	・ホーム画面（/）と/healthzを処理するHomeController（使うサービス・リポジトリ・キャッシュも一緒に作られる）
+ * 	・スキーマの適用（SchemaMigrator。最初のリクエストまで待たずに起動時に適用する）
+ * 	・@Scheduledのメソッドを持つBean（作られるまでスケジュールに登録されないため）
+ * 	それ以外（管理画面のManageController・エクスポート・Actuatorのエンドポイント・エラー画面・マルチパートなど）は
+ * 	最初に使われたときに作る
+ */
+@Component
+public class EagerBeanFilter implements LazyInitializationExcludeFilter {
+
+	private static final Set<Class<?>> EAGER_TYPES = Set.of(HomeController.class, SchemaMigrator.class);
+
+	@Override
+	public boolean isExcluded(String beanName, BeanDefinition beanDefinition, Class<?> beanType) {
+		if (beanType == null) {
+			return false;
+		}
+		if (EAGER_TYPES.contains(beanType)) {
+			return true;
+		}
+		for (Method method : beanType.getMethods()) {
+			if (AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
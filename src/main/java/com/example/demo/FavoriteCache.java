@@ -0,0 +1,27 @@
+package com.example.demo;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.HomeController.FavoriteRow;
+
+/*
+ * 	お気に入り一覧（getFavoriteList）をユーザーごとに保持するキャッシュ
+ * 	・お気に入りの登録・削除・並び替え、食品名・分類名の変更で無効化する
+ * 	・読み込んだときのデータの版（users.data_version）と今の版が違えば読み直す（別のインスタンスでの書き込み）
+ * 	・保持する一覧は書き換えできない形にしてから登録する
+ */
+@Component
+public class FavoriteCache extends UserCache<List<FavoriteRow>> {
+
+	public FavoriteCache(@Value("${app.favorite-cache.max-size:10000}") int maxSize) {
+		super(maxSize);
+	}
+
+	// 書き換えできない一覧に変換（FavoriteRowはrecordなので一覧だけ固める）
+	public static List<FavoriteRow> freeze(List<FavoriteRow> favorites) {
+		return List.copyOf(favorites);
+	}
+}
@@ -0,0 +1,57 @@
+package com.example.demo;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ * 	お気に入りのsort_orderを間隔を空けて振り直す
+ * 	・sort_orderが上限に近い、重複がある、間隔が詰まっているユーザーだけが対象
+ * 	・並び順そのものは変わらないため、お気に入り一覧のキャッシュは無効化しない
+ */
+@Component
+public class FavoriteRebalanceJob {
+
+	static final String JOB_NAME = "favorite-rebalance";
+
+	private final IntakeRepository intakeRepo;
+	private final JobCoordinator jobCoordinator;
+	private final int maxOrder;
+	private final int batchSize;
+
+	public FavoriteRebalanceJob(IntakeRepository intakeRepo, JobCoordinator jobCoordinator,
+			@Value("${app.favorite-rebalance.max-order:1000000000}") int maxOrder,
+			@Value("${app.favorite-rebalance.batch-size:500}") int batchSize) {
+		this.intakeRepo = intakeRepo;
+		this.jobCoordinator = jobCoordinator;
+		this.maxOrder = maxOrder;
+		this.batchSize = batchSize;
+	}
+
+	// 毎日 4:30 に実行（複数のインスタンスのうち1つだけ）
+	@Scheduled(cron = "0 30 4 * * *", zone = "Asia/Tokyo")
+	public void scheduledRebalance() {
+		jobCoordinator.runExclusive(JOB_NAME, this::rebalance);
+	}
+
+	public int rebalance() {
+		int users = 0;
+		int rows = 0;
+		List<String> targets = intakeRepo.getFavoriteRebalanceTargets(maxOrder, batchSize);
+		while (!targets.isEmpty()) {
+			// ユーザーごとに別トランザクション（ロックを長く持たない）
+			for (String userId : targets) {
+				rows += intakeRepo.rebalanceFavorites(userId);
+			}
+			users += targets.size();
+			if (targets.size() < batchSize) {
+				break;
+			}
+			targets = intakeRepo.getFavoriteRebalanceTargets(maxOrder, batchSize);
+		}
+		System.out.println("[FavoriteRebalanceJob] users = " + users + ", rows = " + rows);
+		return users;
+	}
+}
@@ -0,0 +1,149 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.HomeController.HistorySeries;
+
+/*
+ * 	終了済みの期間（最終日が昨日以前）の期間集計を保持するキャッシュ
+ * 	・過去の期間は、その期間内の日付の履歴が書き換えられない限り変わらない
+ * 	・書き込みがあった日付を含む期間だけを無効化する
+ * 	・世代番号で、無効化と同時に走っていた読み込み結果を捨てる
+ * 	・ユーザーごとに読み込んだときのデータの版（users.data_version）を持ち、今の版と違えばすべて読み直す
+ * 	　（別のインスタンスでの過去の日付の編集は、このインスタンスの無効化では分からないため）
+ */
+@Component
+public class HistoryCache {
+
+	private final int maxUsers;
+	private final int maxPeriodsPerUser;
+
+	// key: user_id / value: データの版と期間ごとの集計
+	private final Map<String, UserPeriods> entries;
+	// 無効化のたびに進める世代番号
+	private long stamp;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	// 読み込んだときのデータの版と、期間ごとの集計（key: from/to）
+	private record UserPeriods(long dataVersion, Map<String, HistorySeries> periods) {
+	}
+
+	public HistoryCache(@Value("${app.history-cache.max-users:2000}") int maxUsers,
+			@Value("${app.history-cache.max-periods-per-user:32}") int maxPeriodsPerUser) {
+		this.maxUsers = maxUsers;
+		this.maxPeriodsPerUser = maxPeriodsPerUser;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, UserPeriods> eldest) {
+				return size() > HistoryCache.this.maxUsers;
+			}
+		};
+	}
+
+	private static String key(LocalDate from, LocalDate to) {
+		return from + "/" + to;
+	}
+
+	private Map<String, HistorySeries> newPeriods() {
+		return new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, HistorySeries> eldest) {
+				return size() > maxPeriodsPerUser;
+			}
+		};
+	}
+
+	/*
+	 * 	期間集計を取得するメソッド
+	 *	@param	dataVersion 今の版（DataVersion.current）
+	 *	@return	期間集計（無いか、別の版で読み込んだものならnull）
+	 */
+	public synchronized HistorySeries get(String userId, LocalDate from, LocalDate to, long dataVersion) {
+		UserPeriods periods = entries.get(userId);
+		HistorySeries series = (periods == null || periods.dataVersion() != dataVersion)
+				? null : periods.periods().get(key(from, to));
+		if (series == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return series;
+	}
+
+	/*
+	 * 	読み込み前の世代番号を取得するメソッド（putに渡す）
+	 *	@return	世代番号
+	 */
+	public synchronized long stamp() {
+		return stamp;
+	}
+
+	/*
+	 * 	期間集計を登録するメソッド
+	 * 	読み込み中に無効化されていた（世代番号が変わった）場合は登録しない
+	 * 	版が変わっていれば、前の版で読み込んだ期間は捨てる
+	 *	@param	dataVersion 読み込み前に取得したデータの版
+	 */
+	public synchronized void put(String userId, LocalDate from, LocalDate to, HistorySeries series, long stamp, long dataVersion) {
+		if (this.stamp != stamp) {
+			return;
+		}
+		UserPeriods periods = entries.get(userId);
+		if (periods == null || periods.dataVersion() != dataVersion) {
+			periods = new UserPeriods(dataVersion, newPeriods());
+			entries.put(userId, periods);
+		}
+		periods.periods().put(key(from, to), series);
+	}
+
+	/*
+	 * 	書き込みがあった日付を含む期間を無効化するメソッド
+	 *	@param	userId ユーザーID
+	 *	@param	dates 書き込みがあった日付
+	 */
+	public synchronized void invalidate(String userId, Collection<LocalDate> dates) {
+		stamp++;
+		invalidations.increment();
+		UserPeriods periods = entries.get(userId);
+		if (periods != null) {
+			periods.periods().values().removeIf(series -> dates.stream().anyMatch(d -> d != null && contains(series, d)));
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		stamp++;
+		invalidations.increment();
+		entries.clear();
+	}
+
+	private static boolean contains(HistorySeries series, LocalDate date) {
+		String d = date.toString();
+		return series.from().compareTo(d) <= 0 && series.to().compareTo(d) >= 0;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	public synchronized int getUserCount() {
+		return entries.size();
+	}
+}
@@ -1,18 +1,30 @@
 package com.example.demo;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.math.BigDecimal;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
 import java.util.List;
 import java.util.Map;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -20,9 +32,16 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.NoHandlerFoundException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.resource.NoResourceFoundException;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
 
 
@@ -30,6 +49,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class HomeController {
 
 	@GetMapping("/healthz")
+	@SqlBudget(0)
 	@ResponseBody
 	public String healthz() {
 	    return "ok";
@@ -37,8 +57,10 @@ public class HomeController {
 	/*--------------------------------------
 		定数
 	--------------------------------------*/
-	private final JdbcTemplate jdbc;
 	private final IntakeService intakeSvc;
+	// エクスポートでだけ使う（遅延初期化のときは最初のエクスポートで作る）
+	private final ObjectProvider<DataExporter> dataExporter;
+	private final DataVersion dataVersion;
 
 	private static final String UID_COOKIE = "cc_uid";
 
@@ -51,6 +73,87 @@ public class HomeController {
 		}
 	}
 	
+	// お気に入り1件
+	public record FavoriteRow(String foodName, String className, long favoriteId, long nutritionId) {
+	}
+	
+	// メーカー1件
+	public record MakerRow(long makerId, String makerName) {
+	}
+	
+	// 食品1件（メーカー名付き）
+	public record FoodRow(long foodId, String foodName, long makerId, String makerName) {
+	}
+	
+	// 栄養情報1件（食品・メーカーが削除済みの場合は名前がnull）
+	public record NutritionRow(long nutritionId, String className, int calorie, BigDecimal protein, BigDecimal lipid,
+			BigDecimal carbo, BigDecimal salt, long foodId, String foodName, long makerId, String makerName) {
+	}
+	
+	// 履歴の詳細（intake / intake_once共通。intakeのカロリー・PFC・塩分は数量を掛けた値）
+	public record IntakeDetail(long intakeId, String eatenDate, String eatenTime, double qty, String makerName,
+			String foodName, String className, int calorie, double protein, double lipid, double carbo, double salt) {
+	}
+	
+	// 1日のPFC・塩分の合計
+	public record DailyNutrition(BigDecimal proteinG, BigDecimal lipidG, BigDecimal carboG, BigDecimal saltG,
+			BigDecimal proteinKcal, BigDecimal lipidKcal, BigDecimal carboKcal, BigDecimal pfcKcalTotal) {
+	}
+	
+	// 一括更新の操作1件
+	// op：insert / update / delete、kind：intake / intake_once、id：更新・削除するintake_id
+	// 登録時のeatenDate / eatenTime / qtyは省略可（現在日時・1.0）
+	public record IntakeOp(String op, String kind, Long id, Long nutritionId, BigDecimal qty,
+			LocalDate eatenDate, LocalTime eatenTime, String foodName, Integer calorie,
+			Double protein, Double lipid, Double carbo, Double salt) {
+		public static final String OP_INSERT = "insert";
+		public static final String OP_UPDATE = "update";
+		public static final String OP_DELETE = "delete";
+		public static final String KIND_INTAKE = "intake";
+		public static final String KIND_INTAKE_ONCE = "intake_once";
+	}
+	
+	// 一括更新の結果（results：操作ごとの件数（入力と同じ順）、dates：日別集計を再計算した日付）
+	public record IntakeBatchResult(int inserted, int updated, int deleted, List<Integer> results, List<LocalDate> dates) {
+	}
+	
+	// CSV取込の結果（intakesSkipped：既に同じ記録があったため登録しなかった行数、errors：先頭からmaxErrors件まで）
+	public record CsvImportResult(int rows, int makersCreated, int foodsCreated, int nutritionsCreated,
+			int intakesCreated, int intakesSkipped, int errorCount, List<CsvImportError> errors, List<LocalDate> dates) {
+	}
+	
+	// CSV取込で取り込まなかった行（lineは見出し行を1行目とした行番号）
+	public record CsvImportError(long line, String message) {
+	}
+	
+	// デイリー詳細画面の表示データ
+	public record DailyDetail(int totalKcal, DailyNutrition nutrition) {
+	}
+	
+	// 栄養情報詳細画面の表示データ（favoriteIdは0なら未登録）
+	public record NutritionDetail(NutritionRow nutrition, long favoriteId) {
+	}
+	
+	// home画面の表示データ（履歴・お気に入りを1回のクエリで取得したもの）
+	public record HomeData(int totalKcal, List<IntakeRow> records, List<FavoriteRow> favorites) {
+		// 合計カロリーは取得した履歴から計算する（calcTotalCalと同じく小数点以下切り捨て）
+		public static HomeData of(List<IntakeRow> records, List<FavoriteRow> favorites) {
+			BigDecimal total = BigDecimal.ZERO;
+			for (IntakeRow r : records) {
+				total = total.add(BigDecimal.valueOf(r.calorie()).multiply(BigDecimal.valueOf(r.qty())));
+			}
+			return new HomeData(total.intValue(), records, favorites);
+		}
+	}
+	
+	// 期間集計（1日分）
+	public record DailyTotal(String date, int kcal, BigDecimal protein, BigDecimal lipid, BigDecimal carbo, BigDecimal salt) {
+	}
+	
+	// 期間集計（fromからtoまでの日ごとの合計）
+	public record HistorySeries(String from, String to, List<DailyTotal> days) {
+	}
+	
 	/*--------------------------------------
 		共通
 	--------------------------------------*/
@@ -65,8 +168,16 @@ public class HomeController {
 			return appVersion;
 		}
 	    
+		// 存在しないURL・静的ファイルは404で返す（下のエラー画面の200にしない）
+		@ExceptionHandler({ NoResourceFoundException.class, NoHandlerFoundException.class })
+		public ResponseEntity<Void> notFound() {
+			return ResponseEntity.notFound().build();
+		}
+
 		@ExceptionHandler(Exception.class)
-		public String handle(Exception e, Model model) {
+		public String handle(Exception e, Model model, HttpServletResponse res) {
+			// エラー画面はブラウザに保存させない（ETagを付けた後の例外でも304で返さないように）
+			res.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
 			model.addAttribute("message", e.getMessage());
 			return "error"; // templates/error.html を用意
 		}
@@ -90,10 +201,35 @@ public class HomeController {
 	    return userId;
 	}
 	
+	/*
+	 * 	前回表示したときから表示内容が変わっていないかを確認するメソッド（条件付きGET）
+	 * 	・ETagはユーザー・データの版・URL（パラメータ込み）・今日の日付から作る
+	 * 	　（アプリの版と静的ファイル・テンプレートの指紋も含む。DataVersion.etag）
+	 * 	・一致すれば304を設定するので、呼び出し元はnullを返す（クエリ・画面描画は行わない）
+	 * 	・フラッシュメッセージを表示する回は毎回描画し、ブラウザにも保存させない
+	 *	@param	webRequest リクエスト（304の判定結果をSpring MVCに伝える）
+	 *	@param	req リクエスト
+	 *	@param	res レスポンス
+	 *	@param	userId ユーザーID
+	 *	@return	true：変わっていない（304）
+	 */
+	private boolean notModified(WebRequest webRequest, HttpServletRequest req, HttpServletResponse res, String userId) {
+		Map<String, ?> flash = RequestContextUtils.getInputFlashMap(req);
+		if (flash != null && !flash.isEmpty()) {
+			res.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+			return false;
+		}
+		// 保存はさせるが、表示のたびにETagで確認させる
+		res.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+		String page = req.getQueryString() == null ? req.getRequestURI() : req.getRequestURI() + "?" + req.getQueryString();
+		return webRequest.checkNotModified(dataVersion.etag(userId, page, LocalDate.now().toString()));
+	}
+	
 
-	public HomeController(JdbcTemplate jdbc, IntakeRepository intakeRepo, IntakeService intakeSvc) {
-		this.jdbc = jdbc;
+	public HomeController(IntakeService intakeSvc, ObjectProvider<DataExporter> dataExporter, DataVersion dataVersion) {
 		this.intakeSvc = intakeSvc;
+		this.dataExporter = dataExporter;
+		this.dataVersion = dataVersion;
 	}
 	
 	
@@ -101,31 +237,76 @@ public class HomeController {
 	
 	// 合計押下時
 	@GetMapping("/daily/detail")
+	@SqlBudget(3)
 	public String dailyDetail(@RequestParam(name = "date", required = false) String date,
 				Model model,
+				WebRequest webRequest,
 				HttpServletRequest req,
 				HttpServletResponse res) throws Exception {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		// 三項演算子（条件 ? 真のときの値 : 偽のときの値）
 		LocalDate targetDate = (date == null || date.isBlank()) ? LocalDate.now(): LocalDate.parse(date);
 		
 		
-		// 合計カロリー取得
-		int totalKcal = intakeSvc.calcTotalCal(userId, targetDate);
-		
-		List<Map<String, Object>> dailyTotalNutritionList = intakeSvc.getDailyTotalNutrition(userId, targetDate);
+		// 合計カロリー・PFCの合計を取得
+		DailyDetail dailyDetail = intakeSvc.loadDailyDetail(userId, targetDate);
 		
 		// modelに格納
 		model.addAttribute("targetDate", targetDate.toString());
-		model.addAttribute("totalKcal", totalKcal);
-		model.addAttribute("dailyTotalNutritionList", dailyTotalNutritionList);
+		model.addAttribute("totalKcal", dailyDetail.totalKcal());
+		model.addAttribute("dailyTotalNutrition", dailyDetail.nutrition());
 		
 	    return "daily_detail";
 	}
 	
 	
 	
+	/*--------------------------------------
+		期間集計（週・月・任意期間）
+	--------------------------------------*/
+	// 指定日を含む週（月曜～日曜）
+	@GetMapping("/history/week")
+	@SqlBudget(3)
+	@ResponseBody
+	public HistorySeries historyWeek(@RequestParam(name = "date", required = false) String date,
+			HttpServletRequest req,
+			HttpServletResponse res) {
+		String userId = resolveUserId(req, res);
+		LocalDate targetDate = (date == null || date.isBlank()) ? LocalDate.now(): LocalDate.parse(date);
+		LocalDate from = targetDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+		return intakeSvc.getHistory(userId, from, from.plusDays(6));
+	}
+	
+	// 指定月（yyyy-MM）
+	@GetMapping("/history/month")
+	@SqlBudget(3)
+	@ResponseBody
+	public HistorySeries historyMonth(@RequestParam(name = "month", required = false) String month,
+			HttpServletRequest req,
+			HttpServletResponse res) {
+		String userId = resolveUserId(req, res);
+		YearMonth targetMonth = (month == null || month.isBlank()) ? YearMonth.now(): YearMonth.parse(month);
+		return intakeSvc.getHistory(userId, targetMonth.atDay(1), targetMonth.atEndOfMonth());
+	}
+	
+	// 任意期間（from～to）
+	@GetMapping("/history/range")
+	@SqlBudget(3)
+	@ResponseBody
+	public HistorySeries historyRange(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+			HttpServletRequest req,
+			HttpServletResponse res) {
+		String userId = resolveUserId(req, res);
+		return intakeSvc.getHistory(userId, from, to);
+	}
+	
+	
 	/*--------------------------------------
 		画面遷移
 	--------------------------------------*/
@@ -133,25 +314,28 @@ public class HomeController {
 	// 日付選択時
 	// 「Homeへ戻る」押下時
 	@GetMapping("/")
+	@SqlBudget(3)
 	public String home(@RequestParam(name = "date", required = false) String date, Model model,
+            WebRequest webRequest,
             HttpServletRequest req,
             HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		// 三項演算子（条件 ? 真のときの値 : 偽のときの値）
 		LocalDate targetDate = (date == null || date.isBlank()) ? LocalDate.now(): LocalDate.parse(date);
 		
-		// 合計カロリー取得
-		int totalKcal = intakeSvc.calcTotalCal(userId, targetDate);
-		
-		// getDailyRecordsで対象日の履歴を取得
-		List<IntakeRow> targetDateAteRecords = intakeSvc.getDailyRecords(userId, targetDate);
+		// 対象日の履歴・お気に入りを1回で取得（合計カロリーは履歴から計算）
+		HomeData homeData = intakeSvc.loadHomePage(userId, targetDate);
+		int totalKcal = homeData.totalKcal();
+		List<IntakeRow> targetDateAteRecords = homeData.records();
+		List<FavoriteRow> getFavoriteList = homeData.favorites();
 		
 		LocalDate today = LocalDate.now();
 		
-		// お気に入りのリストを取得
-		List<Map<String, Object>> getFavoriteList = intakeSvc.getFavoriteList(userId);
-		
 		// modelに格納
 		model.addAttribute("targetDate", targetDate.toString());
 		model.addAttribute("totalKcal", totalKcal);
@@ -176,6 +360,7 @@ public class HomeController {
 	
 	// お知らせ押下時
 	@GetMapping("/info")
+	@SqlBudget(1)
 	public String info(HttpServletRequest req, HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
@@ -184,6 +369,7 @@ public class HomeController {
 	
 	// 使い方押下時
 	@GetMapping("/howto")
+	@SqlBudget(1)
 	public String howToUse(HttpServletRequest req, HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
@@ -192,6 +378,7 @@ public class HomeController {
 	
 	// TOP画面：詳細押下時
 	@GetMapping("/intake/detail")
+	@SqlBudget(2)
 	public String intakeDetail(@RequestParam("intakeId") long intakeId,
 			@RequestParam("date") String date,
 			Model model,
@@ -201,29 +388,30 @@ public class HomeController {
 		String userId = resolveUserId(req, res);
 		
 		// IDから詳細情報を取得
-		Map<String, Object> map = intakeSvc.getIntakeDetail(userId, intakeId);
-		if(map == null) {
+		IntakeDetail detail = intakeSvc.getIntakeDetail(userId, intakeId);
+		if(detail == null) {
 			model.addAttribute("errorMsg", "該当の履歴が見つかりません");
 			return "home";
 		}
 		
 		model.addAttribute("targetDate", date);
-		model.addAttribute("targetId", map.get("intakeId"));
-		model.addAttribute("intakeId", map.get("intakeId"));
-		model.addAttribute("eatenDatetime", (map.get("eatenDate") + " " + map.get("eatenTime")));
-		model.addAttribute("makerName", map.get("makerName"));
-		model.addAttribute("foodName", map.get("foodName"));
-		model.addAttribute("className", map.get("className"));
-		model.addAttribute("calorie", map.get("calorie"));
-		model.addAttribute("protein", map.get("protein"));
-		model.addAttribute("lipid", map.get("lipid"));
-		model.addAttribute("carbo", map.get("carbo"));
-		model.addAttribute("salt", map.get("salt"));
+		model.addAttribute("targetId", detail.intakeId());
+		model.addAttribute("intakeId", detail.intakeId());
+		model.addAttribute("eatenDatetime", (detail.eatenDate() + " " + detail.eatenTime()));
+		model.addAttribute("makerName", detail.makerName());
+		model.addAttribute("foodName", detail.foodName());
+		model.addAttribute("className", detail.className());
+		model.addAttribute("calorie", detail.calorie());
+		model.addAttribute("protein", detail.protein());
+		model.addAttribute("lipid", detail.lipid());
+		model.addAttribute("carbo", detail.carbo());
+		model.addAttribute("salt", detail.salt());
 		
 		return "intake_detail";
 	}
 	
 	@GetMapping("/intake_once/detail")
+	@SqlBudget(2)
 	public String intakeOnceDetail(@RequestParam("intakeOnceId") long intakeOnceId,
 			@RequestParam("date") String date,
 			Model model,
@@ -233,30 +421,30 @@ public class HomeController {
 		String userId = resolveUserId(req, res);
 		
 		// IDから詳細情報を取得
-		Map<String, Object> map = intakeSvc.getIntakeOnceDetail(userId, intakeOnceId);
-		if(map == null) {
+		IntakeDetail detail = intakeSvc.getIntakeOnceDetail(userId, intakeOnceId);
+		if(detail == null) {
 			model.addAttribute("errorMsg", "該当の履歴が見つかりません");
 			return "home";
 		}
 		
 		model.addAttribute("targetDate", date);
-		model.addAttribute("targetId", map.get("intakeId"));
-		model.addAttribute("intakeOnceId", map.get("intakeOnceId"));
-		model.addAttribute("eatenDatetime", (map.get("eatenDate") + " " + map.get("eatenTime")));
-		model.addAttribute("makerName", map.get("makerName"));
-		model.addAttribute("foodName", map.get("foodName"));
-		model.addAttribute("className", map.get("className"));
-		model.addAttribute("calorie", map.get("calorie"));
-		model.addAttribute("protein", map.get("protein"));
-		model.addAttribute("lipid", map.get("lipid"));
-		model.addAttribute("carbo", map.get("carbo"));
-		model.addAttribute("salt", map.get("salt"));
+		model.addAttribute("intakeOnceId", detail.intakeId());
+		model.addAttribute("eatenDatetime", (detail.eatenDate() + " " + detail.eatenTime()));
+		model.addAttribute("makerName", detail.makerName());
+		model.addAttribute("foodName", detail.foodName());
+		model.addAttribute("className", detail.className());
+		model.addAttribute("calorie", detail.calorie());
+		model.addAttribute("protein", detail.protein());
+		model.addAttribute("lipid", detail.lipid());
+		model.addAttribute("carbo", detail.carbo());
+		model.addAttribute("salt", detail.salt());
 		
 		return "intake_detail";
 	}
 	
 	// 詳細画面：編集押下時
 	@GetMapping("/intake/edit")
+	@SqlBudget(2)
 	public String intakeEdit(@RequestParam("intakeId") long intakeId,
 			@RequestParam("date") String date,
 			Model model,
@@ -266,25 +454,26 @@ public class HomeController {
 		String userId = resolveUserId(req, res);
 		
 		// IDから詳細情報を取得
-		Map<String, Object> map = intakeSvc.getIntakeDetail(userId, intakeId);
-		if(map == null) {
+		IntakeDetail detail = intakeSvc.getIntakeDetail(userId, intakeId);
+		if(detail == null) {
 			model.addAttribute("errorMsg", "該当の履歴が見つかりません");
 			return "home";
 		}
 				
 		model.addAttribute("targetDate", date);
-		model.addAttribute("intakeId", map.get("intakeId"));
-		model.addAttribute("eatenDate", (map.get("eatenDate")));
-		model.addAttribute("eatenTime", (map.get("eatenTime")));
-		model.addAttribute("foodName", map.get("foodName"));
-		model.addAttribute("className", map.get("className"));
-		model.addAttribute("calorie", map.get("calorie"));
+		model.addAttribute("intakeId", detail.intakeId());
+		model.addAttribute("eatenDate", detail.eatenDate());
+		model.addAttribute("eatenTime", detail.eatenTime());
+		model.addAttribute("foodName", detail.foodName());
+		model.addAttribute("className", detail.className());
+		model.addAttribute("calorie", detail.calorie());
 
 		return "intake_edit";
 	}
 	
 	// 詳細画面：編集押下時
 	@GetMapping("/intake_once/edit")
+	@SqlBudget(2)
 	public String intakeOnceEdit(@RequestParam("intakeOnceId") long intakeOnceId,
 			@RequestParam("date") String date,
 			Model model,
@@ -294,19 +483,19 @@ public class HomeController {
 		String userId = resolveUserId(req, res);
 		
 		// IDから詳細情報を取得
-		Map<String, Object> map = intakeSvc.getIntakeOnceDetail(userId, intakeOnceId);
-		if(map == null) {
+		IntakeDetail detail = intakeSvc.getIntakeOnceDetail(userId, intakeOnceId);
+		if(detail == null) {
 			model.addAttribute("errorMsg", "該当の履歴が見つかりません");
 			return "home";
 		}
 				
 		model.addAttribute("targetDate", date);
-		model.addAttribute("intakeOnceId", map.get("intakeOnceId"));
-		model.addAttribute("eatenDate", (map.get("eatenDate")));
-		model.addAttribute("eatenTime", (map.get("eatenTime")));
-		model.addAttribute("foodName", map.get("foodName"));
-		model.addAttribute("className", map.get("className"));
-		model.addAttribute("calorie", map.get("calorie"));
+		model.addAttribute("intakeOnceId", detail.intakeId());
+		model.addAttribute("eatenDate", detail.eatenDate());
+		model.addAttribute("eatenTime", detail.eatenTime());
+		model.addAttribute("foodName", detail.foodName());
+		model.addAttribute("className", detail.className());
+		model.addAttribute("calorie", detail.calorie());
 
 		return "intake_edit";
 	}
@@ -314,14 +503,20 @@ public class HomeController {
 	// ナビゲーション：食べた押下時
 	// 食べた登録画面：食品選択画面：「←メーカー選択へ戻る」押下時
 	@GetMapping("/eat")
+	@SqlBudget(5)
 	public String eatMaker(Model model,
+            WebRequest webRequest,
             HttpServletRequest req,
             HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		
 		// ユーザーIDに紐づくメーカー一覧を取得
-		List<Map<String, Object>> makers = intakeSvc.getMakerList(userId);
+		List<MakerRow> makers = intakeSvc.getMakerList(userId);
 		
 		model.addAttribute("makers", makers);
 		return "eat_maker";
@@ -329,18 +524,24 @@ public class HomeController {
 	
 	// 食べた登録画面：メーカ選択画面：メーカー選択時
 	@GetMapping("/eat/foods")
+	@SqlBudget(5)
 	public String eatFoods(@RequestParam("makerId") long makerId,
 			Model model,
+            WebRequest webRequest,
             HttpServletRequest req,
             HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		
 		// 表示するメーカー名を取得
 		String makerName = intakeSvc.getMakerName(userId, makerId);
 
 		// ユーザーIDと選択したメーカーに紐づく食品一覧を取得
-		List<Map<String, Object>> foods = intakeSvc.getFoodList(userId, makerId);
+		List<FoodRow> foods = intakeSvc.getFoodList(userId, makerId);
 		
 		model.addAttribute("makerId", makerId);
 		model.addAttribute("makerName", makerName);
@@ -350,19 +551,25 @@ public class HomeController {
 	
 	// 食べた登録画面：食品選択画面：食品選択時
 	@GetMapping("/eat/nutritions")
+	@SqlBudget(5)
 	public String eatNutritions(@RequestParam("foodId") long foodId,
 			@RequestParam(name="error", required=false) String error,
 			Model model,
+            WebRequest webRequest,
             HttpServletRequest req,
             HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		
 		// ユーザーIDと食品IDに紐づく食品情報とメーカ情報を取得
-		Map<String, Object> headerInfo = intakeSvc.getHeaderInfo(userId, foodId);
+		FoodRow headerInfo = intakeSvc.getHeaderInfo(userId, foodId);
 
 		// ユーザーIDと食品IDに紐づく分類一覧を取得
-		List<Map<String, Object>> nutritionList = intakeSvc.getNutritionList(userId, foodId);
+		List<NutritionRow> nutritionList = intakeSvc.getNutritionList(userId, foodId);
 		
 		model.addAttribute("header", headerInfo);
 		model.addAttribute("nutritions", nutritionList);
@@ -372,6 +579,7 @@ public class HomeController {
 	
 	// メニュー：メーカー登録押下時
 	@GetMapping("/makers/new")
+	@SqlBudget(1)
 	public String makerNew(HttpServletRequest req, HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
@@ -381,6 +589,7 @@ public class HomeController {
 	
 	// メニュー：食品情報登録押下時
 	@GetMapping("/foods/new")
+	@SqlBudget(5)
 	public String foodNew(Model model,
 			@RequestParam(name="makerId", required=false) Long makerId,
 			@RequestParam(name="error", required=false) String error,
@@ -390,10 +599,7 @@ public class HomeController {
 		String userId = resolveUserId(req, res);
 		
 		// メーカー一覧を取得
-		List<Map<String, Object>> makers = jdbc.queryForList(
-				"SELECT maker_id, maker_name FROM maker WHERE regist_user_id=? ORDER BY maker_name",
-				userId
-				);
+		List<MakerRow> makers = intakeSvc.getMakerList(userId);
 
 		model.addAttribute("makers", makers);
 		model.addAttribute("selectedMakerId", makerId); // 初期選択用
@@ -404,6 +610,7 @@ public class HomeController {
 	// メニュー：栄養情報登録押下時
 	// 食品情報登録画面：「食品を選択して栄養情報登録へ進む」押下時
 	@GetMapping("/nutritions/new")
+	@SqlBudget(5)
 	public String nutritionNew(Model model,
 			@RequestParam(name="foodId", required=false) Long foodId,
 			@RequestParam(name="error", required=false) String error,
@@ -413,13 +620,10 @@ public class HomeController {
 		String userId = resolveUserId(req, res);
 		
 		// メーカー一覧を」取得
-		List<Map<String, Object>> makers = intakeSvc.getMakerList(userId);
+		List<MakerRow> makers = intakeSvc.getMakerList(userId);
 		
 		// 食品一覧を取得
-		List<Map<String, Object>> foods = jdbc.queryForList(
-				"SELECT food_id, food_name, f.maker_id FROM food f INNER JOIN maker m ON m.maker_id = f.maker_id WHERE f.regist_user_id=? ORDER BY food_name",
-				userId
-				);
+		List<FoodRow> foods = intakeSvc.getFoodListAll(userId);
 
 		model.addAttribute("foods", foods);
 		model.addAttribute("makers", makers);
@@ -431,6 +635,7 @@ public class HomeController {
 	
 	// メニュー押下時
 	@GetMapping("/menu")
+	@SqlBudget(1)
 	public String menu(HttpServletRequest req, HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
@@ -439,13 +644,18 @@ public class HomeController {
 	
 	// メニュー：メーカー一覧押下時
 	@GetMapping("/list/maker")
+	@SqlBudget(5)
 	public String listMaker(@RequestParam(name="makerId", required=false) Long makerId,
 			@RequestParam(name="makerName", required=false) String makerName,
-			Model model,HttpServletRequest req, HttpServletResponse res) {
+			Model model,WebRequest webRequest, HttpServletRequest req, HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		// ユーザーIDに紐づくメーカー一覧を取得
-		List<Map<String, Object>> makers = intakeSvc.getMakerList(userId);
+		List<MakerRow> makers = intakeSvc.getMakerList(userId);
 		
 		model.addAttribute("makers", makers);
 		return "list_maker";
@@ -453,6 +663,7 @@ public class HomeController {
 	
 	// メーカー一覧：選択時
 	@GetMapping("/edit/maker")
+	@SqlBudget(1)
 	public String editMaker(@RequestParam(name="makerId", required=false) Long makerId,
 			@RequestParam(name="makerName", required=false) String makerName,
 			Model model,
@@ -469,15 +680,21 @@ public class HomeController {
 	
 	// メニュー：食品情報一覧押下
 	@GetMapping("/list/food")
+	@SqlBudget(5)
 	public String listFood(
 			Model model,
+			WebRequest webRequest,
 			HttpServletRequest req,
 			HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		
 		// ユーザーIDと選択したメーカーに紐づく食品一覧を取得
-		List<Map<String, Object>> foods = intakeSvc.getFoodListAll(userId);
+		List<FoodRow> foods = intakeSvc.getFoodListAll(userId);
 		
 		model.addAttribute("foods", foods);
 		
@@ -486,15 +703,21 @@ public class HomeController {
 	
 	// 食べた！メニュー：食品から登録する押下
 	@GetMapping("/list/food/to/eat")
+	@SqlBudget(5)
 	public String listFoodToeat(
 			Model model,
+			WebRequest webRequest,
 			HttpServletRequest req,
 			HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		
 		// ユーザーIDと選択したメーカーに紐づく食品一覧を取得
-		List<Map<String, Object>> foods = intakeSvc.getFoodListAll(userId);
+		List<FoodRow> foods = intakeSvc.getFoodListAll(userId);
 		
 		model.addAttribute("foods", foods);
 		model.addAttribute("eatFlg", "true");
@@ -504,6 +727,7 @@ public class HomeController {
 	
 	// 食品情報一覧：選択時
 	@GetMapping("/edit/food")
+	@SqlBudget(1)
 	public String editFood(@RequestParam(name="makerId", required=false) Long makerId,
 			@RequestParam(name="foodId", required=false) Long foodId,
 			@RequestParam(name="foodName", required=false) String foodName,
@@ -522,15 +746,21 @@ public class HomeController {
 	
 	// メニュー：食品情報一覧押下
 	@GetMapping("/list/nutrition")
+	@SqlBudget(5)
 	public String listNutrition(
 			Model model,
+			WebRequest webRequest,
 			HttpServletRequest req,
 			HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		
 		// ユーザーIDと選択したメーカーに紐づく食品一覧を取得
-		List<Map<String, Object>> nutritions = intakeSvc.getNutritionListAll(userId);
+		List<NutritionRow> nutritions = intakeSvc.getNutritionListAll(userId);
 		
 		model.addAttribute("nutritions", nutritions);
 		
@@ -540,34 +770,42 @@ public class HomeController {
 	
 	// 食品情報一覧：選択時
 	@GetMapping("/nutrition/detail")
+	@SqlBudget(6)
 	public String nutritionDetail(@RequestParam(name="nutritionId", required=false) Long nutritionId,
 			Model model,
+			WebRequest webRequest,
 			HttpServletRequest req,
 			HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
+		// 前回から変わっていなければ304（クエリ・画面描画は行わない）
+		if (notModified(webRequest, req, res, userId)) {
+			return null;
+		}
 		
-		// ユーザーIDと食品IDに紐づく食品情報とメーカ情報を取得
-		Map<String, Object> nutritionInfo = intakeSvc.getNutritionInfo(userId, nutritionId);
+		// ユーザーIDと食品IDに紐づく食品情報とメーカ情報、お気に入りIDを取得
+		NutritionDetail nutritionDetail = intakeSvc.loadNutritionDetail(userId, nutritionId);
+		NutritionRow nutritionInfo = nutritionDetail.nutrition();
 
-		model.addAttribute("makerId", nutritionInfo.get("makerId").toString());
-		model.addAttribute("foodId", nutritionInfo.get("foodId").toString());
+		model.addAttribute("makerId", String.valueOf(nutritionInfo.makerId()));
+		model.addAttribute("foodId", String.valueOf(nutritionInfo.foodId()));
 		model.addAttribute("nutritionId", nutritionId);
-		model.addAttribute("makerName", nutritionInfo.get("makerName").toString());
-		model.addAttribute("foodName", nutritionInfo.get("foodName").toString());
-		model.addAttribute("className", nutritionInfo.get("className").toString());
-		model.addAttribute("calorie", nutritionInfo.get("calorie").toString());
-		model.addAttribute("protein", nutritionInfo.get("protein").toString());
-		model.addAttribute("lipid", nutritionInfo.get("lipid").toString());
-		model.addAttribute("carbo", nutritionInfo.get("carbo").toString());
-		model.addAttribute("salt", nutritionInfo.get("salt").toString());
-		model.addAttribute("favoriteId", nutritionInfo.get("favoriteId").toString());	// 0なら未登録
+		model.addAttribute("makerName", nutritionInfo.makerName());
+		model.addAttribute("foodName", nutritionInfo.foodName());
+		model.addAttribute("className", nutritionInfo.className());
+		model.addAttribute("calorie", String.valueOf(nutritionInfo.calorie()));
+		model.addAttribute("protein", nutritionInfo.protein().toString());
+		model.addAttribute("lipid", nutritionInfo.lipid().toString());
+		model.addAttribute("carbo", nutritionInfo.carbo().toString());
+		model.addAttribute("salt", nutritionInfo.salt().toString());
+		model.addAttribute("favoriteId", String.valueOf(nutritionDetail.favoriteId()));	// 0なら未登録
 		
 		return "nutrition_detail";
 	}
 	
 	// 食品情報詳細：編集押下時
 	@GetMapping("/edit/nutrition")
+	@SqlBudget(5)
 	public String editNutrition(@RequestParam(name="nutritionId", required=false) Long nutritionId,
 			Model model,
 			HttpServletRequest req,
@@ -576,19 +814,19 @@ public class HomeController {
 		String userId = resolveUserId(req, res);
 		
 		// ユーザーIDと食品IDに紐づく食品情報とメーカ情報を取得
-		Map<String, Object> nutritionInfo = intakeSvc.getNutritionInfo(userId, nutritionId);
+		NutritionRow nutritionInfo = intakeSvc.getNutritionInfo(userId, nutritionId);
 
-		model.addAttribute("makerId", nutritionInfo.get("makerId").toString());
-		model.addAttribute("foodId", nutritionInfo.get("foodId").toString());
+		model.addAttribute("makerId", String.valueOf(nutritionInfo.makerId()));
+		model.addAttribute("foodId", String.valueOf(nutritionInfo.foodId()));
 		model.addAttribute("nutritionId", nutritionId);
-		model.addAttribute("makerName", nutritionInfo.get("makerName").toString());
-		model.addAttribute("foodName", nutritionInfo.get("foodName").toString());
-		model.addAttribute("className", nutritionInfo.get("className").toString());
-		model.addAttribute("calorie", nutritionInfo.get("calorie").toString());
-		model.addAttribute("protein", nutritionInfo.get("protein").toString());
-		model.addAttribute("lipid", nutritionInfo.get("lipid").toString());
-		model.addAttribute("carbo", nutritionInfo.get("carbo").toString());
-		model.addAttribute("salt", nutritionInfo.get("salt").toString());
+		model.addAttribute("makerName", nutritionInfo.makerName());
+		model.addAttribute("foodName", nutritionInfo.foodName());
+		model.addAttribute("className", nutritionInfo.className());
+		model.addAttribute("calorie", String.valueOf(nutritionInfo.calorie()));
+		model.addAttribute("protein", nutritionInfo.protein().toString());
+		model.addAttribute("lipid", nutritionInfo.lipid().toString());
+		model.addAttribute("carbo", nutritionInfo.carbo().toString());
+		model.addAttribute("salt", nutritionInfo.salt().toString());
 		
 		return "edit_nutrition";
 	}
@@ -599,6 +837,7 @@ public class HomeController {
 	
 	// ナビゲーションバー：食べた！押下時
 	@GetMapping("/eat/menu")
+	@SqlBudget(1)
 	public String eatMenu(HttpServletRequest req, HttpServletResponse res) {
 		// user_id取得処理（仮）
 		String userId = resolveUserId(req, res);
@@ -676,6 +915,81 @@ public class HomeController {
 			return "redirect:/intake_once/detail?intakeOnceId=" + intakeOnceId + "&date=" + hiddenDate;
 		}
 	}
+	
+	// 登録・更新・削除の一括適用（JSONの配列で受け取り、結果をJSONで返す）
+	// 1件でも不正な操作があれば何も適用せず400を返す
+	@PostMapping("/intake/batch")
+	@ResponseBody
+	public ResponseEntity<?> intakeBatch(@RequestBody List<IntakeOp> ops,
+			HttpServletRequest req,
+			HttpServletResponse res) {
+		String userId = resolveUserId(req, res);
+		try {
+			return ResponseEntity.ok(intakeSvc.applyIntakeBatch(userId, ops));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		}
+	}
+
+
+	/*--------------------------------------
+		CSV取込画面
+	--------------------------------------*/
+	// メニュー：CSV取込押下時
+	@GetMapping("/import")
+	@SqlBudget(1)
+	public String importForm(HttpServletRequest req, HttpServletResponse res) {
+		// user_id取得処理（仮）
+		String userId = resolveUserId(req, res);
+		return "import";
+	}
+	
+	// CSV取込時（アップロードされたファイルはメモリに読み込まず、そのままCOPYに流す）
+	@PostMapping("/import")
+	public String importCsv(@RequestParam("file") MultipartFile file,
+			@RequestParam(name="charset", defaultValue="UTF-8") String charset,
+			Model model,
+			HttpServletRequest req,
+			HttpServletResponse res) throws IOException {
+		String userId = resolveUserId(req, res);
+		if (file.isEmpty()) {
+			model.addAttribute("errorMsg", "ファイルを選択してください");
+			return "import";
+		}
+		// Excelで保存したCSV（Shift_JIS）にも対応する
+		Charset cs = "MS932".equals(charset) ? Charset.forName("MS932") : StandardCharsets.UTF_8;
+		try (Reader csv = new InputStreamReader(file.getInputStream(), cs)) {
+			model.addAttribute("result", intakeSvc.importCsv(userId, csv));
+		} catch (IllegalArgumentException e) {
+			model.addAttribute("errorMsg", e.getMessage());
+		}
+		return "import";
+	}
+	
+	// エクスポート（data：intake / intake_once / catalog、format：csv / json）
+	// 書き出しは別スレッドで行い、DBのコネクションは書き出している間だけ使う
+	@GetMapping("/export")
+	@SqlBudget(1)
+	public ResponseEntity<StreamingResponseBody> export(@RequestParam(name="data", defaultValue="intake") String data,
+			@RequestParam(name="format", defaultValue="csv") String format,
+			HttpServletRequest req,
+			HttpServletResponse res) {
+		String userId = resolveUserId(req, res);
+		StreamingResponseBody body;
+		try {
+			body = dataExporter.getObject().stream(userId, data, format);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		String fileName = data + "_" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE) + "." + format;
+		MediaType contentType = DataExporter.FORMAT_JSON.equals(format)
+				? MediaType.APPLICATION_JSON
+				: new MediaType("text", "csv", StandardCharsets.UTF_8);
+		return ResponseEntity.ok()
+				.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+				.contentType(contentType)
+				.body(body);
+	}
 
 
 	/*--------------------------------------
@@ -817,7 +1131,7 @@ public class HomeController {
 		}
 		
 		// 更新実行
-		if(intakeSvc.updMaker(makerId, makerName) != 0) {
+		if(intakeSvc.updMaker(userId, makerId, makerName) != 0) {
 			ra.addFlashAttribute("msg", "メーカー名を更新しました");
 		}else {
 			ra.addFlashAttribute("errorMsg", "更新に失敗しました");
@@ -980,118 +1294,4 @@ public class HomeController {
 	
 	
 	
-	/*--------------------------------------
-		開発用
-	--------------------------------------*/
-	@PostMapping("/login")
-	public String login(@RequestParam("password") String password,
-	                    HttpServletRequest req) {
-
-	    String hexString = sha256Hex(password);
-
-	    String sql = """
-	        SELECT EXISTS(
-	            SELECT 1 FROM users WHERE password = ?
-	        )
-	    """;
-
-	    Boolean ok = jdbc.queryForObject(sql, Boolean.class, hexString);
-	    if (Boolean.TRUE.equals(ok)) {
-	        req.getSession(true).setAttribute("ADMIN_OK", true);  // ★ここ
-	        return "redirect:/manage";
-	    }
-	    return "redirect:/login";
-	}
-
-	private String sha256Hex(String password) {
-	    try {
-	        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
-	        byte[] sha256Byte = sha256.digest(password.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-	        return java.util.HexFormat.of().withLowerCase().formatHex(sha256Byte);
-	    } catch (NoSuchAlgorithmException e) {
-	        throw new RuntimeException(e);
-	    }
-	}
-	
-	private boolean isAdmin(HttpServletRequest req) {
-	    Object v = req.getSession(false) == null ? null : req.getSession(false).getAttribute("ADMIN_OK");
-	    return Boolean.TRUE.equals(v);
-	}
-	
-	@GetMapping("/login")
-	public String login(HttpServletRequest req, HttpServletResponse res) {
-		return "login";
-	}
-	
-	@GetMapping("/manage")
-	public String manage(HttpServletRequest req, HttpServletResponse res) {
-	    if (!isAdmin(req)) return "redirect:/login";
-	    return "manage";
-	}
-	
-	@GetMapping("/manage/users")
-	public String manageUsers(Model model, HttpServletRequest req, HttpServletResponse res) {
-		if (!isAdmin(req)) return "redirect:/login";
-		String sql = """
-				SELECT *
-				FROM users
-				ORDER BY last_access_date DESC
-			""";
-		List<Map<String, Object>> dataList = jdbc.queryForList(sql);
-		model.addAttribute("dataList", dataList);
-		return "manage_users";
-	}
-	
-	@GetMapping("/manage/maker")
-	public String manageMaker(Model model, HttpServletRequest req, HttpServletResponse res) {
-		if (!isAdmin(req)) return "redirect:/login";
-		String sql = """
-				SELECT *
-				FROM maker
-				ORDER BY maker_id DESC
-			""";
-		List<Map<String, Object>> dataList = jdbc.queryForList(sql);
-		model.addAttribute("dataList", dataList);
-		return "manage_maker";
-	}
-	
-	@GetMapping("/manage/food")
-	public String manageFood(Model model, HttpServletRequest req, HttpServletResponse res) {
-		if (!isAdmin(req)) return "redirect:/login";
-		String sql = """
-				SELECT *
-				FROM food
-				ORDER BY food_id DESC
-			""";
-		List<Map<String, Object>> dataList = jdbc.queryForList(sql);
-		model.addAttribute("dataList", dataList);
-		return "manage_food";
-	}
-	
-	@GetMapping("/manage/nutrition")
-	public String manageNutrition(Model model, HttpServletRequest req, HttpServletResponse res) {
-		if (!isAdmin(req)) return "redirect:/login";
-		String sql = """
-				SELECT *
-				FROM nutrition
-				ORDER BY nutrition_id DESC
-			""";
-		List<Map<String, Object>> dataList = jdbc.queryForList(sql);
-		model.addAttribute("dataList", dataList);
-		return "manage_nutrition";
-	}
-	
-	@GetMapping("/manage/intake")
-	public String manageIntake(Model model, HttpServletRequest req, HttpServletResponse res) {
-		if (!isAdmin(req)) return "redirect:/login";
-		String sql = """
-				SELECT *
-				FROM intake
-				ORDER BY intake_id DESC
-			""";
-		List<Map<String, Object>> dataList = jdbc.queryForList(sql);
-		model.addAttribute("dataList", dataList);
-		return "manage_intake";
-	}
-	
 }
@@ -0,0 +1,170 @@
+package com.example.demo;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ * 	intake / intake_onceからintake_log（食べた記録の統合ログ）への移行を、止めずに行う
+ * 	・表とトリガーはマイグレーション（V2__intake_log.sql）で作り、以降の登録・変更・削除はintake_logにも同じトランザクションで反映される
+ * 	・既存の行はIDの順にchunk-size件ずつ（別々の短いトランザクションで）コピーし、進捗はjob_stateに残す
+ * 	　（途中で止まっても次の実行で続きから。複数のインスタンスがあっても1つだけが実行する）
+ * 	・コピーが終わったら、履歴の表示をintake_logからの読み込みに切り替える（read-enabled=falseなら切り替えない）
+ */
+@Component
+public class IntakeLogMigration {
+
+	static final String JOB_NAME = "intake-log.backfill";
+
+	private static final String PHASE_INTAKE = "intake";
+	private static final String PHASE_INTAKE_ONCE = "intake_once";
+	private static final String PHASE_DONE = "done";
+
+	// 既存行のコピー（1チャンク）
+	// FOR SHAREで、コピー中の行の削除（トリガーの反映）とコピーが入れ違わないようにする
+	// 戻り値はチャンクの最後のID（無ければnull）
+	private static final String INTAKE_CHUNK_SQL = """
+			WITH c AS (
+			    SELECT intake_id, regist_user_id, nutrition_id, eaten_date, eaten_time, qty
+			    FROM intake
+			    WHERE intake_id > ?
+			    ORDER BY intake_id
+			    LIMIT ?
+			    FOR SHARE
+			), ins AS (
+			    INSERT INTO intake_log (regist_user_id, eaten_date, eaten_time, qty, intake_id, nutrition_id)
+			    SELECT regist_user_id, eaten_date, eaten_time, qty, intake_id, nutrition_id
+			    FROM c
+			    ON CONFLICT (intake_id) DO NOTHING
+			)
+			SELECT max(intake_id) FROM c;
+		""";
+
+	private static final String INTAKE_ONCE_CHUNK_SQL = """
+			WITH c AS (
+			    SELECT intake_id, regist_user_id, eaten_date, eaten_time, qty,
+			        food_name, class_name, calorie, protein, lipid, carbo, salt
+			    FROM intake_once
+			    WHERE intake_id > ?
+			    ORDER BY intake_id
+			    LIMIT ?
+			    FOR SHARE
+			), ins AS (
+			    INSERT INTO intake_log (regist_user_id, eaten_date, eaten_time, qty, intake_once_id,
+			        food_name, class_name, calorie, protein, lipid, carbo, salt)
+			    SELECT regist_user_id, eaten_date, eaten_time, qty, intake_id,
+			        food_name, class_name, calorie, protein, lipid, carbo, salt
+			    FROM c
+			    ON CONFLICT (intake_once_id) DO NOTHING
+			)
+			SELECT max(intake_id) FROM c;
+		""";
+
+	private final JdbcTemplate jdbc;
+	private final IntakeRepository intakeRepo;
+	private final JobCoordinator jobCoordinator;
+	private final boolean readEnabled;
+	private final int chunkSize;
+	private final long pauseMillis;
+
+	public IntakeLogMigration(JdbcTemplate jdbc, IntakeRepository intakeRepo, JobCoordinator jobCoordinator,
+			@Value("${app.intake-log.read-enabled:true}") boolean readEnabled,
+			@Value("${app.intake-log.chunk-size:1000}") int chunkSize,
+			@Value("${app.intake-log.pause-ms:100}") long pauseMillis) {
+		this.jdbc = jdbc;
+		this.intakeRepo = intakeRepo;
+		this.jobCoordinator = jobCoordinator;
+		this.readEnabled = readEnabled;
+		this.chunkSize = chunkSize;
+		this.pauseMillis = pauseMillis;
+	}
+
+	/*
+	 * 	移行が終わっていなければ続きを行い、終わっていれば履歴の参照先を切り替えるメソッド
+	 * 	（起動直後から一定間隔で実行。切り替え後は何もしない）
+	 */
+	@Scheduled(initialDelay = 0, fixedDelayString = "${app.intake-log.check-interval-ms:60000}")
+	public void migrate() {
+		if (intakeRepo.isIntakeLogReady()) {
+			return;
+		}
+		if (!isDone()) {
+			// 他のインスタンスが実行中なら、終わった後の実行で切り替える
+			jobCoordinator.runExclusive(JOB_NAME, this::backfill);
+		}
+		if (readEnabled && isDone()) {
+			intakeRepo.setIntakeLogReady(true);
+			System.out.println("[IntakeLogMigration] reading daily records from intake_log");
+		}
+	}
+
+	/*
+	 * 	既存の行をintake_logにコピーするメソッド
+	 * 	（中断された場合は、次の実行でjob_stateの位置から続きを行う）
+	 */
+	public void backfill() {
+		String phase = loadPhase();
+		try {
+			if (phase == null || PHASE_INTAKE.equals(phase)) {
+				long lastId = copy(PHASE_INTAKE, INTAKE_CHUNK_SQL);
+				System.out.println("[IntakeLogMigration] intake done, last id = " + lastId);
+				saveState(PHASE_INTAKE_ONCE, null);
+				phase = PHASE_INTAKE_ONCE;
+			}
+			if (PHASE_INTAKE_ONCE.equals(phase)) {
+				long lastId = copy(PHASE_INTAKE_ONCE, INTAKE_ONCE_CHUNK_SQL);
+				System.out.println("[IntakeLogMigration] intake_once done, last id = " + lastId);
+				saveState(PHASE_DONE, null);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.out.println("[IntakeLogMigration] interrupted (resume next run)");
+		}
+	}
+
+	// 保存した位置の続きから、チャンクごとにコピーする（戻り値は最後のID）
+	private long copy(String phase, String chunkSql) throws InterruptedException {
+		Long lastKey = loadLastKey();
+		long from = lastKey == null ? 0 : lastKey;
+		while (true) {
+			Long last = jdbc.queryForObject(chunkSql, Long.class, from, chunkSize);
+			if (last == null) {
+				return from;
+			}
+			from = last;
+			saveState(phase, from);
+			if (pauseMillis > 0) {
+				Thread.sleep(pauseMillis);
+			}
+		}
+	}
+
+	private boolean isDone() {
+		return PHASE_DONE.equals(loadPhase());
+	}
+
+	private String loadPhase() {
+		List<String> rows = jdbc.queryForList("SELECT phase FROM job_state WHERE job_name = ?", String.class, JOB_NAME);
+		return rows.isEmpty() ? null : rows.get(0);
+	}
+
+	private Long loadLastKey() {
+		List<Long> rows = jdbc.queryForList("SELECT last_key FROM job_state WHERE job_name = ?", Long.class, JOB_NAME);
+		return rows.isEmpty() ? null : rows.get(0);
+	}
+
+	private void saveState(String phase, Long lastKey) {
+		String sql = """
+				INSERT INTO job_state (job_name, phase, last_key)
+				VALUES (?, ?, ?)
+				ON CONFLICT (job_name) DO UPDATE
+				SET phase = EXCLUDED.phase,
+				    last_key = EXCLUDED.last_key,
+				    updated_at = now();
+				""";
+		jdbc.update(sql, JOB_NAME, phase, lastKey);
+	}
+}
@@ -1,25 +1,130 @@
 package com.example.demo;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import jakarta.servlet.http.Cookie;
 
+import org.postgresql.PGConnection;
+import org.postgresql.util.PSQLException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 //import com.example.demo.HomeController.IntakeDetailRow;
+import com.example.demo.HomeController.CsvImportError;
+import com.example.demo.HomeController.CsvImportResult;
+import com.example.demo.HomeController.DailyDetail;
+import com.example.demo.HomeController.DailyNutrition;
+import com.example.demo.HomeController.DailyTotal;
+import com.example.demo.HomeController.FavoriteRow;
+import com.example.demo.HomeController.FoodRow;
+import com.example.demo.HomeController.HistorySeries;
+import com.example.demo.HomeController.HomeData;
+import com.example.demo.HomeController.IntakeBatchResult;
+import com.example.demo.HomeController.IntakeDetail;
+import com.example.demo.HomeController.IntakeOp;
 import com.example.demo.HomeController.IntakeRow;
+import com.example.demo.HomeController.MakerRow;
+import com.example.demo.HomeController.NutritionRow;
 
 @Repository
 public class IntakeRepository {
     private final JdbcTemplate jdbc;
 
+	// 履歴をintake_logから読むか（作成が終わるまではintake / intake_onceから読む）
+	private volatile boolean intakeLogReady;
+
+	// お気に入りのsort_orderの間隔（末尾追加はMAX + この値）
+	public static final int FAVORITE_ORDER_GAP = 1024;
+
+	// 履歴1行（intake / intake_once共通の列）をIntakeRowに変換
+	static final RowMapper<IntakeRow> INTAKE_ROW_MAPPER = (rs, rowNum) -> new IntakeRow(
+		rs.getLong("intake_id"),
+		rs.getLong("intake_once_id"),
+		rs.getString("eaten_date"),
+		rs.getString("eaten_time"),
+		rs.getDouble("qty"),
+		rs.getString("food_name"),
+		rs.getString("class_name"),
+		rs.getInt("calorie")
+	);
+
+	// お気に入り1行をFavoriteRowに変換
+	static final RowMapper<FavoriteRow> FAVORITE_ROW_MAPPER = (rs, rowNum) -> new FavoriteRow(
+		rs.getString("food_name"),
+		rs.getString("class_name"),
+		rs.getLong("favorite_id"),
+		rs.getLong("nutrition_id")
+	);
+
+	// メーカー1行をMakerRowに変換
+	static final RowMapper<MakerRow> MAKER_ROW_MAPPER = (rs, rowNum) -> new MakerRow(
+		rs.getLong("maker_id"),
+		rs.getString("maker_name")
+	);
+
+	// 食品1行（メーカー名付き）をFoodRowに変換
+	static final RowMapper<FoodRow> FOOD_ROW_MAPPER = (rs, rowNum) -> new FoodRow(
+		rs.getLong("food_id"),
+		rs.getString("food_name"),
+		rs.getLong("maker_id"),
+		rs.getString("maker_name")
+	);
+
+	// 栄養情報1行（食品名・メーカー名付き）をNutritionRowに変換
+	static final RowMapper<NutritionRow> NUTRITION_ROW_MAPPER = (rs, rowNum) -> new NutritionRow(
+		rs.getLong("nutrition_id"),
+		rs.getString("class_name"),
+		rs.getInt("calorie"),
+		rs.getBigDecimal("protein"),
+		rs.getBigDecimal("lipid"),
+		rs.getBigDecimal("carbo"),
+		rs.getBigDecimal("salt"),
+		rs.getLong("food_id"),
+		rs.getString("food_name"),
+		rs.getLong("maker_id"),
+		rs.getString("maker_name")
+	);
+
+	// 履歴の詳細1行をIntakeDetailに変換（intake / intake_once共通の列）
+	static final RowMapper<IntakeDetail> INTAKE_DETAIL_MAPPER = (rs, rowNum) -> new IntakeDetail(
+		rs.getLong("intake_id"),
+		rs.getString("eaten_date"),
+		rs.getString("eaten_time"),
+		rs.getDouble("qty"),
+		rs.getString("maker_name"),
+		rs.getString("food_name"),
+		rs.getString("class_name"),
+		rs.getInt("calorie"),
+		rs.getDouble("protein"),
+		rs.getDouble("lipid"),
+		rs.getDouble("carbo"),
+		rs.getDouble("salt")
+	);
+
 	public IntakeRepository(JdbcTemplate jdbc) {
 		this.jdbc = jdbc;
 	}
@@ -35,35 +140,18 @@ public class IntakeRepository {
 	 *	@return	合計カロリー
 	 */
 	public int calcTotalCal(String userId, LocalDate eatenDate) {
+		// daily_summaryの主キー検索（行が無ければ0）
 		String sql = """
 				SELECT
-					SUM(total_kcal) 
-				FROM( 
-				     SELECT
-						COALESCE(SUM(n.calorie * i.qty), 0) AS total_kcal 
-					FROM
-						intake i 
-					INNER JOIN nutrition n 
-						ON n.nutrition_id = i.nutrition_id 
-					LEFT JOIN food f 
-						ON f.food_id = n.food_id 
-					LEFT JOIN maker m 
-						ON m.maker_id = f.maker_id 
-					WHERE
-						i.regist_user_id = ? 
-						AND i.eaten_date = ?
-					UNION ALL 
-						SELECT
-							COALESCE(SUM(i2.calorie * i2.qty), 0) AS total_kcal 
-						FROM
-							intake_once i2 
-						WHERE
-							i2.regist_user_id = ? 
-							AND i2.eaten_date = ?
-					)
+					COALESCE((
+						SELECT kcal
+						FROM daily_summary
+						WHERE regist_user_id = ?
+							AND eaten_date = ?
+					), 0)
 			""";
 		// intはnullを持てないので一度Integerで受ける
-		Integer v = jdbc.queryForObject(sql, Integer.class, userId, eatenDate, userId, eatenDate);
+		Integer v = jdbc.queryForObject(sql, Integer.class, userId, eatenDate);
 		// 三項演算子（条件 ? 真のときの値 : 偽のときの値）
 		return (v == null) ? 0 : v;
 	}
@@ -72,9 +160,9 @@ public class IntakeRepository {
 	 * 	初期表示
 	 * 	お気に入りの取得を行うメソッド
 	 *	@param	userId ユーザーID  
-	 *	@return	List<Map<String, Object>>
+	 *	@return	List<FavoriteRow>
 	 */
-	public List<Map<String, Object>> getFavoriteList(String userId){
+	public List<FavoriteRow> getFavoriteList(String userId){
 		String sql = """
 				SELECT f.food_name, n.class_name, fav.favorite_id, n.nutrition_id
 				FROM favorite fav
@@ -88,45 +176,116 @@ public class IntakeRepository {
 				ORDER BY fav.sort_order ASC, fav.favorite_id ASC
 			""";
 		
-		return jdbc.queryForList(sql, userId);
+		return jdbc.query(sql, FAVORITE_ROW_MAPPER, userId);
 	}
 	
 	/*
 	 * 	初期表示
-	 * 	お気に入りのソート順を更新するメソッド
+	 * 	お気に入りのソート順を更新するメソッド（隣のお気に入りと入れ替える）
 	 *	@param	userId ユーザーID  
 	 *	@param	favoriteId	お気に入りID
 	 *	@param	direction	UP or DOWN
-	 *	@return	List<Map<String, Object>>
 	 */
+	@Transactional
 	public void swapFavorite(String userId, long favoriteId, String direction) {
+		// 同じユーザーの並び替えを直列化（隣の行を最新の状態で探すため、先にロックを取る）
+		lockUser(userId);
+		
+		// 隣の行とsort_orderを入れ替える（同じ値のときは1つずらす）
 		String sql = """
-					SELECT sort_order
-				FROM favorite
-				WHERE favorite_id = ?
-					AND regist_user_id = ?;
+				WITH cur AS (
+					SELECT favorite_id, sort_order
+					FROM favorite
+					WHERE favorite_id = ?
+						AND regist_user_id = ?
+				)
+				, neighbor AS (
+					SELECT f.favorite_id, f.sort_order
+					FROM favorite f, cur
+					WHERE f.regist_user_id = ?
+						AND CASE WHEN ? = 'UP'
+							THEN (f.sort_order, f.favorite_id) < (cur.sort_order, cur.favorite_id)
+							ELSE (f.sort_order, f.favorite_id) > (cur.sort_order, cur.favorite_id)
+						END
+					ORDER BY
+						CASE WHEN ? = 'UP' THEN f.sort_order END DESC
+						, CASE WHEN ? = 'UP' THEN f.favorite_id END DESC
+						, f.sort_order ASC
+						, f.favorite_id ASC
+					LIMIT 1
+				)
+				, pair AS (
+					SELECT
+						cur.favorite_id AS cur_id
+						, neighbor.favorite_id AS neighbor_id
+						, CASE
+							WHEN cur.sort_order <> neighbor.sort_order THEN neighbor.sort_order
+							WHEN ? = 'UP' THEN neighbor.sort_order - 1
+							ELSE neighbor.sort_order + 1
+						END AS cur_order
+						, cur.sort_order AS neighbor_order
+					FROM cur, neighbor
+				)
+				UPDATE favorite f
+				SET sort_order = CASE
+					WHEN f.favorite_id = pair.cur_id THEN pair.cur_order
+					ELSE pair.neighbor_order
+				END
+				FROM pair
+				WHERE f.favorite_id IN (pair.cur_id, pair.neighbor_id)
 			""";
-		int currentOrder = jdbc.queryForObject(sql, Integer.class, favoriteId, userId);
-		
-		int targetOrder;
-
-		if ("UP".equals(direction)) {
-		    targetOrder = currentOrder - 1;
-		} else { // DOWN
-		    targetOrder = currentOrder + 1;
-		}
-		
-		String sql_2 = """
-					UPDATE favorite
-					SET sort_order = CASE
-						WHEN sort_order = ? THEN ?
-						WHEN sort_order = ? THEN ?
-					END
+		String dir = "UP".equals(direction) ? "UP": "DOWN";
+		jdbc.update(sql, favoriteId, userId, userId, dir, dir, dir, dir);
+	}
+	
+	// お気に入りの並びを変更する前にユーザー単位でロックを取る
+	private void lockUser(String userId) {
+		jdbc.query("SELECT user_id FROM users WHERE user_id = ? FOR UPDATE", rs -> {}, userId);
+	}
+	
+	/*
+	 * 	お気に入りのsort_orderを間隔（FAVORITE_ORDER_GAP）を空けて振り直すメソッド
+	 *	@param	userId ユーザーID
+	 *	@return	更新件数
+	 */
+	@Transactional
+	public int rebalanceFavorites(String userId) {
+		lockUser(userId);
+		String sql = """
+				WITH ranked AS (
+					SELECT favorite_id,
+						ROW_NUMBER() OVER (ORDER BY sort_order, favorite_id) * ? AS new_order
+					FROM favorite
 					WHERE regist_user_id = ?
-						AND sort_order IN (?, ?)
-				""";
-			
-		jdbc.update(sql_2, currentOrder, targetOrder, targetOrder, currentOrder, userId, currentOrder, targetOrder);
+				)
+				UPDATE favorite f
+				SET sort_order = ranked.new_order
+				FROM ranked
+				WHERE f.favorite_id = ranked.favorite_id
+					AND f.sort_order <> ranked.new_order
+			""";
+		return jdbc.update(sql, FAVORITE_ORDER_GAP, userId);
+	}
+	
+	/*
+	 * 	振り直しが必要なユーザーを取得するメソッド
+	 * 	（sort_orderが上限に近い・重複がある・間隔が詰まっている）
+	 *	@param	maxOrder sort_orderの上限
+	 *	@param	limit 取得件数
+	 *	@return	user_idの一覧
+	 */
+	public List<String> getFavoriteRebalanceTargets(int maxOrder, int limit) {
+		String sql = """
+				SELECT regist_user_id
+				FROM favorite
+				GROUP BY regist_user_id
+				HAVING MAX(sort_order) > ?
+					OR MIN(sort_order) < 0
+					OR COUNT(*) <> COUNT(DISTINCT sort_order)
+					OR (COUNT(*) > 1 AND MAX(sort_order) - MIN(sort_order) < (COUNT(*) - 1) * 2)
+				LIMIT ?
+			""";
+		return jdbc.queryForList(sql, String.class, maxOrder, limit);
 	}
 	
 	
@@ -139,93 +298,196 @@ public class IntakeRepository {
 	 */
 	// 対象日の履歴の取得
 	public List<IntakeRow> getDailyRecords(String userId, LocalDate eatenDate){
-		String sql = """
-				WITH base AS ( 
-					SELECT
-						i.intake_id
-						, i.eaten_date
-						, i.eaten_time
-						, i.qty
-						, COALESCE(f.food_name, '削除された食品') AS food_name
-						, n.class_name
-						, n.calorie
-					FROM
-						intake i 
-						INNER JOIN nutrition n 
-							ON n.nutrition_id = i.nutrition_id 
-						LEFT JOIN food f 
-								ON f.food_id = n.food_id 
-					WHERE
-						i.regist_user_id = ?
-						AND i.eaten_date = ?
-				) 
-				, once AS ( 
-					SELECT
-						i2.intake_id AS intake_once_id
-						, i2.eaten_date
-						, i2.eaten_time
-						, i2.qty
-						, COALESCE(i2.food_name, '') AS food_name
-						, i2.class_name
-						, i2.calorie 
-					FROM
-						intake_once i2 
-					WHERE
-						i2.regist_user_id = ?
-						AND i2.eaten_date = ?
-				) 
-				SELECT
-					COALESCE(b.intake_id, o.intake_once_id) AS intake_id
-					, CASE 
-						WHEN b.intake_id IS NULL 
-						THEN o.intake_once_id 
-					END AS intake_once_id
-					, COALESCE(b.eaten_date, o.eaten_date) AS eaten_date
-					, COALESCE(b.eaten_time, o.eaten_time) AS eaten_time
-					, COALESCE(b.qty, o.qty) AS qty
-					, COALESCE(b.food_name, o.food_name, '') AS food_name
-					, COALESCE(b.class_name, o.class_name, '簡易登録') AS class_name
-					, COALESCE(b.calorie, o.calorie) AS calorie 
-				FROM
-					base b 
-					FULL OUTER JOIN once o 
-						ON b.eaten_date = o.eaten_date 
-						AND b.eaten_time = o.eaten_time 
-						AND b.qty = o.qty 
-						AND b.food_name = o.food_name 
-						AND b.class_name = o.class_name 
-						AND b.calorie = o.calorie 
+		boolean fromLog = intakeLogReady;
+		String sql = dailyRecordsSql(fromLog) + """
 				ORDER BY
-					eaten_time ASC;
-				""";
+					eaten_time ASC
+			""";
 		
 		// RowMapperで結果をList<IntakeRow>型で取得
 		List<IntakeRow> records = jdbc.query(
 			sql,
-			(rs, rowNum) -> new IntakeRow(
-			rs.getLong("intake_id"),
-			rs.getLong("intake_once_id"),
-			rs.getString("eaten_date"),
-			rs.getString("eaten_time"),
-			rs.getDouble("qty"),
-			rs.getString("food_name"),
-			rs.getString("class_name"),
-			rs.getInt("calorie")
-			),
-			userId, eatenDate, userId, eatenDate
+			INTAKE_ROW_MAPPER,
+			dailyRecordsArgs(fromLog, userId, eatenDate)
 		);
 		return records;
 	}
 	
+	// 対象日の履歴（intake_logの(regist_user_id, eaten_date, eaten_time)の範囲検索1回）
+	// intake_idはintake / intake_onceのID、intake_once_idは簡易登録の場合だけ同じ値（それ以外は0）
+	private static final String DAILY_RECORDS_LOG_SQL = """
+			SELECT
+				0 AS kind
+				, COALESCE(l.intake_id, l.intake_once_id) AS intake_id
+				, COALESCE(l.intake_once_id, 0) AS intake_once_id
+				, l.eaten_date
+				, l.eaten_time
+				, l.qty
+				, CASE
+					WHEN l.intake_once_id IS NOT NULL THEN COALESCE(l.food_name, '')
+					ELSE COALESCE(f.food_name, '削除された食品')
+				END AS food_name
+				, CASE
+					WHEN l.intake_once_id IS NOT NULL THEN COALESCE(l.class_name, '簡易登録')
+					ELSE n.class_name
+				END AS class_name
+				, COALESCE(n.calorie, l.calorie) AS calorie
+				, NULL::integer AS favorite_id
+				, NULL::integer AS nutrition_id
+				, NULL::integer AS sort_order
+			FROM
+				intake_log l 
+				LEFT JOIN nutrition n 
+					ON n.nutrition_id = l.nutrition_id 
+				LEFT JOIN food f 
+					ON f.food_id = n.food_id 
+			WHERE
+				l.regist_user_id = ?
+				AND l.eaten_date = ?
+				-- 栄養情報が削除された記録は表示しない（intakeとnutritionの内部結合と同じ）
+				AND (l.intake_once_id IS NOT NULL OR n.nutrition_id IS NOT NULL)
+		""";
+	
+	// 対象日の履歴（intake_logの作成が終わるまで。intake / intake_onceをそれぞれ範囲検索）
+	private static final String DAILY_RECORDS_LEGACY_SQL = """
+			SELECT
+				0 AS kind
+				, i.intake_id
+				, 0 AS intake_once_id
+				, i.eaten_date
+				, i.eaten_time
+				, i.qty
+				, COALESCE(f.food_name, '削除された食品') AS food_name
+				, n.class_name
+				, n.calorie
+				, NULL::integer AS favorite_id
+				, NULL::integer AS nutrition_id
+				, NULL::integer AS sort_order
+			FROM
+				intake i 
+				INNER JOIN nutrition n 
+					ON n.nutrition_id = i.nutrition_id 
+				LEFT JOIN food f 
+					ON f.food_id = n.food_id 
+			WHERE
+				i.regist_user_id = ?
+				AND i.eaten_date = ?
+			UNION ALL 
+			SELECT
+				0
+				, i2.intake_id
+				, i2.intake_id
+				, i2.eaten_date
+				, i2.eaten_time
+				, i2.qty
+				, COALESCE(i2.food_name, '')
+				, COALESCE(i2.class_name, '簡易登録')
+				, i2.calorie
+				, NULL
+				, NULL
+				, NULL
+			FROM
+				intake_once i2 
+			WHERE
+				i2.regist_user_id = ?
+				AND i2.eaten_date = ?
+		""";
+	
+	private static String dailyRecordsSql(boolean fromLog) {
+		return fromLog ? DAILY_RECORDS_LOG_SQL : DAILY_RECORDS_LEGACY_SQL;
+	}
+	
+	private static Object[] dailyRecordsArgs(boolean fromLog, String userId, LocalDate eatenDate) {
+		return fromLog
+				? new Object[] { userId, eatenDate }
+				: new Object[] { userId, eatenDate, userId, eatenDate };
+	}
+	
+	/*
+	 * 	履歴の参照先をintake_logに切り替えるメソッド（IntakeLogMigrationが作成完了後に呼ぶ）
+	 *	@param	ready true：intake_logから読む / false：intake / intake_onceから読む
+	 */
+	public void setIntakeLogReady(boolean ready) {
+		this.intakeLogReady = ready;
+	}
+	
+	public boolean isIntakeLogReady() {
+		return intakeLogReady;
+	}
+	
+	/*
+	 * 	初期表示
+	 * 	対象日の履歴とお気に入りを1回のクエリでまとめて取得するメソッド
+	 * 	kind=0：履歴（intake_log。作成が終わるまではintake / intake_once）、kind=1：お気に入り
+	 *	@param	userId ユーザーID  
+	 *	@param	eatenDate 食べた日付
+	 *	@param	withFavorites false：お気に入りは取得しない（キャッシュ済みの場合）
+	 *	@return	HomeData（合計カロリーは取得した履歴から計算）
+	 */
+	public HomeData getHomeData(String userId, LocalDate eatenDate, boolean withFavorites) {
+		boolean fromLog = intakeLogReady;
+		String intakeSql = dailyRecordsSql(fromLog);
+		String favoriteSql = """
+				UNION ALL 
+				SELECT
+					1
+					, NULL
+					, NULL
+					, NULL
+					, NULL
+					, NULL
+					, f.food_name
+					, n.class_name
+					, NULL
+					, fav.favorite_id
+					, n.nutrition_id
+					, fav.sort_order
+				FROM favorite fav
+				INNER JOIN nutrition n 
+					ON fav.nutrition_id = n.nutrition_id
+				INNER JOIN food f
+					ON n.food_id = f.food_id
+				INNER JOIN maker m
+					ON f.maker_id = m.maker_id
+				WHERE fav.regist_user_id = ?
+			""";
+		String orderSql = """
+				ORDER BY
+					kind ASC
+					, eaten_time ASC
+					, sort_order ASC
+					, favorite_id ASC
+			""";
+		
+		List<IntakeRow> records = new ArrayList<>();
+		List<FavoriteRow> favorites = new ArrayList<>();
+		RowCallbackHandler handler = rs -> {
+			if (rs.getInt("kind") == 0) {
+				records.add(INTAKE_ROW_MAPPER.mapRow(rs, records.size()));
+			} else {
+				favorites.add(FAVORITE_ROW_MAPPER.mapRow(rs, favorites.size()));
+			}
+		};
+		List<Object> args = new ArrayList<>(List.of(dailyRecordsArgs(fromLog, userId, eatenDate)));
+		if (withFavorites) {
+			args.add(userId);
+			jdbc.query(intakeSql + favoriteSql + orderSql, handler, args.toArray());
+		} else {
+			jdbc.query(intakeSql + orderSql, handler, args.toArray());
+		}
+		
+		return HomeData.of(records, favorites);
+	}
+	
 	
 	/*
 	 * 	詳細選択時
 	 * 	履歴の詳細取得を行うメソッド
 	 *	@param	userId ユーザーID  
 	 *	@param	intakeId 食べたID
-	 *	@return	Map<String, Object>
+	 *	@return	IntakeDetail
 	 */
-	public Map<String, Object> getIntakeDetail(String userId, long intakeId) {
+	public IntakeDetail getIntakeDetail(String userId, long intakeId) {
 		String sql = """
 			    SELECT
 			      i.intake_id,
@@ -251,27 +513,7 @@ public class IntakeRepository {
 			      AND i.regist_user_id = ?
 			""";
 		
-		Map<String, Object> intake = jdbc.queryForObject(
-			    sql,
-			    new Object[]{ intakeId, userId },
-			    (rs, rowNum) -> {
-			        Map<String, Object> map = new HashMap<>();
-			        map.put("intakeId", rs.getLong("intake_id"));
-			        map.put("eatenDate", rs.getString("eaten_date"));
-			        map.put("eatenTime", rs.getString("eaten_time"));
-			        map.put("qty", rs.getDouble("qty"));
-			        map.put("makerName", rs.getString("maker_name"));
-			        map.put("foodName", rs.getString("food_name"));
-			        map.put("className", rs.getString("class_name"));
-			        map.put("calorie", rs.getInt("calorie"));
-			        map.put("protein", rs.getDouble("protein"));
-			        map.put("lipid", rs.getDouble("lipid"));
-			        map.put("carbo", rs.getDouble("carbo"));
-			        map.put("salt", rs.getDouble("salt"));
-			        return map;
-			    }
-			);
-		return intake;
+		return jdbc.queryForObject(sql, INTAKE_DETAIL_MAPPER, intakeId, userId);
 	}
 	
 	/*
@@ -279,9 +521,9 @@ public class IntakeRepository {
 	 * 	履歴の詳細取得を行うメソッド
 	 *	@param	userId ユーザーID  
 	 *	@param	intakeId 食べたID
-	 *	@return	Map<String, Object>
+	 *	@return	IntakeDetail
 	 */
-	public Map<String, Object> getIntakeOnceDetail(String userId, long intakeId) {
+	public IntakeDetail getIntakeOnceDetail(String userId, long intakeId) {
 		String sql = """
 			    SELECT
 			      intake_id,
@@ -301,75 +543,375 @@ public class IntakeRepository {
 			      AND regist_user_id = ?
 			""";
 		
-		Map<String, Object> intake = jdbc.queryForObject(
-			    sql,
-			    new Object[]{ intakeId, userId },
-			    (rs, rowNum) -> {
-			        Map<String, Object> map = new HashMap<>();
-			        map.put("intakeOnceId", rs.getLong("intake_id"));
-			        map.put("eatenDate", rs.getString("eaten_date"));
-			        map.put("eatenTime", rs.getString("eaten_time"));
-			        map.put("qty", rs.getDouble("qty"));
-			        map.put("makerName", rs.getString("maker_name"));
-			        map.put("foodName", rs.getString("food_name"));
-			        map.put("className", rs.getString("class_name"));
-			        map.put("calorie", rs.getInt("calorie"));
-			        map.put("protein", rs.getDouble("protein"));
-			        map.put("lipid", rs.getDouble("lipid"));
-			        map.put("carbo", rs.getDouble("carbo"));
-			        map.put("salt", rs.getDouble("salt"));
-			        return map;
-			    }
-			);
-		return intake;
+		return jdbc.queryForObject(sql, INTAKE_DETAIL_MAPPER, intakeId, userId);
 	}
 	
 	/*--------------------------------------
  		デイリー詳細画面
 	--------------------------------------*/
-	public List<Map<String, Object>> getDailyTotalNutrition(String userId, LocalDate targetDate){
+	public DailyNutrition getDailyTotalNutrition(String userId, LocalDate targetDate){
+		return getDailyDetail(userId, targetDate).nutrition();
+	}
+	
+	/*
+	 * 	デイリー詳細画面の合計カロリーとPFCの合計を1回で取得するメソッド
+	 * 	（どちらもdaily_summaryの同じ行なので、主キー検索1回で読む）
+	 *	@param	userId ユーザーID
+	 *	@param	targetDate 日付
+	 *	@return	DailyDetail（行が無ければすべて0）
+	 */
+	public DailyDetail getDailyDetail(String userId, LocalDate targetDate) {
+		// daily_summaryの主キー検索（行が無くても0で1行返す）
 		String sql = """
 				SELECT
-					COALESCE(SUM(protein), 0) AS protein_g
+					COALESCE(SUM(kcal), 0) AS kcal
+					, COALESCE(SUM(protein), 0) AS protein_g
 					, COALESCE(SUM(lipid), 0) AS lipid_g
 					, COALESCE(SUM(carbo), 0) AS carbo_g
 					, COALESCE(SUM(salt), 0) AS salt_g
 					, COALESCE(SUM(protein * 4), 0) AS protein_kcal
 					, COALESCE(SUM(lipid * 9), 0) AS lipid_kcal
 					, COALESCE(SUM(carbo * 4), 0) AS carbo_kcal
-					, COALESCE(SUM(protein * 4 + lipid * 9 + carbo * 4), 0) AS pfc_kcal_total 
-				FROM( 
-					SELECT
-						n.protein * i.qty AS protein
-						, n.lipid * i.qty AS lipid
-						, n.carbo * i.qty AS carbo
-						, n.salt  * i.qty AS salt
-				    FROM
-						intake i 
-					INNER JOIN nutrition n 
-						ON i.nutrition_id = n.nutrition_id 
-					INNER JOIN food f 
-						ON n.food_id = f.food_id 
-					INNER JOIN maker m 
-						ON f.maker_id = m.maker_id 
-					WHERE
-						i.regist_user_id = ?
-						AND i.eaten_date = ?
-					UNION ALL 
-						SELECT
-							i2.protein
-							, i2.lipid
-							, i2.carbo
-							, i2.salt 
-						FROM
-							intake_once i2 
-						WHERE
-							i2.regist_user_id = ?
-							AND i2.eaten_date = ?
-				) T1
+					, COALESCE(SUM(pfc_kcal), 0) AS pfc_kcal_total 
+				FROM
+					daily_summary
+				WHERE
+					regist_user_id = ?
+					AND eaten_date = ?
+			""";
+		
+		return jdbc.queryForObject(sql, (rs, rowNum) -> new DailyDetail(
+				rs.getInt("kcal"),
+				new DailyNutrition(
+					rs.getBigDecimal("protein_g"),
+					rs.getBigDecimal("lipid_g"),
+					rs.getBigDecimal("carbo_g"),
+					rs.getBigDecimal("salt_g"),
+					rs.getBigDecimal("protein_kcal"),
+					rs.getBigDecimal("lipid_kcal"),
+					rs.getBigDecimal("carbo_kcal"),
+					rs.getBigDecimal("pfc_kcal_total")
+				)
+			), userId, targetDate);
+	}
+	
+	/*--------------------------------------
+ 		期間集計
+	--------------------------------------*/
+	/*
+	 * 	期間内の日ごとの合計を取得するメソッド（記録の無い日も0で返す）
+	 *	@param	userId ユーザーID
+	 *	@param	from 開始日
+	 *	@param	to 終了日
+	 *	@return	HistorySeries
+	 */
+	public HistorySeries getHistory(String userId, LocalDate from, LocalDate to) {
+		String sql = """
+				SELECT
+					d::date AS eaten_date
+					, COALESCE(s.kcal, 0) AS kcal
+					, COALESCE(s.protein, 0) AS protein
+					, COALESCE(s.lipid, 0) AS lipid
+					, COALESCE(s.carbo, 0) AS carbo
+					, COALESCE(s.salt, 0) AS salt
+				FROM
+					generate_series(?::date, ?::date, interval '1 day') d
+				LEFT JOIN daily_summary s
+					ON s.regist_user_id = ?
+					AND s.eaten_date = d::date
+				ORDER BY
+					d
+			""";
+		
+		List<DailyTotal> days = jdbc.query(
+			sql,
+			(rs, rowNum) -> new DailyTotal(
+			rs.getString("eaten_date"),
+			rs.getInt("kcal"),
+			rs.getBigDecimal("protein"),
+			rs.getBigDecimal("lipid"),
+			rs.getBigDecimal("carbo"),
+			rs.getBigDecimal("salt")
+			),
+			from, to, userId
+		);
+		return new HistorySeries(from.toString(), to.toString(), days);
+	}
+	
+	/*--------------------------------------
+ 		日別集計（daily_summary）
+	--------------------------------------*/
+	// 日別集計の元になる行
+	// kcalはcalcTotalCal（nutritionのみ内部結合）、PFC・塩分はgetDailyTotalNutrition（food・makerも内部結合）と同じ条件
+	private static final String DAILY_ROWS_SQL = """
+			SELECT
+				i.regist_user_id
+				, i.eaten_date
+				, n.calorie * i.qty AS kcal
+				, CASE WHEN m.maker_id IS NOT NULL THEN n.protein * i.qty END AS protein
+				, CASE WHEN m.maker_id IS NOT NULL THEN n.lipid * i.qty END AS lipid
+				, CASE WHEN m.maker_id IS NOT NULL THEN n.carbo * i.qty END AS carbo
+				, CASE WHEN m.maker_id IS NOT NULL THEN n.salt * i.qty END AS salt
+			FROM
+				intake i 
+			INNER JOIN nutrition n 
+				ON n.nutrition_id = i.nutrition_id 
+			LEFT JOIN food f 
+				ON f.food_id = n.food_id 
+			LEFT JOIN maker m 
+				ON m.maker_id = f.maker_id 
+			%1$s
+			UNION ALL 
+			SELECT
+				i2.regist_user_id
+				, i2.eaten_date
+				, i2.calorie * i2.qty
+				, i2.protein
+				, i2.lipid
+				, i2.carbo
+				, i2.salt
+			FROM
+				intake_once i2 
+			%2$s
+		""";
+	
+	/*
+	 * 	指定した日付の日別集計を再計算するメソッド
+	 *	@param	userId ユーザーID
+	 *	@param	dates 再計算する日付
+	 *	@return	再計算した日付
+	 */
+	@Transactional
+	public List<LocalDate> refreshDailySummary(String userId, LocalDate... dates) {
+		if (dates.length == 0) {
+			return List.of();
+		}
+		String values = String.join(", ", Collections.nCopies(dates.length, "(?::date)"));
+		return refreshDailySummary(userId, "SELECT DISTINCT eaten_date FROM (VALUES " + values + ") v(eaten_date)", (Object[]) dates);
+	}
+	
+	/*
+	 * 	DBの現在日付（intake_onceの登録日のデフォルト値）の日別集計を再計算するメソッド
+	 *	@param	userId ユーザーID
+	 *	@return	再計算した日付
+	 */
+	@Transactional
+	public List<LocalDate> refreshDailySummaryCurrentDate(String userId) {
+		return refreshDailySummary(userId, "SELECT CURRENT_DATE AS eaten_date");
+	}
+	
+	/*
+	 * 	栄養情報を使っている日の日別集計を再計算するメソッド
+	 *	@param	userId ユーザーID
+	 *	@param	nutritionId 栄養ID
+	 *	@return	再計算した日付
+	 */
+	@Transactional
+	public List<LocalDate> refreshDailySummaryByNutrition(String userId, long nutritionId) {
+		String dates = """
+				SELECT DISTINCT eaten_date
+				FROM intake
+				WHERE regist_user_id = ?
+					AND nutrition_id = ?
+			""";
+		return refreshDailySummary(userId, dates, userId, nutritionId);
+	}
+	
+	/*
+	 * 	食品配下の栄養情報を使っている日の日別集計を再計算するメソッド
+	 *	@param	userId ユーザーID
+	 *	@param	foodId 食品ID
+	 *	@return	再計算した日付
+	 */
+	@Transactional
+	public List<LocalDate> refreshDailySummaryByFood(String userId, long foodId) {
+		String dates = """
+				SELECT DISTINCT i.eaten_date
+				FROM intake i
+				INNER JOIN nutrition n
+					ON n.nutrition_id = i.nutrition_id
+				WHERE i.regist_user_id = ?
+					AND n.food_id = ?
+			""";
+		return refreshDailySummary(userId, dates, userId, foodId);
+	}
+	
+	/*
+	 * 	メーカー配下の栄養情報を使っている日の日別集計を再計算するメソッド
+	 *	@param	userId ユーザーID
+	 *	@param	makerId メーカーID
+	 *	@return	再計算した日付
+	 */
+	@Transactional
+	public List<LocalDate> refreshDailySummaryByMaker(String userId, long makerId) {
+		String dates = """
+				SELECT DISTINCT i.eaten_date
+				FROM intake i
+				INNER JOIN nutrition n
+					ON n.nutrition_id = i.nutrition_id
+				INNER JOIN food f
+					ON f.food_id = n.food_id
+				WHERE i.regist_user_id = ?
+					AND f.maker_id = ?
 			""";
+		return refreshDailySummary(userId, dates, userId, makerId);
+	}
+	
+	// datesSqlで選んだ日付の集計をUPSERTする
+	// 同じユーザーの再計算は1つずつ行う（ロックを取った後の文で集計するので、先にコミットされた書き込みは必ず含まれる。
+	// ロックなしだと、後から始まった再計算が先にコミットされ、古い合計で上書きされることがある）
+	private List<LocalDate> refreshDailySummary(String userId, String datesSql, Object... dateArgs) {
+		jdbc.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> {}, "daily_summary:" + userId);
+		String rows = DAILY_ROWS_SQL.formatted(
+				"WHERE i.regist_user_id = ? AND i.eaten_date IN (SELECT eaten_date FROM d)",
+				"WHERE i2.regist_user_id = ? AND i2.eaten_date IN (SELECT eaten_date FROM d)");
+		String sql = """
+				WITH d AS (
+					%s
+				)
+				, t AS (
+					%s
+				)
+				INSERT INTO daily_summary (regist_user_id, eaten_date, kcal, protein, lipid, carbo, salt, pfc_kcal)
+				SELECT
+					?
+					, d.eaten_date
+					, COALESCE(SUM(t.kcal), 0)
+					, COALESCE(SUM(t.protein), 0)
+					, COALESCE(SUM(t.lipid), 0)
+					, COALESCE(SUM(t.carbo), 0)
+					, COALESCE(SUM(t.salt), 0)
+					, COALESCE(SUM(t.protein * 4 + t.lipid * 9 + t.carbo * 4), 0)
+				FROM
+					d
+				LEFT JOIN t
+					ON t.eaten_date = d.eaten_date
+				GROUP BY
+					d.eaten_date
+				ON CONFLICT (regist_user_id, eaten_date) DO UPDATE
+				SET kcal = EXCLUDED.kcal
+					, protein = EXCLUDED.protein
+					, lipid = EXCLUDED.lipid
+					, carbo = EXCLUDED.carbo
+					, salt = EXCLUDED.salt
+					, pfc_kcal = EXCLUDED.pfc_kcal
+				RETURNING eaten_date
+			""".formatted(datesSql, rows);
 		
-		return jdbc.queryForList(sql, userId, targetDate, userId, targetDate);
+		List<Object> args = new ArrayList<>(List.of(dateArgs));
+		args.add(userId);
+		args.add(userId);
+		args.add(userId);
+		return jdbc.queryForList(sql, LocalDate.class, args.toArray());
+	}
+	
+	/*
+	 * 	日別集計を全件作り直すメソッド
+	 *	@return	作成件数
+	 */
+	@Transactional
+	public int rebuildDailySummary() {
+		jdbc.update("DELETE FROM daily_summary");
+		String sql = """
+				INSERT INTO daily_summary (regist_user_id, eaten_date, kcal, protein, lipid, carbo, salt, pfc_kcal)
+				SELECT
+					t.regist_user_id
+					, t.eaten_date
+					, COALESCE(SUM(t.kcal), 0)
+					, COALESCE(SUM(t.protein), 0)
+					, COALESCE(SUM(t.lipid), 0)
+					, COALESCE(SUM(t.carbo), 0)
+					, COALESCE(SUM(t.salt), 0)
+					, COALESCE(SUM(t.protein * 4 + t.lipid * 9 + t.carbo * 4), 0)
+				FROM (
+					%s
+				) t
+				GROUP BY
+					t.regist_user_id
+					, t.eaten_date
+			""".formatted(DAILY_ROWS_SQL.formatted("", ""));
+		return jdbc.update(sql);
+	}
+	
+	/*
+	 * 	日別集計と元データを突き合わせるメソッド
+	 *	@return	不一致の一覧（ユーザーID・日付・正しい値・集計の値）
+	 */
+	public List<Map<String, Object>> verifyDailySummary() {
+		String sql = """
+				WITH live AS (
+					SELECT
+						t.regist_user_id
+						, t.eaten_date
+						, COALESCE(SUM(t.kcal), 0) AS kcal
+						, COALESCE(SUM(t.protein), 0) AS protein
+						, COALESCE(SUM(t.lipid), 0) AS lipid
+						, COALESCE(SUM(t.carbo), 0) AS carbo
+						, COALESCE(SUM(t.salt), 0) AS salt
+						, COALESCE(SUM(t.protein * 4 + t.lipid * 9 + t.carbo * 4), 0) AS pfc_kcal
+					FROM (
+						%s
+					) t
+					GROUP BY
+						t.regist_user_id
+						, t.eaten_date
+				)
+				SELECT
+					COALESCE(l.regist_user_id, s.regist_user_id) AS regist_user_id
+					, COALESCE(l.eaten_date, s.eaten_date) AS eaten_date
+					, COALESCE(l.kcal, 0) AS expected_kcal
+					, COALESCE(s.kcal, 0) AS actual_kcal
+					, COALESCE(l.pfc_kcal, 0) AS expected_pfc_kcal
+					, COALESCE(s.pfc_kcal, 0) AS actual_pfc_kcal
+				FROM
+					live l
+				FULL OUTER JOIN daily_summary s
+					ON s.regist_user_id = l.regist_user_id
+					AND s.eaten_date = l.eaten_date
+				WHERE
+					COALESCE(l.kcal, 0) <> COALESCE(s.kcal, 0)
+					OR COALESCE(l.protein, 0) <> COALESCE(s.protein, 0)
+					OR COALESCE(l.lipid, 0) <> COALESCE(s.lipid, 0)
+					OR COALESCE(l.carbo, 0) <> COALESCE(s.carbo, 0)
+					OR COALESCE(l.salt, 0) <> COALESCE(s.salt, 0)
+					OR COALESCE(l.pfc_kcal, 0) <> COALESCE(s.pfc_kcal, 0)
+				ORDER BY
+					1, 2
+			""".formatted(DAILY_ROWS_SQL.formatted("", ""));
+		return jdbc.queryForList(sql);
+	}
+	
+	// 日別集計が空かどうか（初回起動時の作成判定用）
+	public boolean isDailySummaryEmpty() {
+		String sql = """
+				SELECT NOT EXISTS(SELECT 1 FROM daily_summary)
+					AND (EXISTS(SELECT 1 FROM intake) OR EXISTS(SELECT 1 FROM intake_once))
+			""";
+		return jdbc.queryForObject(sql, Boolean.class);
+	}
+	
+	/*
+	 * 	履歴の日付を取得するメソッド（日付変更・削除時の集計用）
+	 *	@param	userId ユーザーID
+	 *	@param	intakeId intakeId
+	 *	@return	食べた日付（無ければnull）
+	 */
+	public LocalDate getIntakeDate(String userId, long intakeId) {
+		String sql = "SELECT eaten_date FROM intake WHERE intake_id = ? AND regist_user_id = ?";
+		List<LocalDate> dates = jdbc.queryForList(sql, LocalDate.class, intakeId, userId);
+		return dates.isEmpty() ? null : dates.get(0);
+	}
+	
+	/*
+	 * 	簡易登録の履歴の日付を取得するメソッド（日付変更・削除時の集計用）
+	 *	@param	userId ユーザーID
+	 *	@param	intakeOnceId intakeOnceId
+	 *	@return	食べた日付（無ければnull）
+	 */
+	public LocalDate getIntakeOnceDate(String userId, long intakeOnceId) {
+		String sql = "SELECT eaten_date FROM intake_once WHERE intake_id = ? AND regist_user_id = ?";
+		List<LocalDate> dates = jdbc.queryForList(sql, LocalDate.class, intakeOnceId, userId);
+		return dates.isEmpty() ? null : dates.get(0);
 	}
 	
 	
@@ -440,6 +982,469 @@ public class IntakeRepository {
 		return jdbc.update(sql, eatenDate, eatenTime, intakeOnceId, userId);
 	}
 	
+/*--------------------------------------
+ 	一括更新（intake / intake_once）
+--------------------------------------*/
+	private static final String BATCH_INS_INTAKE_SQL = """
+			INSERT INTO intake (regist_user_id, nutrition_id, eaten_date, eaten_time, qty)
+			SELECT ?, n.nutrition_id, ?, ?, ?
+			FROM nutrition n
+			WHERE n.nutrition_id = ?
+				AND n.regist_user_id = ?
+		""";
+	private static final String BATCH_INS_INTAKE_ONCE_SQL = """
+			INSERT INTO intake_once (food_name, calorie, protein, lipid, carbo, salt, regist_user_id, eaten_date, eaten_time, qty)
+			VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+		""";
+	private static final String BATCH_UPD_INTAKE_SQL = """
+			UPDATE intake
+			SET eaten_date = ?, eaten_time = ?
+			WHERE intake_id = ? AND regist_user_id = ?
+		""";
+	private static final String BATCH_UPD_INTAKE_ONCE_SQL = """
+			UPDATE intake_once
+			SET eaten_date = ?, eaten_time = ?
+			WHERE intake_id = ? AND regist_user_id = ?
+		""";
+	private static final String BATCH_DEL_INTAKE_SQL = "DELETE FROM intake WHERE intake_id = ? AND regist_user_id = ?";
+	private static final String BATCH_DEL_INTAKE_ONCE_SQL = "DELETE FROM intake_once WHERE intake_id = ? AND regist_user_id = ?";
+
+	/*
+	 * 	登録・更新・削除をまとめて適用するメソッド（呼び出し側のトランザクション内で実行する）
+	 * 	・送られてきた順に適用する（1件ずつ送った場合と同じ結果。「更新→削除」「削除→更新」も順番どおり）
+	 * 	・連続する同じ種類の操作だけを1回のバッチ実行にまとめる
+	 * 	・登録する栄養IDが自分のものでなければIllegalArgumentException（全体をロールバック）
+	 * 	・更新・削除の対象が無い場合は件数0（送り直しで同じ操作が来ても失敗にしない）
+	 *	@param	userId ユーザーID
+	 *	@param	ops 操作の一覧（入力チェック済み）
+	 *	@return	IntakeBatchResult（datesは日別集計の再計算が必要な日付）
+	 */
+	public IntakeBatchResult applyIntakeBatch(String userId, List<IntakeOp> ops) {
+		int[] results = new int[ops.size()];
+		Set<LocalDate> dates = new TreeSet<>();
+		LocalDateTime now = LocalDateTime.now();
+
+		// 入力の順に、同じSQLが続く間を1つのバッチにする
+		List<BatchGroup> runs = new ArrayList<>();
+		List<Long> intakeIds = new ArrayList<>();
+		List<Long> intakeOnceIds = new ArrayList<>();
+		for (int i = 0; i < ops.size(); i++) {
+			IntakeOp op = ops.get(i);
+			boolean once = IntakeOp.KIND_INTAKE_ONCE.equals(op.kind());
+			String sql;
+			Object[] args;
+			switch (op.op()) {
+			case IntakeOp.OP_INSERT -> {
+				LocalDate eatenDate = (op.eatenDate() == null) ? now.toLocalDate() : op.eatenDate();
+				LocalTime eatenTime = (op.eatenTime() == null) ? now.toLocalTime() : op.eatenTime();
+				BigDecimal qty = (op.qty() == null) ? BigDecimal.ONE : op.qty();
+				if (once) {
+					sql = BATCH_INS_INTAKE_ONCE_SQL;
+					args = new Object[] { op.foodName(), op.calorie(), op.protein(), op.lipid(), op.carbo(), op.salt(),
+							userId, eatenDate, eatenTime, qty };
+				} else {
+					sql = BATCH_INS_INTAKE_SQL;
+					args = new Object[] { userId, eatenDate, eatenTime, qty, op.nutritionId(), userId };
+				}
+				dates.add(eatenDate);
+			}
+			case IntakeOp.OP_UPDATE -> {
+				sql = once ? BATCH_UPD_INTAKE_ONCE_SQL : BATCH_UPD_INTAKE_SQL;
+				args = new Object[] { op.eatenDate(), op.eatenTime(), op.id(), userId };
+				(once ? intakeOnceIds : intakeIds).add(op.id());
+				dates.add(op.eatenDate());
+			}
+			default -> {
+				sql = once ? BATCH_DEL_INTAKE_ONCE_SQL : BATCH_DEL_INTAKE_SQL;
+				args = new Object[] { op.id(), userId };
+				(once ? intakeOnceIds : intakeIds).add(op.id());
+			}
+			}
+			BatchGroup run = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+			if (run == null || !run.sql.equals(sql)) {
+				run = new BatchGroup(sql);
+				runs.add(run);
+			}
+			run.add(i, args);
+		}
+
+		// 更新・削除する行の変更前の日付
+		dates.addAll(getEatenDates("intake", userId, intakeIds));
+		dates.addAll(getEatenDates("intake_once", userId, intakeOnceIds));
+
+		for (BatchGroup run : runs) {
+			run.execute(results);
+			if (run.sql.equals(BATCH_INS_INTAKE_SQL)) {
+				for (int index : run.indexes) {
+					if (results[index] == 0) {
+						throw new IllegalArgumentException("栄養情報が見つかりません（nutritionId=" + ops.get(index).nutritionId() + "）");
+					}
+				}
+			}
+		}
+
+		int inserted = 0;
+		int updated = 0;
+		int deleted = 0;
+		for (int i = 0; i < ops.size(); i++) {
+			switch (ops.get(i).op()) {
+			case IntakeOp.OP_INSERT -> inserted += results[i];
+			case IntakeOp.OP_UPDATE -> updated += results[i];
+			default -> deleted += results[i];
+			}
+		}
+		return new IntakeBatchResult(inserted, updated, deleted, Arrays.stream(results).boxed().toList(), List.copyOf(dates));
+	}
+
+	// 指定したIDの行の食べた日付（重複なし）
+	private List<LocalDate> getEatenDates(String table, String userId, List<Long> ids) {
+		if (ids.isEmpty()) {
+			return List.of();
+		}
+		String sql = "SELECT DISTINCT eaten_date FROM " + table + " WHERE regist_user_id = ? AND intake_id = ANY(?)";
+		return jdbc.queryForList(sql, LocalDate.class, userId, ids.toArray(Long[]::new));
+	}
+
+	// 続けて同じSQLで実行する操作をまとめたもの（indexesは入力の何番目か）
+	private final class BatchGroup {
+		private final String sql;
+		private final List<Object[]> args = new ArrayList<>();
+		private final List<Integer> indexes = new ArrayList<>();
+
+		private BatchGroup(String sql) {
+			this.sql = sql;
+		}
+
+		private void add(int index, Object... values) {
+			indexes.add(index);
+			args.add(values);
+		}
+
+		private void execute(int[] results) {
+			if (args.isEmpty()) {
+				return;
+			}
+			int[] counts = jdbc.batchUpdate(sql, args);
+			for (int i = 0; i < counts.length; i++) {
+				// 件数が返らないドライバ設定（SUCCESS_NO_INFO）は1件とみなす
+				results[indexes.get(i)] = (counts[i] == Statement.SUCCESS_NO_INFO) ? 1 : counts[i];
+			}
+		}
+	}
+	
+/*--------------------------------------
+ 	CSV取込
+--------------------------------------*/
+	// 取込CSVの列（1行目は見出し行として読み飛ばす）
+	public static final String CSV_IMPORT_COLUMNS =
+			"maker_name, food_name, class_name, calorie, protein, lipid, carbo, salt, eaten_date, eaten_time, qty";
+
+	/*
+	 * 	CSVを取り込むメソッド（呼び出し側のトランザクション内で実行する）
+	 * 	・COPYで一時テーブル（コミット時に削除）へ流し込み、Java側には1行も保持しない
+	 * 	・入力チェックもSQLでまとめて行い、エラーの行は取り込まずに行番号とともに返す
+	 * 	・メーカー→食品→栄養情報の順に、既存の一意キーと重複しないものだけを登録する
+	 * 	　（同じ栄養情報が複数行ある場合は先の行の値を使う。既存の栄養情報は書き換えない）
+	 * 	・eaten_dateがある行は食べた記録として登録する（同じ内容の記録が既にあれば登録しない）
+	 *	@param	userId ユーザーID
+	 *	@param	csv CSVの内容
+	 *	@param	maxRows 受け付ける行数の上限（超えたらIllegalArgumentException）
+	 *	@param	maxErrors 返すエラーの件数の上限
+	 *	@return	CsvImportResult（datesは空。日別集計はrefreshDailySummaryByImportで再計算する）
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public CsvImportResult importCsv(String userId, Reader csv, int maxRows, int maxErrors) {
+		jdbc.execute("""
+				CREATE TEMP TABLE import_staging (
+					line_no bigint GENERATED ALWAYS AS IDENTITY
+					, maker_name text
+					, food_name text
+					, class_name text
+					, calorie text
+					, protein text
+					, lipid text
+					, carbo text
+					, salt text
+					, eaten_date text
+					, eaten_time text
+					, qty text
+					, error text
+				) ON COMMIT DROP
+			""");
+		long rows = copyIn("COPY import_staging (" + CSV_IMPORT_COLUMNS + ") FROM STDIN WITH (FORMAT csv, HEADER true)", csv);
+		if (rows > maxRows) {
+			throw new IllegalArgumentException("1回に取り込めるのは" + maxRows + "行までです（" + rows + "行）");
+		}
+
+		jdbc.update("""
+				UPDATE import_staging
+				SET maker_name = NULLIF(btrim(maker_name), '')
+					, food_name = NULLIF(btrim(food_name), '')
+					, class_name = NULLIF(btrim(class_name), '')
+					, calorie = NULLIF(btrim(calorie), '')
+					, protein = NULLIF(btrim(protein), '')
+					, lipid = NULLIF(btrim(lipid), '')
+					, carbo = NULLIF(btrim(carbo), '')
+					, salt = NULLIF(btrim(salt), '')
+					, eaten_date = NULLIF(btrim(eaten_date), '')
+					, eaten_time = NULLIF(btrim(eaten_time), '')
+					, qty = NULLIF(btrim(qty), '')
+			""");
+		// 型変換できるかを先に確かめてから値を比べる（CASEは上から順に評価される）
+		jdbc.update("""
+				UPDATE import_staging
+				SET error = CASE
+					WHEN maker_name IS NULL THEN 'メーカー名がありません'
+					WHEN food_name IS NULL THEN '食品名がありません'
+					WHEN class_name IS NULL THEN '区分がありません'
+					WHEN char_length(maker_name) > 50 OR char_length(food_name) > 50 OR char_length(class_name) > 50
+						THEN 'メーカー名・食品名・区分は50文字までです'
+					WHEN calorie IS NULL THEN 'カロリーがありません'
+					WHEN NOT pg_input_is_valid(calorie, 'integer') THEN 'カロリーが整数ではありません'
+					WHEN calorie::integer < 0 THEN 'カロリーが負の値です'
+					WHEN NOT pg_input_is_valid(COALESCE(protein, '0'), 'numeric(10,1)')
+						OR NOT pg_input_is_valid(COALESCE(lipid, '0'), 'numeric(10,1)')
+						OR NOT pg_input_is_valid(COALESCE(carbo, '0'), 'numeric(10,1)')
+						OR NOT pg_input_is_valid(COALESCE(salt, '0'), 'numeric(10,2)')
+						THEN 'たんぱく質・脂質・炭水化物・塩分が数値ではありません'
+					WHEN COALESCE(protein, '0')::numeric < 0 OR COALESCE(lipid, '0')::numeric < 0
+						OR COALESCE(carbo, '0')::numeric < 0 OR COALESCE(salt, '0')::numeric < 0
+						THEN 'たんぱく質・脂質・炭水化物・塩分が負の値です'
+					WHEN eaten_date IS NULL AND (eaten_time IS NOT NULL OR qty IS NOT NULL)
+						THEN '食べた日付がありません'
+					WHEN eaten_date IS NULL THEN NULL
+					WHEN NOT pg_input_is_valid(eaten_date, 'date') THEN '食べた日付が不正です'
+					WHEN NOT pg_input_is_valid(COALESCE(eaten_time, '00:00'), 'time') THEN '食べた時刻が不正です'
+					WHEN NOT pg_input_is_valid(COALESCE(qty, '1'), 'numeric(10,1)') THEN '数量が数値ではありません'
+					WHEN COALESCE(qty, '1')::numeric(10,1) <= 0 THEN '数量は0より大きい値にしてください'
+				END
+			""");
+		int errorCount = jdbc.queryForObject("SELECT COUNT(*) FROM import_staging WHERE error IS NOT NULL", Integer.class);
+		// 見出し行の分を足してファイル上の行番号にする
+		List<CsvImportError> errors = jdbc.query("""
+				SELECT line_no + 1 AS line, error
+				FROM import_staging
+				WHERE error IS NOT NULL
+				ORDER BY line_no
+				LIMIT ?
+			""", (rs, rowNum) -> new CsvImportError(rs.getLong("line"), rs.getString("error")), maxErrors);
+
+		int makers = jdbc.update("""
+				INSERT INTO maker (maker_name, regist_user_id)
+				SELECT DISTINCT s.maker_name, ?
+				FROM import_staging s
+				WHERE s.error IS NULL
+				ON CONFLICT (regist_user_id, maker_name) DO NOTHING
+			""", userId);
+		int foods = jdbc.update("""
+				INSERT INTO food (maker_id, food_name, regist_user_id)
+				SELECT DISTINCT m.maker_id, s.food_name, ?
+				FROM import_staging s
+				INNER JOIN maker m
+					ON m.regist_user_id = ?
+					AND m.maker_name = s.maker_name
+				WHERE s.error IS NULL
+				ON CONFLICT (regist_user_id, maker_id, food_name) DO NOTHING
+			""", userId, userId);
+		int nutritions = jdbc.update("""
+				INSERT INTO nutrition (class_name, food_id, calorie, protein, lipid, carbo, salt, regist_user_id)
+				SELECT DISTINCT ON (f.food_id, s.class_name)
+					s.class_name
+					, f.food_id
+					, s.calorie::integer
+					, COALESCE(s.protein, '0')::numeric(10,1)
+					, COALESCE(s.lipid, '0')::numeric(10,1)
+					, COALESCE(s.carbo, '0')::numeric(10,1)
+					, COALESCE(s.salt, '0')::numeric(10,2)
+					, ?
+				FROM import_staging s
+				INNER JOIN maker m
+					ON m.regist_user_id = ?
+					AND m.maker_name = s.maker_name
+				INNER JOIN food f
+					ON f.regist_user_id = ?
+					AND f.maker_id = m.maker_id
+					AND f.food_name = s.food_name
+				WHERE s.error IS NULL
+				ORDER BY f.food_id, s.class_name, s.line_no
+				ON CONFLICT (regist_user_id, food_id, class_name) DO NOTHING
+			""", userId, userId, userId);
+		// 既にある記録と同じ内容（栄養・日付・時刻・数量）の行は登録しない（同じファイルを取り込み直しても重複しない）
+		String intakeRows = """
+				SELECT
+					n.nutrition_id
+					, s.eaten_date::date AS eaten_date
+					, COALESCE(s.eaten_time, '00:00')::time AS eaten_time
+					, COALESCE(s.qty, '1')::numeric(10,1) AS qty
+				FROM import_staging s
+				INNER JOIN maker m
+					ON m.regist_user_id = ?
+					AND m.maker_name = s.maker_name
+				INNER JOIN food f
+					ON f.regist_user_id = ?
+					AND f.maker_id = m.maker_id
+					AND f.food_name = s.food_name
+				INNER JOIN nutrition n
+					ON n.regist_user_id = ?
+					AND n.food_id = f.food_id
+					AND n.class_name = s.class_name
+				WHERE s.error IS NULL
+					AND s.eaten_date IS NOT NULL
+			""";
+		int intakeRowCount = jdbc.queryForObject("SELECT COUNT(*) FROM (" + intakeRows + ") r", Integer.class,
+				userId, userId, userId);
+		int intakes = jdbc.update("""
+				INSERT INTO intake (regist_user_id, nutrition_id, eaten_date, eaten_time, qty)
+				SELECT ?, r.nutrition_id, r.eaten_date, r.eaten_time, r.qty
+				FROM (%s) r
+				WHERE NOT EXISTS (
+					SELECT 1
+					FROM intake i
+					WHERE i.regist_user_id = ?
+						AND i.nutrition_id = r.nutrition_id
+						AND i.eaten_date = r.eaten_date
+						AND i.eaten_time = r.eaten_time
+						AND i.qty = r.qty
+				)
+			""".formatted(intakeRows), userId, userId, userId, userId, userId);
+
+		return new CsvImportResult((int) rows, makers, foods, nutritions, intakes, intakeRowCount - intakes,
+				errorCount, errors, List.of());
+	}
+
+	/*
+	 * 	CSV取込で食べた記録を登録した日の日別集計を再計算するメソッド（importCsvと同じトランザクション内で呼ぶ）
+	 *	@param	userId ユーザーID
+	 *	@return	再計算した日付
+	 */
+	@Transactional
+	public List<LocalDate> refreshDailySummaryByImport(String userId) {
+		String dates = """
+				SELECT DISTINCT eaten_date::date AS eaten_date
+				FROM import_staging
+				WHERE error IS NULL
+					AND eaten_date IS NOT NULL
+			""";
+		return refreshDailySummary(userId, dates);
+	}
+
+	// COPY ... FROM STDINでReaderの内容をそのまま流し込む（CSVの形式が不正ならIllegalArgumentException）
+	private long copyIn(String sql, Reader csv) {
+		return jdbc.execute((ConnectionCallback<Long>) con -> {
+			try {
+				return con.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, csv);
+			} catch (PSQLException e) {
+				throw new IllegalArgumentException("CSVを読み込めませんでした：" + e.getMessage(), e);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+	
+/*--------------------------------------
+ 	エクスポート
+--------------------------------------*/
+	// エクスポートで1回にDBから受け取る行数（全件をまとめてメモリに載せない）
+	public static final int EXPORT_FETCH_SIZE = 500;
+
+	/*
+	 * 	食べた記録をエクスポートするメソッド（列はCSV取込と同じ並び）
+	 *	@param	userId ユーザーID
+	 *	@param	extractor 結果を1行ずつ書き出す処理
+	 *	@return	extractorの戻り値
+	 */
+	@Transactional(readOnly = true)
+	public <T> T exportIntakes(String userId, ResultSetExtractor<T> extractor) {
+		String sql = """
+				SELECT
+					m.maker_name
+					, f.food_name
+					, n.class_name
+					, n.calorie
+					, n.protein
+					, n.lipid
+					, n.carbo
+					, n.salt
+					, i.eaten_date
+					, i.eaten_time
+					, i.qty
+				FROM intake i
+				LEFT JOIN nutrition n
+					ON n.nutrition_id = i.nutrition_id
+				LEFT JOIN food f
+					ON f.food_id = n.food_id
+				LEFT JOIN maker m
+					ON m.maker_id = f.maker_id
+				WHERE i.regist_user_id = ?
+				ORDER BY i.eaten_date, i.eaten_time, i.intake_id
+			""";
+		return stream(sql, extractor, userId);
+	}
+
+	/*
+	 * 	簡易登録の記録をエクスポートするメソッド
+	 *	@param	userId ユーザーID
+	 *	@param	extractor 結果を1行ずつ書き出す処理
+	 *	@return	extractorの戻り値
+	 */
+	@Transactional(readOnly = true)
+	public <T> T exportIntakeOnces(String userId, ResultSetExtractor<T> extractor) {
+		String sql = """
+				SELECT food_name, class_name, calorie, protein, lipid, carbo, salt, eaten_date, eaten_time, qty
+				FROM intake_once
+				WHERE regist_user_id = ?
+				ORDER BY eaten_date, eaten_time, intake_id
+			""";
+		return stream(sql, extractor, userId);
+	}
+
+	/*
+	 * 	メーカー・食品・栄養情報をエクスポートするメソッド
+	 * 	（列はCSV取込と同じ並び。食品・栄養情報が無いメーカー・食品も1行出す）
+	 *	@param	userId ユーザーID
+	 *	@param	extractor 結果を1行ずつ書き出す処理
+	 *	@return	extractorの戻り値
+	 */
+	@Transactional(readOnly = true)
+	public <T> T exportCatalog(String userId, ResultSetExtractor<T> extractor) {
+		String sql = """
+				SELECT
+					m.maker_name
+					, f.food_name
+					, n.class_name
+					, n.calorie
+					, n.protein
+					, n.lipid
+					, n.carbo
+					, n.salt
+					, NULL::date AS eaten_date
+					, NULL::time AS eaten_time
+					, NULL::numeric AS qty
+				FROM maker m
+				LEFT JOIN food f
+					ON f.maker_id = m.maker_id
+					AND f.regist_user_id = m.regist_user_id
+				LEFT JOIN nutrition n
+					ON n.food_id = f.food_id
+					AND n.regist_user_id = f.regist_user_id
+				WHERE m.regist_user_id = ?
+				ORDER BY m.maker_name, f.food_name, n.class_name
+			""";
+		return stream(sql, extractor, userId);
+	}
+
+	// 前方向のみ・fetchSize指定で実行する（PostgreSQLはトランザクション内でのみカーソルで少しずつ読む）
+	private <T> T stream(String sql, ResultSetExtractor<T> extractor, Object... args) {
+		return jdbc.query(con -> {
+			PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(EXPORT_FETCH_SIZE);
+			for (int i = 0; i < args.length; i++) {
+				ps.setObject(i + 1, args[i]);
+			}
+			return ps;
+		}, extractor);
+	}
+	
 /*--------------------------------------
  	食べた登録画面
 --------------------------------------*/
@@ -461,13 +1466,38 @@ public class IntakeRepository {
 		return jdbc.update(sql, userId, nutritionId, eatenDate, eatenTime, qty);
 	}
 	
+	/*
+	 * 	ユーザーのメーカー・食品・栄養情報をまとめて読み込むメソッド
+	 * 	（3つのクエリを同じスナップショットで読むためREPEATABLE READ）
+	 *	@param	userId ユーザーID
+	 *	@param	version 読み込み前に取得したデータの版（users.data_version）
+	 *	@return	CatalogSnapshot
+	 */
+	@Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+	public CatalogSnapshot getCatalogSnapshot(String userId, long version) {
+		List<MakerRow> makers = getMakerList(userId);
+		List<FoodRow> foods = getFoodListAll(userId);
+		String sql = """
+				SELECT n.nutrition_id, class_name, calorie, protein, lipid, carbo, salt, n.food_id, food_name, m.maker_id, maker_name
+				FROM nutrition n
+				LEFT JOIN food f
+					ON f.food_id = n.food_id
+				LEFT JOIN maker m
+					ON m.maker_id = f.maker_id
+				WHERE n.regist_user_id = ?
+				ORDER BY maker_name, food_name, class_name
+			""";
+		List<NutritionRow> nutritions = jdbc.query(sql, NUTRITION_ROW_MAPPER, userId);
+		return new CatalogSnapshot(version, makers, foods, nutritions);
+	}
+	
 	/*
 	 * 	食べた登録画面：①：画面表示時
 	 * 	メーカーの一覧を取得するメソッド
 	 *	@param	userId ユーザーID 
-	 *	@return	List<Map<String, Object>>	メーカー一覧
+	 *	@return	List<MakerRow>	メーカー一覧
 	 */
-	public List<Map<String, Object>> getMakerList(String userId){
+	public List<MakerRow> getMakerList(String userId){
 		String sql = """
 				SELECT maker_id, maker_name
 				FROM maker
@@ -475,7 +1505,7 @@ public class IntakeRepository {
 				ORDER BY maker_name
 			""";
 		
-		return jdbc.queryForList(sql, userId);
+		return jdbc.query(sql, MAKER_ROW_MAPPER, userId);
 	}
 	
 	/*
@@ -501,9 +1531,9 @@ public class IntakeRepository {
 	 * 	ユーザーIDと食品IDに紐づく食品情報とメーカ情報を取得するメソッド
 	 *	@param	userId ユーザーID  
 	 * 	@param	foodId 食品ID 
-	 *	@return	Map<String, Object>
+	 *	@return	FoodRow
 	 */
-	public Map<String, Object> getHeaderInfo (String userId, long foodId) {
+	public FoodRow getHeaderInfo (String userId, long foodId) {
 		String sql = """
 				SELECT f.food_id, f.food_name, m.maker_id, m.maker_name
 				FROM food f
@@ -512,19 +1542,7 @@ public class IntakeRepository {
 				WHERE f.food_id = ? AND f.regist_user_id = ?
 			""";
 		
-		Map<String, Object> headerInfo = jdbc.queryForObject(
-			    sql,
-			    new Object[]{ foodId, userId },
-			    (rs, rowNum) -> {
-			        Map<String, Object> map = new HashMap<>();
-			        map.put("foodId", rs.getLong("food_id"));
-			        map.put("foodName", rs.getString("food_name"));
-			        map.put("makerId", rs.getString("maker_id"));
-			        map.put("makerName", rs.getString("maker_name"));
-			        return map;
-			    }
-			);
-		return headerInfo;
+		return jdbc.queryForObject(sql, FOOD_ROW_MAPPER, foodId, userId);
 	}
 	
 	/*
@@ -532,17 +1550,21 @@ public class IntakeRepository {
 	 * 	ユーザーIDと食品IDに紐づく分類一覧を取得するメソッド
 	 *	@param	userId ユーザーID 
 	 *	@param	foodId	食品ID
-	 *	@return	List<Map<String, Object>>	栄養情報一覧
+	 *	@return	List<NutritionRow>	栄養情報一覧
 	 */
-	public List<Map<String, Object>> getNutritionList(String userId, long foodId){
+	public List<NutritionRow> getNutritionList(String userId, long foodId){
 		String sql = """
-				SELECT nutrition_id, class_name, calorie, protein, lipid, carbo, salt
-				FROM nutrition
-				WHERE regist_user_id = ? AND food_id = ?
+				SELECT n.nutrition_id, class_name, calorie, protein, lipid, carbo, salt, n.food_id, food_name, m.maker_id, maker_name
+				FROM nutrition n
+				LEFT JOIN food f
+					ON f.food_id = n.food_id
+				LEFT JOIN maker m
+					ON m.maker_id = f.maker_id
+				WHERE n.regist_user_id = ? AND n.food_id = ?
 				ORDER BY class_name
 			""";
 		
-		return jdbc.queryForList(sql, userId, foodId);
+		return jdbc.query(sql, NUTRITION_ROW_MAPPER, userId, foodId);
 	}
 	
 	
@@ -551,11 +1573,11 @@ public class IntakeRepository {
 	 * 	ユーザーIDと選択したメーカーIDに紐づく食品情報の一覧を取得するメソッド
 	 *	@param	userId ユーザーID 
 	 * 	@param	makerId	メーカーID(@RequestParamから)
-	 *	@return	List<Map<String, Object>> 分類一覧
+	 *	@return	List<FoodRow> 分類一覧
 	 */
-	public List<Map<String, Object>> getFoodList(String userId, long makerId){
+	public List<FoodRow> getFoodList(String userId, long makerId){
 		String sql = """
-				SELECT food_id, food_name
+				SELECT food_id, food_name, f.maker_id, maker_name
 				FROM food f
 				INNER JOIN maker m
 					ON m.maker_id = f.maker_id
@@ -564,7 +1586,7 @@ public class IntakeRepository {
 				ORDER BY food_name
 			""";
 		
-		return jdbc.queryForList(sql, userId, makerId);
+		return jdbc.query(sql, FOOD_ROW_MAPPER, userId, makerId);
 	}
 	
 	
@@ -770,6 +1792,72 @@ public class IntakeRepository {
 		jdbc.update(sql, userId);
 	}
 	
+	/*
+	 * 	最終アクセス日時をまとめて更新するメソッド（1回のUPDATEで反映）
+	 * 	（日時はDBの時計から経過時間を引いて決める。regist_dateなどと同じ時計）
+	 *	@param	userIds user_idの一覧
+	 *	@param	agesMillis userIdsと同じ並びの、最終アクセスから今までの経過時間(ms)
+	 *	@param	daily	TRUE：アクセスと同じ日付ですでに記録済みのユーザーは更新しない
+	 *					（登録日時のままのユーザーは、登録と同じ日の再訪でも書く。書かないとCleanupJobで削除される）
+	 *	@return	更新件数
+	 */
+	public int updLastAccessDates(List<String> userIds, List<Long> agesMillis, boolean daily) {
+		String sql = """
+				UPDATE users u
+				SET last_access_date = v.access_date
+				FROM (
+					SELECT user_id, CURRENT_TIMESTAMP - age_ms * interval '1 millisecond' AS access_date
+					FROM unnest(?::varchar[], ?::bigint[]) AS t(user_id, age_ms)
+				) v
+				WHERE u.user_id = v.user_id
+					AND u.last_access_date < v.access_date
+					AND (NOT ? OR u.last_access_date < date_trunc('day', v.access_date) OR u.last_access_date = u.regist_date)
+			""";
+		return jdbc.update(con -> {
+			PreparedStatement ps = con.prepareStatement(sql);
+			ps.setArray(1, con.createArrayOf("varchar", userIds.toArray()));
+			ps.setArray(2, con.createArrayOf("bigint", agesMillis.toArray()));
+			ps.setBoolean(3, daily);
+			return ps;
+		});
+	}
+	
+	/*
+	 * 	画面のETagに使うデータの版を取得するメソッド
+	 *	@param	userId user_id
+	 *	@return	版（ユーザーが無ければ0）
+	 */
+	public long getDataVersion(String userId) {
+		String sql = """
+				SELECT data_version
+				FROM users
+				WHERE user_id = ?
+			""";
+		List<Long> rows = jdbc.queryForList(sql, Long.class, userId);
+		return rows.isEmpty() ? 0 : rows.get(0);
+	}
+	
+	/*
+	 * 	データの版を進めるメソッド（書き込みと同じトランザクションで呼ぶ）
+	 *	@param	userId user_id
+	 */
+	public void bumpDataVersion(String userId) {
+		String sql = """
+				UPDATE users
+				SET data_version = data_version + 1
+				WHERE user_id = ?
+			""";
+		jdbc.update(sql, userId);
+	}
+	
+	/*
+	 * 	全ユーザーのデータの版を進めるメソッド
+	 *	@return	更新件数
+	 */
+	public int bumpAllDataVersions() {
+		return jdbc.update("UPDATE users SET data_version = data_version + 1");
+	}
+	
 	/*--------------------------------------
 		メーカ編集
 	--------------------------------------*/
@@ -780,13 +1868,14 @@ public class IntakeRepository {
 	 *	@param	makerName	メーカー名
 	 *	@return	更新件数（通常は1）
 	 */
-	public int updMaker(long makerId, String makerName) {
+	public int updMaker(String userId, long makerId, String makerName) {
 		String sql = """
 				UPDATE maker
 				SET maker_name = ?
 				WHERE maker_id = ?
+					AND regist_user_id = ?
 			""";
-		return jdbc.update(sql, makerName, makerId);
+		return jdbc.update(sql, makerName, makerId, userId);
 	}
 	
 	/*
@@ -803,14 +1892,13 @@ public class IntakeRepository {
 	
 	/*
 	 * 	「削除」押下
-	 * 	お気に入りを削除後、もとのsort_orderの順番で1からsort_orderを振り直すメソッド
+	 * 	お気に入りを削除するメソッド（残りのsort_orderはそのまま）
 	 *	@param	userId user_id
 	 *	@param	makerId	メーカーID
 	 */
-	@Transactional
 	public void delFavoriteFromMaker(String userId, long makerId) {
 
-		// 1) メーカー配下のfavoriteを全削除
+		// メーカー配下のfavoriteを全削除
 		String del = """
 				DELETE FROM favorite
 				WHERE regist_user_id = ?
@@ -822,21 +1910,6 @@ public class IntakeRepository {
 				)
 			""";
 		jdbc.update(del, userId, makerId);
-
-		// 2) 残ったfavoriteの並びを詰め直し（0始まり）
-		String resequence = """
-				WITH ranked AS (
-					SELECT favorite_id,
-						ROW_NUMBER() OVER (ORDER BY sort_order, favorite_id) - 1 AS new_order
-					FROM favorite
-					WHERE regist_user_id = ?
-				)
-				UPDATE favorite f
-				SET sort_order = ranked.new_order
-				FROM ranked
-				WHERE f.favorite_id = ranked.favorite_id
-			""";
-		jdbc.update(resequence, userId);
 	}
 	
 	/*--------------------------------------
@@ -847,9 +1920,9 @@ public class IntakeRepository {
 	 * 	ユーザーIDと選択したメーカーIDに紐づく分類の一覧を取得するメソッド
 	 *	@param	userId ユーザーID 
 	 * 	@param	makerId	メーカーID(@RequestParamから)
-	 *	@return	List<Map<String, Object>> 分類一覧
+	 *	@return	List<FoodRow> 分類一覧
 	 */
-	public List<Map<String, Object>> getFoodListAll(String userId){
+	public List<FoodRow> getFoodListAll(String userId){
 		String sql = """
 				SELECT food_id, food_name, f.maker_id, maker_name
 				FROM food f
@@ -859,7 +1932,7 @@ public class IntakeRepository {
 				ORDER BY food_name, maker_name
 			""";
 		
-		return jdbc.queryForList(sql, userId);
+		return jdbc.query(sql, FOOD_ROW_MAPPER, userId);
 	}
 	
 	/*
@@ -919,14 +1992,13 @@ public class IntakeRepository {
 	
 	/*
 	 * 	「削除」押下
-	 * 	お気に入りを削除後、もとのsort_orderの順番で1からsort_orderを振り直すメソッド
+	 * 	お気に入りを削除するメソッド（残りのsort_orderはそのまま）
 	 *	@param	userId user_id
 	 *	@param	foodId	食品ID
 	 */
-	@Transactional
 	public void delFavoriteFromFood(String userId, long foodId) {
 
-		// 1) food配下のfavoriteを全削除
+		// food配下のfavoriteを全削除
 		String del = """
 				DELETE FROM favorite
 				WHERE regist_user_id = ?
@@ -938,21 +2010,6 @@ public class IntakeRepository {
 					)
 			""";
 		jdbc.update(del, userId, userId, foodId);
-
-		// 2) 残ったfavoriteの並びを詰め直し（0始まり）
-		String resequence = """
-					WITH ranked AS (
-						SELECT favorite_id,
-							ROW_NUMBER() OVER (ORDER BY sort_order, favorite_id) - 1 AS new_order
-						FROM favorite
-						WHERE regist_user_id = ?
-					)
-					UPDATE favorite f
-					SET sort_order = ranked.new_order
-					FROM ranked
-					WHERE f.favorite_id = ranked.favorite_id
-				""";
-		jdbc.update(resequence, userId);
 	}
 	
 	/*--------------------------------------
@@ -962,9 +2019,9 @@ public class IntakeRepository {
 	 * 	栄養情報一覧画面表示時
 	 * 	ユーザーIDと食品IDに紐づく分類一覧を取得するメソッド
 	 *	@param	userId ユーザーID 
-	 *	@return	List<Map<String, Object>>	栄養情報一覧
+	 *	@return	List<NutritionRow>	栄養情報一覧
 	 */
-	public List<Map<String, Object>> getNutritionListAll(String userId){
+	public List<NutritionRow> getNutritionListAll(String userId){
 		String sql = """
 				SELECT nutrition_id, class_name, calorie, protein, lipid, carbo, salt, f.food_id, food_name, m.maker_id, maker_name
 				FROM nutrition n
@@ -976,7 +2033,7 @@ public class IntakeRepository {
 				ORDER BY maker_name, food_name, class_name
 			""";
 		
-		return jdbc.queryForList(sql, userId);
+		return jdbc.query(sql, NUTRITION_ROW_MAPPER, userId);
 	}
 	
 	/*
@@ -984,43 +2041,21 @@ public class IntakeRepository {
 	 * 	ユーザーIDと食品IDに紐づく食品情報とメーカ情報を取得するメソッド
 	 *	@param	userId ユーザーID  
 	 * 	@param	nutritionId 栄養ID 
-	 *	@return	Map<String, Object>
+	 *	@return	NutritionRow（お気に入りIDは含まない）
 	 */
-	public Map<String, Object> getNutritionInfo (String userId, long nutritionId) {
+	public NutritionRow getNutritionInfo (String userId, long nutritionId) {
 		String sql = """
-				SELECT n.nutrition_id, class_name, calorie, protein, lipid, carbo, salt, m.maker_id, maker_name, f.food_id, food_name, COALESCE(fav.favorite_id, 0) AS favorite_id
+				SELECT n.nutrition_id, class_name, calorie, protein, lipid, carbo, salt, f.food_id, food_name, m.maker_id, maker_name
 				FROM nutrition n
 				INNER JOIN food f
 					ON f.food_id = n.food_id
 				INNER JOIN maker m
 					ON m.maker_id = f.maker_id
-				LEFT JOIN favorite fav
-					ON	fav.nutrition_id = n.nutrition_id
 				WHERE n.nutrition_id = ?
 					AND f.regist_user_id = ?
 			""";
 		
-		Map<String, Object> headerInfo = jdbc.queryForObject(
-			    sql,
-			    new Object[]{ nutritionId, userId },
-			    (rs, rowNum) -> {
-			        Map<String, Object> map = new HashMap<>();
-			        map.put("nutritionId", rs.getString("nutrition_id"));
-			        map.put("className", rs.getString("class_name"));
-			        map.put("calorie", rs.getString("calorie"));
-			        map.put("protein", rs.getString("protein"));
-			        map.put("lipid", rs.getString("lipid"));
-			        map.put("carbo", rs.getString("carbo"));
-			        map.put("salt", rs.getString("salt"));
-			        map.put("foodId", rs.getString("food_id"));
-			        map.put("foodName", rs.getString("food_name"));
-			        map.put("makerId", rs.getString("maker_id"));
-			        map.put("makerName", rs.getString("maker_name"));
-			        map.put("favoriteId", rs.getString("favorite_id"));
-			        return map;
-			    }
-			);
-		return headerInfo;
+		return jdbc.queryForObject(sql, NUTRITION_ROW_MAPPER, nutritionId, userId);
 	}
 	
 	
@@ -1036,47 +2071,28 @@ public class IntakeRepository {
 	public int insFavorite(String userId, long nutritionId) {
 		String sql = """
 				INSERT INTO favorite (regist_user_id, nutrition_id, sort_order)
-				VALUES (?, ?, COALESCE((SELECT MAX(sort_order) + 1 FROM favorite WHERE regist_user_id = ?),0))
+				VALUES (?, ?, COALESCE((SELECT MAX(sort_order) FROM favorite WHERE regist_user_id = ?), 0) + ?)
 				ON CONFLICT (regist_user_id, nutrition_id) DO NOTHING
 		     """;
 		// 登録件数を返す（通常 1）。失敗時は例外が投げられることが多い
-		return jdbc.update(sql, userId, nutritionId, userId);
+		return jdbc.update(sql, userId, nutritionId, userId, FAVORITE_ORDER_GAP);
 	}
 	
 	
 	/*
-	 * 	栄養情報のお気に入りを削除し、削除後もとのsort_orderの順番で1からsort_orderを振り直すメソッド
+	 * 	栄養情報のお気に入りを削除するメソッド（残りのsort_orderはそのまま）
 	 *	@param	userId user_id
 	 *	@param	nutritionId	栄養ID
 	 *	@return	削除件数（通常は1）
 	 */
-	@Transactional
 	public int delFavorite(String userId, long nutritionId) {
-		// 1) 単体削除
+		// 単体削除
 		String del = """
 				DELETE FROM favorite
 				WHERE regist_user_id = ?
 				AND nutrition_id = ?
 			""";
-		int delCnt = jdbc.update(del, userId, nutritionId);
-		if (delCnt == 0) return 0;
-
-		// 2) 並びを詰め直し（0始まり）
-		String resequence = """
-				WITH ranked AS (
-					SELECT favorite_id,
-						ROW_NUMBER() OVER (ORDER BY sort_order, favorite_id) - 1 AS new_order
-					FROM favorite
-					WHERE regist_user_id = ?
-				)
-				UPDATE favorite f
-				SET sort_order = ranked.new_order
-				FROM ranked
-				WHERE f.favorite_id = ranked.favorite_id
-			""";
-		jdbc.update(resequence, userId);
-
-		return delCnt;
+		return jdbc.update(del, userId, nutritionId);
 	}
 
 	
@@ -1094,35 +2110,19 @@ public class IntakeRepository {
 	
 	/*
 	 * 	「削除」押下
-	 * 	お気に入りを削除後、もとのsort_orderの順番で1からsort_orderを振り直すメソッド
+	 * 	お気に入りを削除するメソッド（残りのsort_orderはそのまま）
 	 *	@param	userId user_id
 	 *	@param	nutritionId	栄養ID
 	 */
-	@Transactional
 	public void delFavoriteFromNutrition(String userId, long nutritionId) {
 
-		// 1) food配下のfavoriteを全削除
+		// food配下のfavoriteを全削除
 		String del = """
 				DELETE FROM favorite
 				WHERE regist_user_id = ?
 					AND nutrition_id = ?
 			""";
 		jdbc.update(del, userId, nutritionId);
-
-		// 2) 残ったfavoriteの並びを詰め直し（0始まり）
-		String resequence = """
-					WITH ranked AS (
-						SELECT favorite_id,
-							ROW_NUMBER() OVER (ORDER BY sort_order, favorite_id) - 1 AS new_order
-						FROM favorite
-						WHERE regist_user_id = ?
-					)
-					UPDATE favorite f
-					SET sort_order = ranked.new_order
-					FROM ranked
-					WHERE f.favorite_id = ranked.favorite_id
-				""";
-		jdbc.update(resequence, userId);
 	}
 
 	
@@ -1175,4 +2175,79 @@ public class IntakeRepository {
 			""";
 		return jdbc.update(sql, className, calorie, protein, lipid, carbo, salt, userId, nutritionId);
 	}
+	
+	/*--------------------------------------
+		管理画面（キーセットページング）
+	--------------------------------------*/
+	/*
+	 * 	ユーザー一覧を最終アクセス日時の新しい順に取得するメソッド
+	 *	@param	userId 絞り込むuser_id（nullなら全件）
+	 *	@param	afterDate 前ページ最終行の最終アクセス日時（nullなら先頭から）
+	 *	@param	afterId 前ページ最終行のuser_id
+	 *	@param	limit 取得件数
+	 *	@return	List<Map<String, Object>>
+	 */
+	public List<Map<String, Object>> getManageUsers(String userId, LocalDateTime afterDate, String afterId, int limit) {
+		StringBuilder sql = new StringBuilder("""
+				SELECT user_id, regist_date, last_access_date
+				FROM users
+				WHERE true
+			""");
+		List<Object> args = new ArrayList<>();
+		if (userId != null) {
+			sql.append(" AND user_id = ?");
+			args.add(userId);
+		}
+		if (afterDate != null && afterId != null) {
+			sql.append(" AND (last_access_date, user_id) < (?, ?)");
+			args.add(Timestamp.valueOf(afterDate));
+			args.add(afterId);
+		}
+		sql.append(" ORDER BY last_access_date DESC, user_id DESC LIMIT ?");
+		args.add(limit);
+		return jdbc.queryForList(sql.toString(), args.toArray());
+	}
+	
+	public List<Map<String, Object>> getManageMakers(String userId, Long afterId, int limit) {
+		return getManagePage("maker", "maker_id, maker_name, regist_user_id", "maker_id", userId, afterId, limit);
+	}
+	
+	public List<Map<String, Object>> getManageFoods(String userId, Long afterId, int limit) {
+		return getManagePage("food", "food_id, food_name, maker_id, regist_user_id", "food_id", userId, afterId, limit);
+	}
+	
+	public List<Map<String, Object>> getManageNutritions(String userId, Long afterId, int limit) {
+		return getManagePage("nutrition", "nutrition_id, class_name, calorie, food_id, regist_user_id", "nutrition_id", userId, afterId, limit);
+	}
+	
+	public List<Map<String, Object>> getManageIntakes(String userId, Long afterId, int limit) {
+		return getManagePage("intake", "intake_id, regist_user_id, nutrition_id, eaten_date, eaten_time, qty", "intake_id", userId, afterId, limit);
+	}
+	
+	/*
+	 * 	IDの降順で1ページ分を取得するメソッド（テーブル名・列名は呼び出し元の固定値のみ）
+	 *	@param	table テーブル名
+	 *	@param	columns 取得する列
+	 *	@param	idColumn 並び順のID列
+	 *	@param	userId 絞り込むregist_user_id（nullなら全件）
+	 *	@param	afterId 前ページ最終行のID（nullなら先頭から）
+	 *	@param	limit 取得件数
+	 *	@return	List<Map<String, Object>>
+	 */
+	private List<Map<String, Object>> getManagePage(String table, String columns, String idColumn,
+			String userId, Long afterId, int limit) {
+		StringBuilder sql = new StringBuilder("SELECT " + columns + " FROM " + table + " WHERE true");
+		List<Object> args = new ArrayList<>();
+		if (userId != null) {
+			sql.append(" AND regist_user_id = ?");
+			args.add(userId);
+		}
+		if (afterId != null) {
+			sql.append(" AND " + idColumn + " < ?");
+			args.add(afterId);
+		}
+		sql.append(" ORDER BY " + idColumn + " DESC LIMIT ?");
+		args.add(limit);
+		return jdbc.queryForList(sql.toString(), args.toArray());
+	}
 }
@@ -1,5 +1,6 @@
 package com.example.demo;
 
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
@@ -7,36 +8,107 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.example.demo.HomeController.CsvImportResult;
+import com.example.demo.HomeController.DailyDetail;
+import com.example.demo.HomeController.DailyNutrition;
+import com.example.demo.HomeController.FavoriteRow;
+import com.example.demo.HomeController.FoodRow;
+import com.example.demo.HomeController.HistorySeries;
+import com.example.demo.HomeController.HomeData;
+import com.example.demo.HomeController.IntakeBatchResult;
+import com.example.demo.HomeController.IntakeDetail;
+import com.example.demo.HomeController.IntakeOp;
 import com.example.demo.HomeController.IntakeRow;
+import com.example.demo.HomeController.MakerRow;
+import com.example.demo.HomeController.NutritionDetail;
+import com.example.demo.HomeController.NutritionRow;
 
 @Service
 public class IntakeService {
 
 	private final IntakeRepository intakeRepo;
+	private final UserIdCache userIdCache;
+	private final LastAccessBuffer lastAccessBuffer;
+	private final HistoryCache historyCache;
+	private final FavoriteCache favoriteCache;
+	private final CatalogCache catalogCache;
+	private final DataVersion dataVersion;
+	// 一括更新で1回に受け付ける操作数の上限
+	private final int intakeBatchMaxOps;
+	// CSV取込で1回に受け付ける行数の上限
+	private final int csvImportMaxRows;
 
-	public IntakeService(IntakeRepository intakeRepo) {
+	// 期間集計で指定できる最大日数
+	private static final int HISTORY_MAX_DAYS = 366;
+	// CSV取込で画面に返すエラーの件数
+	private static final int CSV_IMPORT_MAX_ERRORS = 100;
+
+	public IntakeService(IntakeRepository intakeRepo, UserIdCache userIdCache, LastAccessBuffer lastAccessBuffer,
+			HistoryCache historyCache, FavoriteCache favoriteCache, CatalogCache catalogCache,
+			DataVersion dataVersion,
+			@Value("${app.intake-batch.max-ops:500}") int intakeBatchMaxOps,
+			@Value("${app.csv-import.max-rows:20000}") int csvImportMaxRows) {
 		this.intakeRepo = intakeRepo;
-	}
-	
-	public List<Map<String, Object>> getFavoriteList(String userId){
-		return intakeRepo.getFavoriteList(userId);
+		this.userIdCache = userIdCache;
+		this.lastAccessBuffer = lastAccessBuffer;
+		this.historyCache = historyCache;
+		this.favoriteCache = favoriteCache;
+		this.catalogCache = catalogCache;
+		this.dataVersion = dataVersion;
+		this.intakeBatchMaxOps = intakeBatchMaxOps;
+		this.csvImportMaxRows = csvImportMaxRows;
+	}
+	
+	// 他のインスタンスで書き込まれていないかは、データの版（users.data_version）で確かめる
+	public List<FavoriteRow> getFavoriteList(String userId){
+		long version = dataVersion.current(userId);
+		List<FavoriteRow> cached = favoriteCache.get(userId, version);
+		if (cached != null) {
+			return cached;
+		}
+		long stamp = favoriteCache.stamp();
+		List<FavoriteRow> favorites = FavoriteCache.freeze(intakeRepo.getFavoriteList(userId));
+		favoriteCache.put(userId, favorites, stamp, version);
+		return favorites;
 	}
 	
 	public List<IntakeRow> getDailyRecords(String userId, LocalDate date) {
 		return intakeRepo.getDailyRecords(userId, date);
 	}
 	
+	// home画面に必要なデータを1回のクエリでまとめて取得
+	// お気に入りがキャッシュ済みなら履歴だけを取得する
+	public HomeData loadHomePage(String userId, LocalDate date) {
+		long version = dataVersion.current(userId);
+		List<FavoriteRow> cached = favoriteCache.get(userId, version);
+		if (cached != null) {
+			HomeData homeData = intakeRepo.getHomeData(userId, date, false);
+			return new HomeData(homeData.totalKcal(), homeData.records(), cached);
+		}
+		long stamp = favoriteCache.stamp();
+		HomeData homeData = intakeRepo.getHomeData(userId, date, true);
+		List<FavoriteRow> favorites = FavoriteCache.freeze(homeData.favorites());
+		favoriteCache.put(userId, favorites, stamp, version);
+		return new HomeData(homeData.totalKcal(), homeData.records(), favorites);
+	}
+	
 	public int generateRandomIndex(List<IntakeRow> targetDateAteRecords) {
 		int getCnt = targetDateAteRecords.size();
 		if(getCnt == 1) {
@@ -50,34 +122,257 @@ public class IntakeService {
 	public int calcTotalCal(String userId, LocalDate eatenDate) {
 		return intakeRepo.calcTotalCal(userId, eatenDate);
 	}
+	
+	/*
+	 * 	期間集計を取得するメソッド
+	 * 	最終日が昨日以前の期間（終了済みの期間）はキャッシュから返す
+	 *	@param	userId ユーザーID
+	 *	@param	from 開始日
+	 *	@param	to 終了日
+	 *	@return	HistorySeries
+	 */
+	public HistorySeries getHistory(String userId, LocalDate from, LocalDate to) {
+		if (to.isBefore(from)) {
+			throw new IllegalArgumentException("期間の指定が正しくありません");
+		}
+		if (ChronoUnit.DAYS.between(from, to) >= HISTORY_MAX_DAYS) {
+			throw new IllegalArgumentException("期間は" + HISTORY_MAX_DAYS + "日以内で指定してください");
+		}
+		// 今日を含む期間はまだ書き込まれるのでキャッシュしない
+		if (!to.isBefore(LocalDate.now())) {
+			return intakeRepo.getHistory(userId, from, to);
+		}
+		// 他のインスタンスで過去の日付が編集されていないかは、データの版（users.data_version）で確かめる
+		long version = dataVersion.current(userId);
+		HistorySeries cached = historyCache.get(userId, from, to, version);
+		if (cached != null) {
+			return cached;
+		}
+		long stamp = historyCache.stamp();
+		HistorySeries series = intakeRepo.getHistory(userId, from, to);
+		historyCache.put(userId, from, to, series, stamp, version);
+		return series;
+	}
+	
+	// 日別集計を書き換えた日付を含む期間集計を、コミット後に無効化する
+	private void invalidateHistory(String userId, List<LocalDate> dates) {
+		bumpDataVersion(userId);
+		if (dates.isEmpty()) {
+			return;
+		}
+		afterCommit(() -> historyCache.invalidate(userId, dates));
+	}
+	
+	// ユーザーのカタログ（メーカー・食品・栄養情報）を取得（無ければ読み込んでキャッシュ）
+	// 他のインスタンスで書き込まれていないかは、データの版（users.data_version）で確かめる
+	private CatalogSnapshot catalog(String userId) {
+		long version = dataVersion.current(userId);
+		CatalogSnapshot cached = catalogCache.get(userId, version);
+		if (cached != null) {
+			return cached;
+		}
+		long stamp = catalogCache.stamp();
+		CatalogSnapshot snapshot = intakeRepo.getCatalogSnapshot(userId, version);
+		catalogCache.put(userId, snapshot, stamp, version);
+		return snapshot;
+	}
+	
+	// カタログのキャッシュを、コミット後に無効化する
+	private void invalidateCatalog(String userId) {
+		bumpDataVersion(userId);
+		afterCommit(() -> catalogCache.invalidate(userId));
+	}
+	
+	// お気に入り一覧のキャッシュを、コミット後に無効化する
+	private void invalidateFavorites(String userId) {
+		bumpDataVersion(userId);
+		afterCommit(() -> favoriteCache.invalidate(userId));
+	}
+	
+	// 画面のETagに使うデータの版を、書き込みと同じトランザクションで進める（コミットで版とデータが一緒に見えるようになる）
+	// ・トランザクションごとに1回だけ、コミットの直前に行う（usersの行ロックは日別集計の再計算のロックの後に取る）
+	// ・トランザクション外の書き込みでは、書き込みの後にその場で進める
+	private void bumpDataVersion(String userId) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			dataVersion.bump(userId);
+			return;
+		}
+		@SuppressWarnings("unchecked")
+		Set<String> userIds = (Set<String>) TransactionSynchronizationManager.getResource(DataVersion.class);
+		if (userIds == null) {
+			Set<String> pending = new LinkedHashSet<>();
+			TransactionSynchronizationManager.bindResource(DataVersion.class, pending);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void beforeCommit(boolean readOnly) {
+					pending.forEach(dataVersion::bump);
+				}
 
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(DataVersion.class);
+				}
+			});
+			userIds = pending;
+		}
+		userIds.add(userId);
+	}
+	
+	// トランザクション中ならコミット後に、そうでなければその場で実行する
+	private void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+
+	/*
+	 * 	intake / intake_once / nutrition を更新するメソッドは
+	 * 	同じトランザクション内で日別集計（daily_summary）も再計算する
+	 */
+	@Transactional
 	public int insIntake(String userId, long nutritionId, BigDecimal qty) {
 		LocalDateTime now = LocalDateTime.now();
-		return intakeRepo.insIntake(userId, nutritionId, now.toLocalDate(), now.toLocalTime(), qty);
+		int cnt = intakeRepo.insIntake(userId, nutritionId, now.toLocalDate(), now.toLocalTime(), qty);
+		invalidateHistory(userId, intakeRepo.refreshDailySummary(userId, now.toLocalDate()));
+		return cnt;
 	}
 	
+	@Transactional
 	public void updIntake(String userId, long intakeId, LocalDate eatenDate, LocalTime eatenTime) {
-		intakeRepo.updIntake(userId, intakeId, eatenDate, eatenTime);
+		LocalDate oldDate = intakeRepo.getIntakeDate(userId, intakeId);
+		if (intakeRepo.updIntake(userId, intakeId, eatenDate, eatenTime) != 0) {
+			invalidateHistory(userId, intakeRepo.refreshDailySummary(userId, oldDate, eatenDate));
+		}
 	}
 	
+	@Transactional
 	public void updIntakeOnce(String userId, long intakeOnceId, LocalDate eatenDate, LocalTime eatenTime) {
-		intakeRepo.updIntakeOnce(userId, intakeOnceId, eatenDate, eatenTime);
+		LocalDate oldDate = intakeRepo.getIntakeOnceDate(userId, intakeOnceId);
+		if (intakeRepo.updIntakeOnce(userId, intakeOnceId, eatenDate, eatenTime) != 0) {
+			invalidateHistory(userId, intakeRepo.refreshDailySummary(userId, oldDate, eatenDate));
+		}
 	}
 	
+	@Transactional
 	public int delIntake(String userId, long intakeId) {
-		return intakeRepo.delIntake(intakeId, userId);
+		LocalDate oldDate = intakeRepo.getIntakeDate(userId, intakeId);
+		int cnt = intakeRepo.delIntake(intakeId, userId);
+		if (cnt != 0) {
+			invalidateHistory(userId, intakeRepo.refreshDailySummary(userId, oldDate));
+		}
+		return cnt;
 	}
 	
+	@Transactional
 	public int delIntakeOnce(String userId, long intakeOnceId) {
-		return intakeRepo.delIntakeOnce(intakeOnceId, userId);
+		LocalDate oldDate = intakeRepo.getIntakeOnceDate(userId, intakeOnceId);
+		int cnt = intakeRepo.delIntakeOnce(intakeOnceId, userId);
+		if (cnt != 0) {
+			invalidateHistory(userId, intakeRepo.refreshDailySummary(userId, oldDate));
+		}
+		return cnt;
+	}
+	
+	/*
+	 * 	intake / intake_onceの登録・更新・削除を1つのトランザクションでまとめて適用するメソッド
+	 * 	（オフライン中に溜めた操作の送信用。1件でも不正な操作があれば何も適用しない）
+	 *	@param	userId ユーザーID
+	 *	@param	ops 操作の一覧
+	 *	@return	IntakeBatchResult
+	 */
+	@Transactional
+	public IntakeBatchResult applyIntakeBatch(String userId, List<IntakeOp> ops) {
+		validateIntakeBatch(ops);
+		IntakeBatchResult result = intakeRepo.applyIntakeBatch(userId, ops);
+		List<LocalDate> refreshed = intakeRepo.refreshDailySummary(userId, result.dates().toArray(LocalDate[]::new));
+		invalidateHistory(userId, refreshed);
+		return new IntakeBatchResult(result.inserted(), result.updated(), result.deleted(), result.results(),
+				refreshed.stream().sorted().toList());
+	}
+	
+	// 一括更新の入力チェック（不正ならIllegalArgumentException）
+	private void validateIntakeBatch(List<IntakeOp> ops) {
+		if (ops == null || ops.isEmpty()) {
+			throw new IllegalArgumentException("操作がありません");
+		}
+		if (ops.size() > intakeBatchMaxOps) {
+			throw new IllegalArgumentException("1回に送れる操作は" + intakeBatchMaxOps + "件までです");
+		}
+		for (int i = 0; i < ops.size(); i++) {
+			IntakeOp op = ops.get(i);
+			String error = (op == null) ? "操作が空です" : validateIntakeOp(op);
+			if (error != null) {
+				throw new IllegalArgumentException((i + 1) + "件目：" + error);
+			}
+		}
+	}
+	
+	private static String validateIntakeOp(IntakeOp op) {
+		boolean once = IntakeOp.KIND_INTAKE_ONCE.equals(op.kind());
+		if (!once && !IntakeOp.KIND_INTAKE.equals(op.kind())) {
+			return "kindが不正です（" + op.kind() + "）";
+		}
+		if (IntakeOp.OP_INSERT.equals(op.op())) {
+			if (op.qty() != null && op.qty().signum() <= 0) {
+				return "qtyは0より大きい値にしてください";
+			}
+			if (!once && op.nutritionId() == null) {
+				return "nutritionIdがありません";
+			}
+			if (once && (op.calorie() == null || op.calorie() < 0)) {
+				return "calorieがありません";
+			}
+			return null;
+		}
+		if (IntakeOp.OP_UPDATE.equals(op.op())) {
+			if (op.id() == null || op.eatenDate() == null || op.eatenTime() == null) {
+				return "id・eatenDate・eatenTimeがありません";
+			}
+			return null;
+		}
+		if (IntakeOp.OP_DELETE.equals(op.op())) {
+			return (op.id() == null) ? "idがありません" : null;
+		}
+		return "opが不正です（" + op.op() + "）";
 	}
 	
+	/*
+	 * 	CSVを取り込むメソッド（メーカー・食品・栄養情報・食べた記録）
+	 * 	エラーの行は取り込まずに結果に含める（CSVの形式自体が不正な場合・行数が上限を超えた場合はIllegalArgumentException）
+	 *	@param	userId ユーザーID
+	 *	@param	csv CSVの内容（アップロードされたファイルをそのまま読む）
+	 *	@return	CsvImportResult
+	 */
+	@Transactional
+	public CsvImportResult importCsv(String userId, Reader csv) {
+		CsvImportResult result = intakeRepo.importCsv(userId, csv, csvImportMaxRows, CSV_IMPORT_MAX_ERRORS);
+		List<LocalDate> refreshed = intakeRepo.refreshDailySummaryByImport(userId);
+		invalidateCatalog(userId);
+		invalidateHistory(userId, refreshed);
+		return new CsvImportResult(result.rows(), result.makersCreated(), result.foodsCreated(), result.nutritionsCreated(),
+				result.intakesCreated(), result.intakesSkipped(), result.errorCount(), result.errors(),
+				refreshed.stream().sorted().toList());
+	}
+	
+	@Transactional
 	public int insIntakeOnce(String userId, String foodName, int calorie, Double protein, Double lipid, Double carbo, Double salt) {
-		return intakeRepo.insIntakeOnce(userId, foodName, calorie, protein, lipid, carbo, salt);
+		int cnt = intakeRepo.insIntakeOnce(userId, foodName, calorie, protein, lipid, carbo, salt);
+		// 登録日はDBのCURRENT_DATE（同一トランザクション内なので同じ日付）
+		invalidateHistory(userId, intakeRepo.refreshDailySummaryCurrentDate(userId));
+		return cnt;
 	}
 	
 	public int insFoodMaker(String userId, String makerName) {
-		return intakeRepo.insFoodMaker(userId, makerName);
+		int makerId = intakeRepo.insFoodMaker(userId, makerName);
+		invalidateCatalog(userId);
+		return makerId;
 	}
 	
 	public boolean chkDepliFood(String userId, String foodName, long makerId) {
@@ -97,7 +392,9 @@ public class IntakeService {
 	}
 	
 	public int insFood(String userId, String foodName, long makerId) {
-		return intakeRepo.insFood(userId, foodName, makerId);
+		int foodId = intakeRepo.insFood(userId, foodName, makerId);
+		invalidateCatalog(userId);
+		return foodId;
 	}
 	
 	public long getRegistFoodId(String userId, String foodName, long makerId) {
@@ -121,47 +418,60 @@ public class IntakeService {
 	
 	public void insNutrition(String userId, String className, long foodId, int calorie, Double protein, Double lipid, Double carbo, Double salt) {
 		intakeRepo.insNutrition(userId, className, foodId, calorie, protein, lipid, carbo, salt);
-		
+		invalidateCatalog(userId);
 	}
 	
-	public Map<String, Object> getIntakeDetail(String userId, long intakeId) {
+	public IntakeDetail getIntakeDetail(String userId, long intakeId) {
 		return intakeRepo.getIntakeDetail(userId, intakeId);
 	}
 	
-	public Map<String, Object> getIntakeOnceDetail(String userId, long intakeId) {
+	public IntakeDetail getIntakeOnceDetail(String userId, long intakeId) {
 		return intakeRepo.getIntakeOnceDetail(userId, intakeId);
 	}
 	
-	public List<Map<String, Object>> getMakerList(String userId){
-		return intakeRepo.getMakerList(userId);
+	/*
+	 * 	メーカー・食品・栄養情報の参照はカタログのスナップショットから返す
+	 * 	（返す一覧は書き換えできない）
+	 */
+	public List<MakerRow> getMakerList(String userId){
+		return catalog(userId).getMakerList();
 	}
 	
 	public String getMakerName(String userId, long makerId) {
-		return intakeRepo.getMakerName(userId, makerId);
+		return catalog(userId).getMakerName(makerId);
+	}
+	
+	public List<FoodRow> getFoodList(String userId, long makerId){
+		return catalog(userId).getFoodList(makerId);
 	}
 	
-	public List<Map<String, Object>> getFoodList(String userId, long makerId){
-		return intakeRepo.getFoodList(userId, makerId);
+	public List<FoodRow> getFoodListAll(String userId){
+		return catalog(userId).getFoodListAll();
 	}
 	
-	public List<Map<String, Object>> getFoodListAll(String userId){
-		return intakeRepo.getFoodListAll(userId);
+	public FoodRow getHeaderInfo (String userId, long foodId) {
+		return catalog(userId).getHeaderInfo(foodId);
 	}
 	
-	public Map<String, Object> getHeaderInfo (String userId, long foodId) {
-		return intakeRepo.getHeaderInfo(userId, foodId);
+	public List<NutritionRow> getNutritionList(String userId, long foodId){
+		return catalog(userId).getNutritionList(foodId);
 	}
 	
-	public List<Map<String, Object>> getNutritionList(String userId, long foodId){
-		return intakeRepo.getNutritionList(userId, foodId);
+	public List<NutritionRow> getNutritionListAll(String userId){
+		return catalog(userId).getNutritionListAll();
 	}
 	
-	public List<Map<String, Object>> getNutritionListAll(String userId){
-		return intakeRepo.getNutritionListAll(userId);
+	public NutritionRow getNutritionInfo (String userId, long nutritionId) {
+		return catalog(userId).getNutritionInfo(nutritionId);
 	}
 	
-	public Map<String, Object> getNutritionInfo (String userId, long nutritionId) {
-		return intakeRepo.getNutritionInfo(userId, nutritionId);
+	// お気に入りIDはお気に入り一覧から（0なら未登録）
+	public long getFavoriteId(String userId, long nutritionId) {
+		return getFavoriteList(userId).stream()
+				.filter(fav -> fav.nutritionId() == nutritionId)
+				.mapToLong(FavoriteRow::favoriteId)
+				.findFirst()
+				.orElse(0);
 	}
 	
 	public String chkUserId(HttpServletRequest req, String uidCookie) {
@@ -169,7 +479,18 @@ public class IntakeService {
 		if (req.getCookies() != null) {
 	        for (Cookie c : req.getCookies()) {
 	            if (uidCookie.equals(c.getName()) && c.getValue() != null && !c.getValue().isBlank()) {
-	            	userId = intakeRepo.chkUserId(c);
+	            	// キャッシュにあればDBに問い合わせない
+	            	Boolean cached = userIdCache.lookup(c.getValue());
+	            	if (cached == null) {
+	            		userId = intakeRepo.chkUserId(c);
+	            		if (userId.isEmpty()) {
+	            			userIdCache.putUnknown(c.getValue());
+	            		} else {
+	            			userIdCache.putKnown(userId);
+	            		}
+	            	} else if (cached) {
+	            		userId = c.getValue();
+	            	}
 	            }
 	            if(!userId.isEmpty()) {
 	            	break;
@@ -182,6 +503,7 @@ public class IntakeService {
 	public String registUserId() {
 		String userId = UUID.randomUUID().toString();
 		intakeRepo.registUserId(userId);
+		userIdCache.putKnown(userId);
 		return userId;
 	}
 	
@@ -204,19 +526,38 @@ public class IntakeService {
 	}
 	
 	public void updLastAccessDate(String userId) {
-		intakeRepo.updLastAccessDate(userId);
+		// 即時UPDATEはせず、バッファに溜めてまとめて書き込む
+		lastAccessBuffer.record(userId);
 	}
 	
-	public int updMaker(long makerId, String makerName) {
-		return intakeRepo.updMaker(makerId, makerName);
+	public int updMaker(String userId, long makerId, String makerName) {
+		int cnt = intakeRepo.updMaker(userId, makerId, makerName);
+		if (cnt != 0) {
+			invalidateCatalog(userId);
+		}
+		return cnt;
 	}
 	
 	public int updFood(String userId, long foodId, String foodName) {
-		return intakeRepo.updFood(userId, foodId, foodName);
+		int cnt = intakeRepo.updFood(userId, foodId, foodName);
+		if (cnt != 0) {
+			invalidateCatalog(userId);
+			// お気に入り一覧に食品名を表示しているため
+			invalidateFavorites(userId);
+		}
+		return cnt;
 	}
 	
+	@Transactional
 	public int updNutrition(String userId, long nutritionId, String className, int calorie, BigDecimal protein, BigDecimal lipid , BigDecimal carbo , BigDecimal salt) {
-		return intakeRepo.updNutrition(userId, nutritionId, className, calorie, protein, lipid, carbo, salt);
+		int cnt = intakeRepo.updNutrition(userId, nutritionId, className, calorie, protein, lipid, carbo, salt);
+		if (cnt != 0) {
+			invalidateHistory(userId, intakeRepo.refreshDailySummaryByNutrition(userId, nutritionId));
+			invalidateCatalog(userId);
+			// お気に入り一覧に分類名を表示しているため
+			invalidateFavorites(userId);
+		}
+		return cnt;
 	}
 	
 	public String getPostMsg(LocalDate today, LocalDate targetDate, int totalKcal, List<IntakeRow> targetDateAteRecords, int r) {
@@ -253,15 +594,20 @@ public class IntakeService {
 	}
 	
 	public int insFavorite(String userId, long nutritionId) {
-		return intakeRepo.insFavorite(userId, nutritionId);
+		int cnt = intakeRepo.insFavorite(userId, nutritionId);
+		invalidateFavorites(userId);
+		return cnt;
 	}
 	
 	public int delFavorite(String userId, long nutritionId) {
-		return intakeRepo.delFavorite(userId, nutritionId);
+		int cnt = intakeRepo.delFavorite(userId, nutritionId);
+		invalidateFavorites(userId);
+		return cnt;
 	}
 	
 	public void swapFavorite(String userId, long favoriteId, String direction) {
 		intakeRepo.swapFavorite(userId, favoriteId, direction);
+		invalidateFavorites(userId);
 	}
 	
 	public boolean chkDepliNutritionUpd(String userId, String className, long foodId, long nutritionId) {
@@ -271,22 +617,76 @@ public class IntakeService {
 	@Transactional
 	public boolean delMakerWithFavorites(String userId, long makerId) {
 	    intakeRepo.delFavoriteFromMaker(userId, makerId);
-	    return intakeRepo.delMaker(userId, makerId) != 0;
+	    invalidateFavorites(userId);
+	    if (intakeRepo.delMaker(userId, makerId) == 0) {
+	    	return false;
+	    }
+	    invalidateCatalog(userId);
+	    // メーカーが消えるとPFC・塩分の集計対象から外れる
+	    invalidateHistory(userId, intakeRepo.refreshDailySummaryByMaker(userId, makerId));
+	    return true;
 	}
 	
 	@Transactional
 	public boolean delFoodWithFavorites(String userId, long foodId) {
 	    intakeRepo.delFavoriteFromFood(userId, foodId);
-	    return intakeRepo.delFood(userId, foodId) != 0;
+	    invalidateFavorites(userId);
+	    if (intakeRepo.delFood(userId, foodId) == 0) {
+	    	return false;
+	    }
+	    invalidateCatalog(userId);
+	    // 食品が消えるとPFC・塩分の集計対象から外れる
+	    invalidateHistory(userId, intakeRepo.refreshDailySummaryByFood(userId, foodId));
+	    return true;
 	}
 	
 	@Transactional
 	public boolean delNutritionWithFavorites(String userId, long nutritionId) {
 	    intakeRepo.delFavoriteFromNutrition(userId, nutritionId);
-	    return intakeRepo.delNutrition(userId, nutritionId) != 0;
+	    invalidateFavorites(userId);
+	    if (intakeRepo.delNutrition(userId, nutritionId) == 0) {
+	    	return false;
+	    }
+	    invalidateCatalog(userId);
+	    // 栄養情報が消えるとカロリーの集計対象からも外れる
+	    invalidateHistory(userId, intakeRepo.refreshDailySummaryByNutrition(userId, nutritionId));
+	    return true;
 	}
 	
-	public List<Map<String, Object>> getDailyTotalNutrition(String userId, LocalDate targetDate){
+	public DailyNutrition getDailyTotalNutrition(String userId, LocalDate targetDate){
 		return intakeRepo.getDailyTotalNutrition(userId,targetDate);
 	}
+	
+	// デイリー詳細画面：合計カロリーとPFCの合計（daily_summaryの同じ行を1回で読む）
+	public DailyDetail loadDailyDetail(String userId, LocalDate targetDate) {
+		return intakeRepo.getDailyDetail(userId, targetDate);
+	}
+	
+	// 栄養情報詳細画面：栄養情報とお気に入りID（どちらもキャッシュから引くので順番に取得）
+	public NutritionDetail loadNutritionDetail(String userId, long nutritionId) {
+		return new NutritionDetail(getNutritionInfo(userId, nutritionId), getFavoriteId(userId, nutritionId));
+	}
+	
+	/*
+	 * 	管理画面の一覧（1ページ分＋次ページ有無の判定用に1件多く取得）
+	 */
+	public List<Map<String, Object>> getManageUsers(String userId, LocalDateTime afterDate, String afterId, int size) {
+		return intakeRepo.getManageUsers(userId, afterDate, afterId, size + 1);
+	}
+	
+	public List<Map<String, Object>> getManageMakers(String userId, Long afterId, int size) {
+		return intakeRepo.getManageMakers(userId, afterId, size + 1);
+	}
+	
+	public List<Map<String, Object>> getManageFoods(String userId, Long afterId, int size) {
+		return intakeRepo.getManageFoods(userId, afterId, size + 1);
+	}
+	
+	public List<Map<String, Object>> getManageNutritions(String userId, Long afterId, int size) {
+		return intakeRepo.getManageNutritions(userId, afterId, size + 1);
+	}
+	
+	public List<Map<String, Object>> getManageIntakes(String userId, Long afterId, int size) {
+		return intakeRepo.getManageIntakes(userId, afterId, size + 1);
+	}
 }
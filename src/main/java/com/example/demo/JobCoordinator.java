@@ -0,0 +1,173 @@
+package com.example.demo;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * 	定期実行ジョブを、複数のインスタンスのうち1つだけで実行する仕組み（job_leaseテーブルのリース）
+ * 	・リースを取れたインスタンスだけが実行し、取れなかったインスタンスは何もしない
+ * 	・実行中はlease-ttlの1/3ごとにリースを延長する（インスタンスが落ちたら期限切れで他が取れる）
+ * 	・終了後もmin-intervalまではリースを残す（時計のずれで同じ回を別のインスタンスが実行しないように）
+ * 	・時刻はすべてDBのnow()で比べる
+ */
+@Component
+public class JobCoordinator {
+
+	public static final String STATUS_SUCCESS = "success";
+	public static final String STATUS_FAILED = "failed";
+
+	private final JdbcTemplate jdbc;
+	private final MeterRegistry registry;
+	private final String owner;
+	private final long leaseTtlSeconds;
+	private final long minIntervalSeconds;
+	private final ScheduledExecutorService heartbeat;
+
+	public JobCoordinator(JdbcTemplate jdbc, MeterRegistry registry,
+			@Value("${app.jobs.owner:}") String owner,
+			@Value("${app.jobs.lease-ttl-seconds:300}") long leaseTtlSeconds,
+			@Value("${app.jobs.min-interval-seconds:600}") long minIntervalSeconds) {
+		this.jdbc = jdbc;
+		this.registry = registry;
+		// 未指定なら「pid@ホスト名/起動ごとの値」（同じプロセス内の別のコンテキストとも区別する）
+		this.owner = owner.isBlank()
+				? ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8)
+				: owner;
+		this.leaseTtlSeconds = leaseTtlSeconds;
+		this.minIntervalSeconds = minIntervalSeconds;
+		this.heartbeat = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name("job-lease-heartbeat").daemon().factory());
+	}
+
+	/*
+	 * 	リースを取れた場合だけジョブを実行するメソッド
+	 *	@param	jobName ジョブ名
+	 *	@param	job 処理
+	 *	@return	true：このインスタンスで実行した / false：他のインスタンスが実行中・実行済み
+	 */
+	public boolean runExclusive(String jobName, Runnable job) {
+		if (!acquire(jobName)) {
+			Counter.builder("app.jobs.runs").tag("job", jobName).tag("outcome", "skipped").register(registry).increment();
+			System.out.println("[JobCoordinator] " + jobName + " skipped (lease held by another instance)");
+			return false;
+		}
+		ScheduledFuture<?> renewal = heartbeat.scheduleAtFixedRate(() -> renew(jobName),
+				leaseTtlSeconds / 3, Math.max(1, leaseTtlSeconds / 3), TimeUnit.SECONDS);
+		long start = System.nanoTime();
+		String status = STATUS_FAILED;
+		String error = null;
+		try {
+			job.run();
+			status = STATUS_SUCCESS;
+			return true;
+		} catch (RuntimeException | Error e) {
+			error = e.toString();
+			throw e;
+		} finally {
+			renewal.cancel(false);
+			long nanos = System.nanoTime() - start;
+			release(jobName, TimeUnit.NANOSECONDS.toMillis(nanos), status, error);
+			Timer.builder("app.jobs.duration").tag("job", jobName).register(registry).record(nanos, TimeUnit.NANOSECONDS);
+			Counter.builder("app.jobs.runs").tag("job", jobName).tag("outcome", status).register(registry).increment();
+		}
+	}
+
+	// リースを取る（無ければ作り、期限切れなら奪う）
+	private boolean acquire(String jobName) {
+		String sql = """
+				INSERT INTO job_lease (job_name, owner, acquired_at, lease_until)
+				VALUES (?, ?, now(), now() + make_interval(secs => ?))
+				ON CONFLICT (job_name) DO UPDATE
+				SET owner = EXCLUDED.owner,
+				    acquired_at = EXCLUDED.acquired_at,
+				    lease_until = EXCLUDED.lease_until
+				WHERE job_lease.lease_until <= now()
+				RETURNING job_name;
+				""";
+		return !jdbc.queryForList(sql, String.class, jobName, owner, leaseTtlSeconds).isEmpty();
+	}
+
+	// 実行中のリースを延長する
+	private void renew(String jobName) {
+		String sql = """
+				UPDATE job_lease
+				SET lease_until = now() + make_interval(secs => ?)
+				WHERE job_name = ?
+				  AND owner = ?;
+				""";
+		try {
+			if (jdbc.update(sql, leaseTtlSeconds, jobName, owner) == 0) {
+				System.out.println("[JobCoordinator] " + jobName + " lease lost (owner = " + owner + ")");
+			}
+		} catch (RuntimeException e) {
+			// 次の延長で再試行する（期限までに延長できなければ他のインスタンスが取れる）
+			System.out.println("[JobCoordinator] " + jobName + " lease renewal failed: " + e);
+		}
+	}
+
+	// 結果を記録し、min-intervalの経過後に他のインスタンスが取れるようにする
+	private void release(String jobName, long durationMillis, String status, String error) {
+		String sql = """
+				UPDATE job_lease
+				SET lease_until = greatest(now(), acquired_at + make_interval(secs => ?)),
+				    last_owner = owner,
+				    last_started_at = acquired_at,
+				    last_finished_at = now(),
+				    last_duration_ms = ?,
+				    last_status = ?,
+				    last_error = ?
+				WHERE job_name = ?
+				  AND owner = ?;
+				""";
+		jdbc.update(sql, minIntervalSeconds, durationMillis, status, error, jobName, owner);
+	}
+
+	/*
+	 * 	ジョブごとの実行状況を取得するメソッド（管理画面用）
+	 *	@return	ジョブ名・保持しているインスタンス・実行中か・前回の開始/終了日時・所要時間・結果
+	 */
+	public List<Map<String, Object>> getStatuses() {
+		String sql = """
+				SELECT
+				    job_name,
+				    owner,
+				    last_started_at IS DISTINCT FROM acquired_at AND lease_until > now() AS running,
+				    acquired_at,
+				    lease_until,
+				    last_owner,
+				    last_started_at,
+				    last_finished_at,
+				    last_duration_ms,
+				    last_status,
+				    last_error
+				FROM job_lease
+				ORDER BY job_name;
+				""";
+		return jdbc.queryForList(sql);
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		heartbeat.shutdownNow();
+	}
+}
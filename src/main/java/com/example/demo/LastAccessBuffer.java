@@ -0,0 +1,138 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ * 	最終アクセス日時の更新をメモリに溜めて、まとめてDBに書き込むバッファ
+ * 	・ユーザーごとに最新のアクセス時点だけを保持する
+ * 	・一定間隔（または上限件数に達したとき）に1回のUPDATEでまとめて反映する
+ * 	　（CleanupJobは、この間隔より長く待ってから再訪していないユーザーを削除する。app.cleanup.flush-wait-ms）
+ * 	　（日時はDBの時計で決める。JVMからはアクセスから書き込みまでの経過時間だけを渡す）
+ * 	・mode=daily のときは、アクセスと同じ日付ですでに記録済みのユーザーは更新しない
+ * 	　（登録日時のままのユーザーは登録と同じ日の再訪でも書く。再訪していないユーザーとしてCleanupJobで削除されないように）
+ * 	　（同じ日の2回目以降は、メモリの記録済み一覧でバッファにも入れない。一覧は日付が変わるか上限件数で空にする）
+ */
+@Component
+public class LastAccessBuffer {
+
+	private final IntakeRepository intakeRepo;
+	private final int maxPending;
+	private final int maxMarked;
+	private final boolean dailyMode;
+
+	// key: user_id / value: 最新のアクセス時点（System.nanoTime()）
+	private final Map<String, Long> pending = new ConcurrentHashMap<>();
+	// 本日記録済みのuser_id（dailyモード用。markedDayの日付の分だけを持つ）
+	private final Set<String> markedToday = ConcurrentHashMap.newKeySet();
+	private volatile LocalDate markedDay = LocalDate.now();
+	// 書き出しは1本ずつ（DB書き込み中に仮想スレッドがキャリアスレッドを占有しないようsynchronizedは使わない）
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	public LastAccessBuffer(IntakeRepository intakeRepo,
+			@Value("${app.last-access.max-pending:5000}") int maxPending,
+			@Value("${app.last-access.max-marked:10000}") int maxMarked,
+			@Value("${app.last-access.mode:always}") String mode) {
+		this.intakeRepo = intakeRepo;
+		this.maxPending = maxPending;
+		this.maxMarked = maxMarked;
+		this.dailyMode = "daily".equalsIgnoreCase(mode);
+	}
+
+	/*
+	 * 	アクセスを記録するメソッド
+	 *	@param	userId user_id
+	 */
+	public void record(String userId) {
+		if (dailyMode) {
+			clearOldMarks();
+			// 本日記録済みならスキップ（一覧から漏れても、DB側の日付の条件で同じ日の2回目は更新されない）
+			if (!markedToday.add(userId)) {
+				return;
+			}
+		}
+		pending.put(userId, System.nanoTime());
+
+		// 上限を超えたらその場で書き出す
+		if (pending.size() >= maxPending) {
+			flush();
+		}
+	}
+
+	/*
+	 * 	溜まっているアクセス日時をまとめてDBに書き込むメソッド
+	 *	@return	更新件数
+	 */
+	@Scheduled(fixedDelayString = "${app.last-access.flush-interval-ms:60000}")
+	public int flush() {
+		flushLock.lock();
+		try {
+			return flushPending();
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private int flushPending() {
+		if (pending.isEmpty()) {
+			clearOldMarks();
+			return 0;
+		}
+		List<String> userIds = new ArrayList<>();
+		List<Long> accessTimes = new ArrayList<>();
+		for (String userId : new ArrayList<>(pending.keySet())) {
+			Long accessTime = pending.remove(userId);
+			if (accessTime != null) {
+				userIds.add(userId);
+				accessTimes.add(accessTime);
+			}
+		}
+		long now = System.nanoTime();
+		List<Long> agesMillis = accessTimes.stream().map(t -> TimeUnit.NANOSECONDS.toMillis(now - t)).toList();
+		try {
+			return intakeRepo.updLastAccessDates(userIds, agesMillis, dailyMode);
+		} catch (RuntimeException e) {
+			// 失敗したら戻しておく（新しい方を優先）
+			for (int i = 0; i < userIds.size(); i++) {
+				pending.merge(userIds.get(i), accessTimes.get(i), (a, b) -> a - b > 0 ? a : b);
+			}
+			throw e;
+		} finally {
+			clearOldMarks();
+		}
+	}
+
+	// 日付が変わったか上限件数を超えたら、記録済みの一覧を空にする
+	private void clearOldMarks() {
+		if (!dailyMode) {
+			return;
+		}
+		LocalDate today = LocalDate.now();
+		if (!today.equals(markedDay) || markedToday.size() >= maxMarked) {
+			markedDay = today;
+			markedToday.clear();
+		}
+	}
+
+	// 終了時に書き出す
+	@PreDestroy
+	public void flushOnShutdown() {
+		flush();
+	}
+
+	public int getPendingCount() {
+		return pending.size();
+	}
+}
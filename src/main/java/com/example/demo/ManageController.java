@@ -0,0 +1,295 @@
+package com.example.demo;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/*
+ * 	管理画面（/login・/manage/*）
+ * 	・ホーム画面のHomeControllerとは分けて、遅延初期化のときは最初に使われたときに作る
+ * 	　（日別集計・ジョブの状況・統計だけで使うBeanを起動時に作らないため）
+ */
+@Controller
+public class ManageController {
+
+	/*--------------------------------------
+		定数
+	--------------------------------------*/
+	private final JdbcTemplate jdbc;
+	private final IntakeService intakeSvc;
+	private final UserIdCache userIdCache;
+	private final LastAccessBuffer lastAccessBuffer;
+	private final DailySummaryJob dailySummaryJob;
+	private final HistoryCache historyCache;
+	private final FavoriteCache favoriteCache;
+	private final CatalogCache catalogCache;
+	private final AdmissionGate admissionGate;
+	private final DataExporter dataExporter;
+	private final JobCoordinator jobCoordinator;
+
+	// 管理画面の1ページの件数（既定・上限）
+	private static final int MANAGE_PAGE_SIZE = 100;
+	private static final int MANAGE_PAGE_SIZE_MAX = 500;
+
+	public ManageController(JdbcTemplate jdbc, IntakeService intakeSvc, UserIdCache userIdCache,
+			LastAccessBuffer lastAccessBuffer, DailySummaryJob dailySummaryJob, HistoryCache historyCache,
+			FavoriteCache favoriteCache, CatalogCache catalogCache, AdmissionGate admissionGate,
+			DataExporter dataExporter, JobCoordinator jobCoordinator) {
+		this.jdbc = jdbc;
+		this.intakeSvc = intakeSvc;
+		this.userIdCache = userIdCache;
+		this.lastAccessBuffer = lastAccessBuffer;
+		this.dailySummaryJob = dailySummaryJob;
+		this.historyCache = historyCache;
+		this.favoriteCache = favoriteCache;
+		this.catalogCache = catalogCache;
+		this.admissionGate = admissionGate;
+		this.dataExporter = dataExporter;
+		this.jobCoordinator = jobCoordinator;
+	}
+	
+	/*--------------------------------------
+		開発用
+	--------------------------------------*/
+	@PostMapping("/login")
+	public String login(@RequestParam("password") String password,
+	                    HttpServletRequest req) {
+
+	    String hexString = sha256Hex(password);
+
+	    String sql = """
+	        SELECT EXISTS(
+	            SELECT 1 FROM users WHERE password = ?
+	        )
+	    """;
+
+	    Boolean ok = jdbc.queryForObject(sql, Boolean.class, hexString);
+	    if (Boolean.TRUE.equals(ok)) {
+	        req.getSession(true).setAttribute("ADMIN_OK", true);  // ★ここ
+	        return "redirect:/manage";
+	    }
+	    return "redirect:/login";
+	}
+
+	private String sha256Hex(String password) {
+	    try {
+	        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+	        byte[] sha256Byte = sha256.digest(password.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+	        return java.util.HexFormat.of().withLowerCase().formatHex(sha256Byte);
+	    } catch (NoSuchAlgorithmException e) {
+	        throw new RuntimeException(e);
+	    }
+	}
+	
+	private boolean isAdmin(HttpServletRequest req) {
+	    Object v = req.getSession(false) == null ? null : req.getSession(false).getAttribute("ADMIN_OK");
+	    return Boolean.TRUE.equals(v);
+	}
+	
+	@GetMapping("/login")
+	@SqlBudget(0)
+	public String login(HttpServletRequest req, HttpServletResponse res) {
+		return "login";
+	}
+	
+	@GetMapping("/manage")
+	public String manage(HttpServletRequest req, HttpServletResponse res) {
+	    if (!isAdmin(req)) return "redirect:/login";
+	    return "manage";
+	}
+	
+	// キャッシュ等の統計情報
+	@GetMapping("/manage/stats")
+	@ResponseBody
+	public Map<String, Object> manageStats(HttpServletRequest req, HttpServletResponse res) {
+		if (!isAdmin(req)) {
+			res.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			return Map.of();
+		}
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("userIdCache.hits", userIdCache.getHits());
+		stats.put("userIdCache.negativeHits", userIdCache.getNegativeHits());
+		stats.put("userIdCache.misses", userIdCache.getMisses());
+		stats.put("userIdCache.size", userIdCache.getSize());
+		stats.put("userIdCache.maxSize", userIdCache.getMaxSize());
+		stats.put("lastAccessBuffer.pending", lastAccessBuffer.getPendingCount());
+		stats.put("historyCache.hits", historyCache.getHits());
+		stats.put("historyCache.misses", historyCache.getMisses());
+		stats.put("historyCache.invalidations", historyCache.getInvalidations());
+		stats.put("historyCache.users", historyCache.getUserCount());
+		stats.put("favoriteCache.hits", favoriteCache.getHits());
+		stats.put("favoriteCache.misses", favoriteCache.getMisses());
+		stats.put("favoriteCache.evictions", favoriteCache.getEvictions());
+		stats.put("favoriteCache.invalidations", favoriteCache.getInvalidations());
+		stats.put("favoriteCache.size", favoriteCache.getSize());
+		stats.put("favoriteCache.maxSize", favoriteCache.getMaxWeight());
+		stats.put("catalogCache.hits", catalogCache.getHits());
+		stats.put("catalogCache.misses", catalogCache.getMisses());
+		stats.put("catalogCache.evictions", catalogCache.getEvictions());
+		stats.put("catalogCache.invalidations", catalogCache.getInvalidations());
+		stats.put("catalogCache.users", catalogCache.getSize());
+		stats.put("catalogCache.bytes", catalogCache.getWeight());
+		stats.put("catalogCache.maxBytes", catalogCache.getMaxWeight());
+		stats.put("admissionGate.inFlight", admissionGate.getInFlight());
+		stats.put("admissionGate.maxPermits", admissionGate.getMaxPermits());
+		stats.put("admissionGate.queueDepth", admissionGate.getQueueDepth());
+		stats.put("admissionGate.maxQueue", admissionGate.getMaxQueue());
+		stats.put("admissionGate.admitted", admissionGate.getAdmitted());
+		stats.put("admissionGate.shed", admissionGate.getShed());
+		stats.put("dataExporter.exports", dataExporter.getExports());
+		stats.put("dataExporter.exportedRows", dataExporter.getExportedRows());
+		stats.put("dataExporter.running", dataExporter.getRunning());
+		stats.put("dataExporter.waiting", dataExporter.getWaiting());
+		return stats;
+	}
+	
+	// 日別集計の作り直し
+	@PostMapping("/manage/daily-summary/rebuild")
+	@ResponseBody
+	public Map<String, Object> rebuildDailySummary(HttpServletRequest req, HttpServletResponse res) {
+		if (!isAdmin(req)) {
+			res.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			return Map.of();
+		}
+		return Map.of("rebuiltRows", dailySummaryJob.rebuild());
+	}
+	
+	// 日別集計と元データの突き合わせ（不一致の行を返す）
+	@GetMapping("/manage/daily-summary/verify")
+	@ResponseBody
+	public Map<String, Object> verifyDailySummary(HttpServletRequest req, HttpServletResponse res) {
+		if (!isAdmin(req)) {
+			res.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			return Map.of();
+		}
+		List<Map<String, Object>> mismatches = dailySummaryJob.verify();
+		return Map.of("mismatchCount", mismatches.size(), "mismatches", mismatches);
+	}
+	
+	@GetMapping("/manage/users")
+	public String manageUsers(@RequestParam(name="userId", required=false) String userId,
+			@RequestParam(name="after", required=false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime after,
+			@RequestParam(name="afterId", required=false) String afterId,
+			@RequestParam(name="size", required=false) Integer size,
+			Model model, HttpServletRequest req, HttpServletResponse res) {
+		if (!isAdmin(req)) return "redirect:/login";
+		int pageSize = managePageSize(size);
+		String filterUserId = blankToNull(userId);
+		List<Map<String, Object>> dataList = intakeSvc.getManageUsers(filterUserId, after, blankToNull(afterId), pageSize);
+		Map<String, Object> last = setManagePage(model, dataList, pageSize, filterUserId);
+		if (last != null) {
+			model.addAttribute("nextAfter", ((Timestamp) last.get("last_access_date")).toLocalDateTime());
+			model.addAttribute("nextAfterId", last.get("user_id"));
+		}
+		return "manage_users";
+	}
+	
+	// 定期実行ジョブの状況（どのインスタンスが保持・前回の実行）
+	@GetMapping("/manage/jobs")
+	public String manageJobs(Model model, HttpServletRequest req) {
+		if (!isAdmin(req)) return "redirect:/login";
+		model.addAttribute("owner", jobCoordinator.getOwner());
+		model.addAttribute("jobs", jobCoordinator.getStatuses());
+		return "manage_jobs";
+	}
+	
+	@GetMapping("/manage/maker")
+	public String manageMaker(@RequestParam(name="userId", required=false) String userId,
+			@RequestParam(name="afterId", required=false) Long afterId,
+			@RequestParam(name="size", required=false) Integer size,
+			Model model, HttpServletRequest req, HttpServletResponse res) {
+		if (!isAdmin(req)) return "redirect:/login";
+		int pageSize = managePageSize(size);
+		String filterUserId = blankToNull(userId);
+		List<Map<String, Object>> dataList = intakeSvc.getManageMakers(filterUserId, afterId, pageSize);
+		setNextAfterId(model, setManagePage(model, dataList, pageSize, filterUserId), "maker_id");
+		return "manage_maker";
+	}
+	
+	@GetMapping("/manage/food")
+	public String manageFood(@RequestParam(name="userId", required=false) String userId,
+			@RequestParam(name="afterId", required=false) Long afterId,
+			@RequestParam(name="size", required=false) Integer size,
+			Model model, HttpServletRequest req, HttpServletResponse res) {
+		if (!isAdmin(req)) return "redirect:/login";
+		int pageSize = managePageSize(size);
+		String filterUserId = blankToNull(userId);
+		List<Map<String, Object>> dataList = intakeSvc.getManageFoods(filterUserId, afterId, pageSize);
+		setNextAfterId(model, setManagePage(model, dataList, pageSize, filterUserId), "food_id");
+		return "manage_food";
+	}
+	
+	@GetMapping("/manage/nutrition")
+	public String manageNutrition(@RequestParam(name="userId", required=false) String userId,
+			@RequestParam(name="afterId", required=false) Long afterId,
+			@RequestParam(name="size", required=false) Integer size,
+			Model model, HttpServletRequest req, HttpServletResponse res) {
+		if (!isAdmin(req)) return "redirect:/login";
+		int pageSize = managePageSize(size);
+		String filterUserId = blankToNull(userId);
+		List<Map<String, Object>> dataList = intakeSvc.getManageNutritions(filterUserId, afterId, pageSize);
+		setNextAfterId(model, setManagePage(model, dataList, pageSize, filterUserId), "nutrition_id");
+		return "manage_nutrition";
+	}
+	
+	@GetMapping("/manage/intake")
+	public String manageIntake(@RequestParam(name="userId", required=false) String userId,
+			@RequestParam(name="afterId", required=false) Long afterId,
+			@RequestParam(name="size", required=false) Integer size,
+			Model model, HttpServletRequest req, HttpServletResponse res) {
+		if (!isAdmin(req)) return "redirect:/login";
+		int pageSize = managePageSize(size);
+		String filterUserId = blankToNull(userId);
+		List<Map<String, Object>> dataList = intakeSvc.getManageIntakes(filterUserId, afterId, pageSize);
+		setNextAfterId(model, setManagePage(model, dataList, pageSize, filterUserId), "intake_id");
+		return "manage_intake";
+	}
+	
+	// 1ページの件数（未指定なら既定値、上限を超えたら上限）
+	private int managePageSize(Integer size) {
+		if (size == null || size < 1) {
+			return MANAGE_PAGE_SIZE;
+		}
+		return Math.min(size, MANAGE_PAGE_SIZE_MAX);
+	}
+	
+	private String blankToNull(String value) {
+		return (value == null || value.isBlank()) ? null: value;
+	}
+	
+	/*
+	 * 	1件多く取得した一覧から1ページ分をModelに詰めるメソッド
+	 *	@return	次ページがあれば、このページの最終行（無ければnull）
+	 */
+	private Map<String, Object> setManagePage(Model model, List<Map<String, Object>> dataList, int pageSize, String filterUserId) {
+		boolean hasNext = dataList.size() > pageSize;
+		List<Map<String, Object>> page = hasNext ? dataList.subList(0, pageSize): dataList;
+		model.addAttribute("dataList", page);
+		model.addAttribute("size", pageSize);
+		model.addAttribute("filterUserId", filterUserId);
+		return hasNext ? page.get(page.size() - 1): null;
+	}
+	
+	private void setNextAfterId(Model model, Map<String, Object> last, String idColumn) {
+		if (last != null) {
+			model.addAttribute("nextAfterId", last.get(idColumn));
+		}
+	}
+	
+}
@@ -0,0 +1,60 @@
+package com.example.demo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * 	IntakeRepositoryのpublicメソッドごとに処理時間を計測する
+ * 	・メトリクス名：app.repository.calls（タグ：method / outcome（success / error） / exception）
+ * 	・@Transactionalより外側で計測するので、コネクションの取得待ちとコミットも含む
+ * 	　（コネクション2本のうちどのクエリが長く握っているかを見る）
+ */
+@Aspect
+@Component
+@Order(0)
+public class RepositoryMetrics {
+
+	public static final String METRIC_NAME = "app.repository.calls";
+
+	private final MeterRegistry registry;
+	// メソッド名・結果ごとのTimer（呼び出しのたびに登録処理をしない）
+	private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+	public RepositoryMetrics(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Around("execution(public * com.example.demo.IntakeRepository.*(..))")
+	public Object time(ProceedingJoinPoint pjp) throws Throwable {
+		String method = pjp.getSignature().getName();
+		long start = System.nanoTime();
+		String exception = "none";
+		try {
+			return pjp.proceed();
+		} catch (Throwable t) {
+			exception = t.getClass().getSimpleName();
+			throw t;
+		} finally {
+			timer(method, exception).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private Timer timer(String method, String exception) {
+		return timers.computeIfAbsent(method + "/" + exception, key -> Timer.builder(METRIC_NAME)
+				.description("IntakeRepositoryのメソッドごとの処理時間")
+				.tag("method", method)
+				.tag("outcome", "none".equals(exception) ? "success" : "error")
+				.tag("exception", exception)
+				.register(registry));
+	}
+}
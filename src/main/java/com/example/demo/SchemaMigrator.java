@@ -0,0 +1,324 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import javax.sql.DataSource;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/*
+ * 	スキーマの変更（db/migration/V<版>__<説明>.sql）を版の順に1回だけ適用する
+ * 	・適用した版はschema_versionに記録し、最新なら起動時は参照2回だけで何もしない（DDLを実行しない）
+ * 	・1ファイルを1トランザクションで適用する（失敗したらそのファイルの変更は残らず、次の起動でやり直す）
+ * 	・先頭行が「-- no-transaction」のファイルは1文ずつ自動コミットで実行する（CREATE INDEX CONCURRENTLYなど）
+ * 	・複数のインスタンスが同時に起動しても、アドバイザリロックで1つずつ適用する
+ * 	・適用済みのファイルが書き換えられていたら起動しない（チェックサムの不一致）
+ * 	・JdbcTemplateを使うBeanはこの適用の後に作られる（SchemaMigratorDetector）
+ */
+@Component
+public class SchemaMigrator {
+
+	private static final String LOCATION = "classpath:db/migration/V*__*.sql";
+	private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+	private static final String NO_TRANSACTION = "-- no-transaction";
+	private static final Pattern DOLLAR_TAG = Pattern.compile("\\$([A-Za-z_][A-Za-z_0-9]*)?\\$");
+	// pg_advisory_lockのキー（他の用途のロックと重ならない値）
+	private static final long LOCK_KEY = 0x7363_6865_6d61L;
+
+	private final DataSource dataSource;
+	private final JdbcTemplate jdbc;
+	private final boolean enabled;
+	// マイグレーションとして実行した文の数（最新の状態で起動したら0）
+	private final AtomicInteger executedStatements = new AtomicInteger();
+	private volatile int currentVersion;
+
+	// 1ファイル分のマイグレーション
+	record Migration(int version, String description, String script, long checksum) {
+
+		boolean transactional() {
+			return !script.stripLeading().startsWith(NO_TRANSACTION);
+		}
+	}
+
+	public SchemaMigrator(DataSource dataSource, @Value("${app.migration.enabled:true}") boolean enabled) {
+		this.dataSource = dataSource;
+		// アプリのJdbcTemplateはこのBeanの後に作られるので、専用のものを使う
+		this.jdbc = new JdbcTemplate(dataSource);
+		this.enabled = enabled;
+	}
+
+	@PostConstruct
+	public void init() {
+		if (!enabled) {
+			System.out.println("[SchemaMigrator] disabled");
+			return;
+		}
+		migrate();
+	}
+
+	/*
+	 * 	未適用のマイグレーションを適用するメソッド
+	 *	@return	今回適用したファイル数（最新なら0）
+	 */
+	public int migrate() {
+		List<Migration> migrations = load();
+		Map<Integer, Long> applied = appliedVersions();
+		if (pending(migrations, applied).isEmpty()) {
+			currentVersion = applied.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+			System.out.println("[SchemaMigrator] schema is up to date (version " + currentVersion + ")");
+			return 0;
+		}
+
+		try (Connection con = dataSource.getConnection()) {
+			try (Statement st = con.createStatement()) {
+				st.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+			}
+			try {
+				// ロック待ちの間に他のインスタンスが適用した分は除く
+				if (!tableExists()) {
+					execute(con, """
+							CREATE TABLE IF NOT EXISTS schema_version (
+							    version integer PRIMARY KEY,
+							    description varchar(200) NOT NULL,
+							    checksum bigint NOT NULL,
+							    applied_at timestamp NOT NULL DEFAULT now(),
+							    duration_ms bigint NOT NULL
+							)
+							""");
+				}
+				applied = appliedVersions();
+				currentVersion = applied.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+				int count = 0;
+				for (Migration migration : pending(migrations, applied)) {
+					apply(con, migration);
+					currentVersion = migration.version();
+					count++;
+				}
+				return count;
+			} finally {
+				con.setAutoCommit(true);
+				try (Statement st = con.createStatement()) {
+					st.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+				}
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("schema migration failed", e);
+		}
+	}
+
+	// 1ファイルを適用して記録する
+	private void apply(Connection con, Migration migration) throws SQLException {
+		long start = System.nanoTime();
+		List<String> statements = split(migration.script());
+		String record = "INSERT INTO schema_version (version, description, checksum, duration_ms) VALUES ("
+				+ migration.version() + ", '" + migration.description().replace("'", "''") + "', "
+				+ migration.checksum() + ", %d)";
+		if (migration.transactional()) {
+			con.setAutoCommit(false);
+			try {
+				for (String sql : statements) {
+					execute(con, sql);
+				}
+				execute(con, record.formatted(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+				con.commit();
+			} catch (SQLException | RuntimeException e) {
+				con.rollback();
+				throw new IllegalStateException("V" + migration.version() + " failed: " + e.getMessage(), e);
+			} finally {
+				con.setAutoCommit(true);
+			}
+		} else {
+			// 途中で失敗したら記録しない（次の起動で最初から。各文はIF NOT EXISTSなどで再実行できるように書く）
+			for (String sql : statements) {
+				execute(con, sql);
+			}
+			checkInvalidIndexes();
+			execute(con, record.formatted(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+		}
+		System.out.println("[SchemaMigrator] applied V" + migration.version() + " " + migration.description()
+				+ " (" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms)");
+	}
+
+	private void execute(Connection con, String sql) throws SQLException {
+		try (Statement st = con.createStatement()) {
+			st.execute(sql);
+		}
+		executedStatements.incrementAndGet();
+	}
+
+	// 中断されたCREATE INDEX CONCURRENTLYが残した無効なインデックスがあれば止める
+	// （IF NOT EXISTSでは作り直されないため、DROP INDEX CONCURRENTLYしてから起動し直す）
+	private void checkInvalidIndexes() {
+		String sql = """
+				SELECT string_agg(i.indexrelid::regclass::text, ', ')
+				FROM pg_index i
+				INNER JOIN pg_class c
+				    ON c.oid = i.indexrelid
+				WHERE NOT i.indisvalid
+				  AND c.relnamespace = current_schema()::regnamespace;
+				""";
+		String invalid = jdbc.queryForObject(sql, String.class);
+		if (invalid != null) {
+			throw new IllegalStateException("invalid index (drop it and restart): " + invalid);
+		}
+	}
+
+	private boolean tableExists() {
+		return jdbc.queryForObject("SELECT to_regclass('schema_version') IS NOT NULL", Boolean.class);
+	}
+
+	// 適用済みの版とチェックサム（schema_versionが無ければ空）
+	private Map<Integer, Long> appliedVersions() {
+		Map<Integer, Long> applied = new TreeMap<>();
+		if (tableExists()) {
+			jdbc.query("SELECT version, checksum FROM schema_version",
+					rs -> { applied.put(rs.getInt("version"), rs.getLong("checksum")); });
+		}
+		return applied;
+	}
+
+	// 未適用のマイグレーション（適用済みのファイルが変わっていたら例外）
+	private static List<Migration> pending(List<Migration> migrations, Map<Integer, Long> applied) {
+		List<Migration> pending = new ArrayList<>();
+		for (Migration migration : migrations) {
+			Long checksum = applied.get(migration.version());
+			if (checksum == null) {
+				pending.add(migration);
+			} else if (checksum != migration.checksum()) {
+				throw new IllegalStateException("V" + migration.version() + " was changed after it was applied");
+			}
+		}
+		return pending;
+	}
+
+	// クラスパスのマイグレーションを版の順に読み込む
+	static List<Migration> load() {
+		try {
+			Map<Integer, Migration> migrations = new TreeMap<>();
+			for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LOCATION)) {
+				Matcher m = FILE_NAME.matcher(resource.getFilename());
+				if (!m.matches()) {
+					continue;
+				}
+				byte[] bytes = resource.getContentAsByteArray();
+				CRC32 crc = new CRC32();
+				crc.update(bytes);
+				Migration migration = new Migration(Integer.parseInt(m.group(1)), m.group(2).replace('_', ' '),
+						new String(bytes, StandardCharsets.UTF_8), crc.getValue());
+				if (migrations.put(migration.version(), migration) != null) {
+					throw new IllegalStateException("duplicate migration version V" + migration.version());
+				}
+			}
+			return new ArrayList<>(migrations.values());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * 	スクリプトを文ごとに分けるメソッド
+	 * 	（文字列・識別子の引用符、$$〜$$・$tag$〜$tag$の中の「;」では分けない。コメントは除く）
+	 *	@param	script スクリプト
+	 *	@return	空でない文のリスト（末尾の「;」は含まない）
+	 */
+	static List<String> split(String script) {
+		List<String> statements = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		int n = script.length();
+		int i = 0;
+		while (i < n) {
+			char c = script.charAt(i);
+			char next = i + 1 < n ? script.charAt(i + 1) : 0;
+			if (c == '-' && next == '-') {
+				int end = script.indexOf('\n', i);
+				i = end < 0 ? n : end;
+			} else if (c == '/' && next == '*') {
+				int end = script.indexOf("*/", i + 2);
+				i = end < 0 ? n : end + 2;
+			} else if (c == '\'' || c == '"') {
+				int end = closingQuote(script, i);
+				sb.append(script, i, end);
+				i = end;
+			} else if (c == '$' && dollarTag(script, i) != null) {
+				String tag = dollarTag(script, i);
+				int end = script.indexOf(tag, i + tag.length());
+				end = end < 0 ? n : end + tag.length();
+				sb.append(script, i, end);
+				i = end;
+			} else if (c == ';') {
+				addStatement(statements, sb);
+				i++;
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		addStatement(statements, sb);
+		return statements;
+	}
+
+	private static void addStatement(List<String> statements, StringBuilder sb) {
+		String sql = sb.toString().strip();
+		if (!sql.isEmpty()) {
+			statements.add(sql);
+		}
+		sb.setLength(0);
+	}
+
+	// 引用符の終わりの次の位置（引用符を2つ重ねたものは文字として読み飛ばす）
+	private static int closingQuote(String script, int start) {
+		char quote = script.charAt(start);
+		int i = start + 1;
+		while (i < script.length()) {
+			if (script.charAt(i) == quote) {
+				if (i + 1 < script.length() && script.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return script.length();
+	}
+
+	// startの位置から始まるドル引用符のタグ（$$・$tag$。識別子の途中や$1はタグではない）
+	private static String dollarTag(String script, int start) {
+		if (start > 0) {
+			char prev = script.charAt(start - 1);
+			if (Character.isLetterOrDigit(prev) || prev == '_' || prev == '$') {
+				return null;
+			}
+		}
+		Matcher m = DOLLAR_TAG.matcher(script).region(start, script.length());
+		return m.lookingAt() ? m.group() : null;
+	}
+
+	public int getCurrentVersion() {
+		return currentVersion;
+	}
+
+	public int getExecutedStatements() {
+		return executedStatements.get();
+	}
+}
@@ -0,0 +1,17 @@
+package com.example.demo;
+
+import java.util.Set;
+
+import org.springframework.boot.sql.init.dependency.AbstractBeansOfTypeDatabaseInitializerDetector;
+
+/*
+ * 	SchemaMigratorをDBの初期化処理としてSpring Bootに知らせる（META-INF/spring.factoriesで登録）
+ * 	（JdbcTemplateなどDBを使うBeanは、スキーマの適用が終わってから作られる）
+ */
+public class SchemaMigratorDetector extends AbstractBeansOfTypeDatabaseInitializerDetector {
+
+	@Override
+	protected Set<Class<?>> getDatabaseInitializerBeanTypes() {
+		return Set.of(SchemaMigrator.class);
+	}
+}
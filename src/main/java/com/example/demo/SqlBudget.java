@@ -0,0 +1,20 @@
+package com.example.demo;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+ * 	画面（ハンドラー）1回で実行してよいSQLの件数
+ * 	・キャッシュが空の状態（ユーザーIDの確認を含む）で数える
+ * 	・超えた場合はSqlStatsFilterがapp.sql.budget.exceededを加算し、SqlBudgetTestsが失敗する
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SqlBudget {
+
+	int value();
+}
@@ -0,0 +1,58 @@
+package com.example.demo;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * 	1リクエストで実行したSQLの件数と合計時間
+ * 	・SqlStatsFilterがリクエストの開始時にスレッドに登録し、SqlStatsDataSourceが実行のたびに加算する
+ */
+public final class SqlStats {
+
+	private static final ThreadLocal<SqlStats> CURRENT = new ThreadLocal<>();
+
+	private final LongAdder statements = new LongAdder();
+	private final LongAdder nanos = new LongAdder();
+
+	public static SqlStats begin() {
+		SqlStats stats = new SqlStats();
+		CURRENT.set(stats);
+		return stats;
+	}
+
+	public static void end() {
+		CURRENT.remove();
+	}
+
+	// 集計中でなければnull（起動時・@Scheduledなど）
+	public static SqlStats current() {
+		return CURRENT.get();
+	}
+
+	static void record(long elapsedNanos) {
+		SqlStats stats = CURRENT.get();
+		if (stats != null) {
+			stats.statements.increment();
+			stats.nanos.add(elapsedNanos);
+		}
+	}
+
+	public long getStatements() {
+		return statements.sum();
+	}
+
+	public long getNanos() {
+		return nanos.sum();
+	}
+
+	// Server-Timingヘッダーの値（例：sql;desc="statements=2";dur=1.234, total;dur=8.765）
+	public String toServerTiming(long totalNanos) {
+		return "sql;desc=\"statements=" + getStatements() + "\";dur=" + millis(getNanos())
+				+ ", total;dur=" + millis(totalNanos);
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+}
@@ -0,0 +1,90 @@
+package com.example.demo;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/*
+ * 	Statementの実行（execute系）ごとに件数と時間をSqlStatsに加算するDataSource
+ * 	・Connection / Statementを動的プロキシで包むだけで、SQLや結果には手を加えない
+ * 	・executeBatchは1回の往復として1件に数える
+ * 	・unwrap / isWrapperForは元のオブジェクトに委譲する（HikariDataSource・PGConnectionを取り出せる）
+ */
+public class SqlStatsDataSource extends DelegatingDataSource implements AutoCloseable {
+
+	public SqlStatsDataSource(DataSource target) {
+		super(target);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return wrap(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return wrap(super.getConnection(username, password));
+	}
+
+	// プールを閉じる（@Beanのdestroyメソッドの推測はこのクラスに対して行われるため）
+	@Override
+	public void close() throws Exception {
+		if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+			closeable.close();
+		}
+	}
+
+	private static Connection wrap(Connection target) {
+		return (Connection) proxy(Connection.class, target, (method, args) -> {
+			Object result = invoke(target, method, args);
+			if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+				return wrapStatement(method.getReturnType(), statement);
+			}
+			return result;
+		});
+	}
+
+	private static Object wrapStatement(Class<?> type, Statement target) {
+		return proxy(type, target, (method, args) -> {
+			if (!method.getName().startsWith("execute")) {
+				return invoke(target, method, args);
+			}
+			long start = System.nanoTime();
+			try {
+				return invoke(target, method, args);
+			} finally {
+				SqlStats.record(System.nanoTime() - start);
+			}
+		});
+	}
+
+	private interface Handler {
+		Object handle(Method method, Object[] args) throws Throwable;
+	}
+
+	// equals / hashCodeはプロキシ自身で判定する（DataSourceUtilsが保持中のコネクションと比較するため）
+	private static Object proxy(Class<?> type, Object target, Handler handler) {
+		return Proxy.newProxyInstance(SqlStatsDataSource.class.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> switch (method.getName()) {
+				case "equals" -> proxy == args[0];
+				case "hashCode" -> System.identityHashCode(proxy);
+				case "toString" -> "SqlStats[" + target + "]";
+				default -> handler.handle(method, args);
+				});
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
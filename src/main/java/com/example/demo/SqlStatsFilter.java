@@ -0,0 +1,140 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * 	リクエストごとにSQLの件数と合計時間を集計し、Server-Timingヘッダーで返すフィルター
+ * 	・ヘッダーはレスポンスを書き始める直前（画面の描画・リダイレクト）に付ける
+ * 	　（ハンドラーの処理はすべて終わっているので、その画面のSQLがすべて含まれる）
+ * 	・@SqlBudgetの件数を超えたらapp.sql.budget.exceededを加算する
+ * 	・静的ファイルは対象外
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+	public static final String HEADER = "Server-Timing";
+
+	private final boolean serverTiming;
+	private final MeterRegistry registry;
+
+	public SqlStatsFilter(@Value("${app.sql-stats.server-timing:true}") boolean serverTiming, MeterRegistry registry) {
+		this.serverTiming = serverTiming;
+		this.registry = registry;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		// 拡張子付きのパス（css / 画像など）は静的ファイル
+		String uri = request.getRequestURI();
+		return uri.lastIndexOf('.') > uri.lastIndexOf('/');
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		SqlStats stats = SqlStats.begin();
+		ServerTimingResponse timed = serverTiming ? new ServerTimingResponse(response, stats, System.nanoTime()) : null;
+		try {
+			filterChain.doFilter(request, (timed == null) ? response : timed);
+			if (timed != null) {
+				// 本文の無いレスポンス（304など）
+				timed.writeHeader();
+			}
+		} finally {
+			SqlStats.end();
+			checkBudget(request, stats);
+		}
+	}
+
+	private void checkBudget(HttpServletRequest request, SqlStats stats) {
+		if (!(request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handler)) {
+			return;
+		}
+		SqlBudget budget = handler.getMethodAnnotation(SqlBudget.class);
+		if (budget != null && stats.getStatements() > budget.value()) {
+			Counter.builder("app.sql.budget.exceeded")
+					.tag("handler", handler.getMethod().getName())
+					.register(registry)
+					.increment();
+			System.out.println("[SqlStatsFilter] " + request.getRequestURI() + " statements = "
+					+ stats.getStatements() + " (budget " + budget.value() + ")");
+		}
+	}
+
+	// 書き始める直前に1回だけServer-Timingを付けるレスポンス
+	private static final class ServerTimingResponse extends HttpServletResponseWrapper {
+
+		private final SqlStats stats;
+		private final long start;
+		private boolean written;
+
+		private ServerTimingResponse(HttpServletResponse response, SqlStats stats, long start) {
+			super(response);
+			this.stats = stats;
+			this.start = start;
+		}
+
+		private void writeHeader() {
+			if (!written && !isCommitted()) {
+				setHeader(HEADER, stats.toServerTiming(System.nanoTime() - start));
+			}
+			written = true;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			writeHeader();
+			return super.getOutputStream();
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			writeHeader();
+			return super.getWriter();
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			writeHeader();
+			super.flushBuffer();
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			writeHeader();
+			super.sendRedirect(location);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			writeHeader();
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			writeHeader();
+			super.sendError(sc, msg);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.example.demo;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/*
+ * 	アプリのDataSourceをSqlStatsDataSourceで包む
+ * 	（JdbcTemplate・トランザクション管理が同じ包んだDataSourceを使う）
+ */
+@Component
+public class SqlStatsPostProcessor implements BeanPostProcessor {
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DataSource dataSource && !(bean instanceof SqlStatsDataSource)) {
+			return new SqlStatsDataSource(dataSource);
+		}
+		return bean;
+	}
+}
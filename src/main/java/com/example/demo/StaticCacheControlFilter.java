@@ -0,0 +1,122 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+/*
+ * 	静的ファイル（css・画像）にCache-Controlを付けるフィルター
+ * 	・内容のハッシュ付きのURL（base-<md5>.css。テンプレートの@{}で書き換わる）は、内容が変わればURLも変わるので
+ * 	　1年間・immutable（ブラウザは期限まで再検証もしない）
+ * 	　ただしハッシュが今のファイルの内容と一致する（リソースチェーンで解決できる）ときだけ
+ * 	・ハッシュの無いURL（ホーム画面アイコンの直接取得など）は毎回Last-Modifiedで確認させる
+ * 	・ヘッダーは正常なレスポンスを書き始める直前に付ける（404などを長期間キャッシュさせない）
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class StaticCacheControlFilter extends OncePerRequestFilter {
+
+	// VersionResourceResolver（内容のMD5）が付けるファイル名の接尾辞
+	private static final Pattern VERSIONED = Pattern.compile("-[0-9a-f]{32}(\\.[^/]+)$");
+
+	public static final String IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable().getHeaderValue();
+	public static final String REVALIDATE = CacheControl.noCache().getHeaderValue();
+
+	// Web MVCを起動しない構成（ジョブ単体の起動など）では無い
+	private final ObjectProvider<ResourceUrlProvider> resourceUrlProvider;
+
+	public StaticCacheControlFilter(ObjectProvider<ResourceUrlProvider> resourceUrlProvider) {
+		this.resourceUrlProvider = resourceUrlProvider;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		// 拡張子付きのパスだけが静的ファイル
+		String uri = request.getRequestURI();
+		return uri.lastIndexOf('.') <= uri.lastIndexOf('/');
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String value = isCurrentVersion(request) ? IMMUTABLE : REVALIDATE;
+		CacheControlResponse wrapped = new CacheControlResponse(response, value);
+		filterChain.doFilter(request, wrapped);
+		// 本文の無いレスポンス（HEAD・304）
+		wrapped.writeHeader();
+	}
+
+	/*
+	 * 	ハッシュ付きのURLが、今のファイルの内容から作ったURLと一致するかを確認するメソッド
+	 * 	・ハッシュを外したパスをリソースチェーンで解決し直して比べる（結果はリソースチェーンのキャッシュに載る）
+	 *	@param	request	リクエスト
+	 *	@return	今の内容のハッシュ付きURLならtrue（ハッシュ無し・古い／存在しないハッシュはfalse）
+	 */
+	private boolean isCurrentVersion(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		Matcher m = VERSIONED.matcher(path);
+		ResourceUrlProvider provider = resourceUrlProvider.getIfAvailable();
+		if (!m.find() || provider == null) {
+			return false;
+		}
+		String plain = path.substring(0, m.start()) + m.group(1);
+		return path.equals(provider.getForLookupPath(plain));
+	}
+
+	// 正常なレスポンスを書き始める直前に1回だけCache-Controlを付けるレスポンス
+	private static final class CacheControlResponse extends HttpServletResponseWrapper {
+
+		private final String value;
+		private boolean written;
+
+		private CacheControlResponse(HttpServletResponse response, String value) {
+			super(response);
+			this.value = value;
+		}
+
+		private void writeHeader() {
+			int status = getStatus();
+			boolean ok = status == SC_OK || status == SC_PARTIAL_CONTENT || status == SC_NOT_MODIFIED;
+			if (!written && ok && !isCommitted()) {
+				setHeader(HttpHeaders.CACHE_CONTROL, value);
+			}
+			written = true;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			writeHeader();
+			return super.getOutputStream();
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			writeHeader();
+			return super.getWriter();
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			writeHeader();
+			super.flushBuffer();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package com.example.demo;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/*
+ * 	ユーザーごとに1つの値を保持するキャッシュ
+ * 	・値ごとの重み（件数・推定バイト数など）の合計が上限を超えたら、最近使われていないものから破棄
+ * 	・読み込み前にstamp()で世代番号を取り、putに渡す
+ * 	・読み込み中に無効化があった（世代番号が変わった）場合は登録しない
+ * 	・読み込んだときのデータの版（users.data_version）も持ち、違う版で取得されたら無いものとして扱う
+ * 	　（別のインスタンスでの書き込みは、このインスタンスの無効化では分からないため）
+ */
+public class UserCache<V> {
+
+	private final long maxWeight;
+	private final ToLongFunction<V> weigher;
+
+	// key: user_id（アクセス順）
+	private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight;
+	// 無効化のたびに進める世代番号
+	private long stamp;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	// 1ユーザー1件として件数で上限を決める
+	public UserCache(int maxSize) {
+		this(maxSize, value -> 1);
+	}
+
+	// 値と、読み込んだときのデータの版
+	private record Entry<V>(V value, long dataVersion) {
+	}
+
+	public UserCache(long maxWeight, ToLongFunction<V> weigher) {
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	/*
+	 * 	データの版が一致するときだけ値を返すメソッド
+	 *	@param	userId ユーザーID
+	 *	@param	dataVersion 今の版（DataVersion.current）
+	 *	@return	値（無いか、別の版で読み込んだものならnull）
+	 */
+	public synchronized V get(String userId, long dataVersion) {
+		Entry<V> entry = entries.get(userId);
+		if (entry == null || entry.dataVersion() != dataVersion) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.value();
+	}
+
+	/*
+	 * 	読み込み前の世代番号を取得するメソッド（putに渡す）
+	 *	@return	世代番号
+	 */
+	public synchronized long stamp() {
+		return stamp;
+	}
+
+	/*
+	 * 	値を登録するメソッド
+	 *	@param	stamp 読み込み前の世代番号（stamp）
+	 *	@param	dataVersion 読み込み前に取得したデータの版
+	 */
+	public synchronized void put(String userId, V value, long stamp, long dataVersion) {
+		if (this.stamp != stamp) {
+			return;
+		}
+		remove(userId);
+		entries.put(userId, new Entry<>(value, dataVersion));
+		weight += weigher.applyAsLong(value);
+
+		// 上限を超えた分を古いものから破棄（今登録したものは残す）
+		Iterator<Map.Entry<String, Entry<V>>> it = entries.entrySet().iterator();
+		while (weight > maxWeight && entries.size() > 1) {
+			Map.Entry<String, Entry<V>> eldest = it.next();
+			weight -= weigher.applyAsLong(eldest.getValue().value());
+			it.remove();
+			evictions.increment();
+		}
+	}
+
+	private void remove(String userId) {
+		Entry<V> old = entries.remove(userId);
+		if (old != null) {
+			weight -= weigher.applyAsLong(old.value());
+		}
+	}
+
+	public synchronized void invalidate(String userId) {
+		stamp++;
+		invalidations.increment();
+		remove(userId);
+	}
+
+	public synchronized void invalidate(Collection<String> userIds) {
+		stamp++;
+		invalidations.increment();
+		for (String userId : userIds) {
+			remove(userId);
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		stamp++;
+		invalidations.increment();
+		entries.clear();
+		weight = 0;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+}
@@ -0,0 +1,137 @@
+package com.example.demo;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+ * 	user_idの存在チェック結果をメモリに保持するキャッシュ
+ * 	・存在するuser_idはTTL付きで保持（上限件数を超えたら古いものから破棄）
+ * 	・存在しないCookie値は短いTTLで保持（不正Cookieの連打でDBに行かないように）
+ */
+@Component
+public class UserIdCache {
+
+	private final long ttlMillis;
+	private final long negativeTtlMillis;
+	private final int maxSize;
+
+	// key: user_id / value: 有効期限(ms)
+	private final Map<String, Long> known;
+	private final Map<String, Long> unknown;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder negativeHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public UserIdCache(@Value("${app.user-cache.ttl-seconds:600}") long ttlSeconds,
+			@Value("${app.user-cache.negative-ttl-seconds:30}") long negativeTtlSeconds,
+			@Value("${app.user-cache.max-size:10000}") int maxSize) {
+		this.ttlMillis = ttlSeconds * 1000;
+		this.negativeTtlMillis = negativeTtlSeconds * 1000;
+		this.maxSize = maxSize;
+		this.known = lruMap(maxSize);
+		this.unknown = lruMap(maxSize);
+	}
+
+	private static Map<String, Long> lruMap(int maxSize) {
+		return new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/*
+	 * 	キャッシュを参照するメソッド
+	 *	@param	userId Cookieのuser_id
+	 *	@return	TRUE：存在するユーザー FALSE：存在しないユーザー null：キャッシュなし（DB照合が必要）
+	 */
+	public Boolean lookup(String userId) {
+		long now = System.currentTimeMillis();
+		synchronized (known) {
+			Long expires = known.get(userId);
+			if (expires != null) {
+				if (expires > now) {
+					hits.increment();
+					return Boolean.TRUE;
+				}
+				known.remove(userId);
+			}
+		}
+		synchronized (unknown) {
+			Long expires = unknown.get(userId);
+			if (expires != null) {
+				if (expires > now) {
+					negativeHits.increment();
+					return Boolean.FALSE;
+				}
+				unknown.remove(userId);
+			}
+		}
+		misses.increment();
+		return null;
+	}
+
+	// 存在するuser_idとして登録
+	public void putKnown(String userId) {
+		synchronized (unknown) {
+			unknown.remove(userId);
+		}
+		synchronized (known) {
+			known.put(userId, System.currentTimeMillis() + ttlMillis);
+		}
+	}
+
+	// 存在しないCookie値として登録
+	public void putUnknown(String userId) {
+		synchronized (unknown) {
+			unknown.put(userId, System.currentTimeMillis() + negativeTtlMillis);
+		}
+	}
+
+	// 削除されたユーザーをキャッシュから外す
+	public void invalidate(Collection<String> userIds) {
+		synchronized (known) {
+			for (String userId : userIds) {
+				known.remove(userId);
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (known) {
+			known.clear();
+		}
+		synchronized (unknown) {
+			unknown.clear();
+		}
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getNegativeHits() {
+		return negativeHits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public int getSize() {
+		synchronized (known) {
+			return known.size();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+}
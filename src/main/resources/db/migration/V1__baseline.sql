@@ -1,3 +1,5 @@
+-- 導入時点のスキーマ（以前のschema.sqlと同じ。既存のDBでは何も変わらないようにIF NOT EXISTSで作る）
+
 CREATE TABLE IF NOT EXISTS users (
   user_id     varchar(36)  PRIMARY KEY,
   user_name   varchar(36),
@@ -6,6 +8,9 @@ CREATE TABLE IF NOT EXISTS users (
   last_access_date timestamp DEFAULT now()
 );
 
+-- 管理画面（最終アクセス日時の新しい順）のページング用
+CREATE INDEX IF NOT EXISTS idx_users_last_access ON users(last_access_date, user_id);
+
 CREATE TABLE IF NOT EXISTS maker (
   maker_id  integer GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
   maker_name     varchar(50) NOT NULL,
@@ -52,6 +57,8 @@ CREATE TABLE IF NOT EXISTS intake (
 
 CREATE INDEX IF NOT EXISTS idx_intake_user_time ON intake(regist_user_id, eaten_date, eaten_time);
 CREATE INDEX IF NOT EXISTS idx_intake_nutrition ON intake(nutrition_id);
+-- 管理画面（ユーザーで絞り込み、intake_idの新しい順）のページング用
+CREATE INDEX IF NOT EXISTS idx_intake_user_id ON intake(regist_user_id, intake_id);
 
 CREATE TABLE IF NOT EXISTS favorite (
     favorite_id integer GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
@@ -76,3 +83,49 @@ CREATE TABLE IF NOT EXISTS intake_once(
     , eaten_time time DEFAULT CURRENT_TIME
     , qty numeric(10,1) DEFAULT 1.0
 );
+
+-- ユーザーごとの削除（CleanupJob）・日付ごとの表示用
+CREATE INDEX IF NOT EXISTS idx_intake_once_user_time ON intake_once(regist_user_id, eaten_date, eaten_time);
+
+-- 日別集計（ユーザー・日付ごとの合計。intake / intake_once / nutrition 更新時に再計算）
+CREATE TABLE IF NOT EXISTS daily_summary (
+    regist_user_id varchar(36) NOT NULL,
+    eaten_date date NOT NULL,
+    kcal numeric NOT NULL DEFAULT 0,
+    protein numeric NOT NULL DEFAULT 0,
+    lipid numeric NOT NULL DEFAULT 0,
+    carbo numeric NOT NULL DEFAULT 0,
+    salt numeric NOT NULL DEFAULT 0,
+    pfc_kcal numeric NOT NULL DEFAULT 0,
+    PRIMARY KEY (regist_user_id, eaten_date)
+);
+
+-- 削除待ちのユーザー（CleanupJob。usersから削除済みで、関連行を小分けに削除している途中）
+CREATE TABLE IF NOT EXISTS user_purge (
+    user_id varchar(36) PRIMARY KEY,
+    queued_at timestamp NOT NULL DEFAULT now()
+);
+
+-- バッチ処理の進捗（途中で止まったときに続きから再開するための位置）
+CREATE TABLE IF NOT EXISTS job_state (
+    job_name varchar(50) PRIMARY KEY,
+    phase varchar(30) NOT NULL,
+    cutoff timestamp,
+    last_key bigint,
+    updated_at timestamp NOT NULL DEFAULT now()
+);
+
+-- 定期実行ジョブのリース（複数のインスタンスのうち1つだけが実行する。JobCoordinator）
+-- owner：実行中（またはlease_untilまで保持している）インスタンス、last_*：前回の実行結果
+CREATE TABLE IF NOT EXISTS job_lease (
+    job_name varchar(50) PRIMARY KEY,
+    owner varchar(100) NOT NULL,
+    acquired_at timestamp NOT NULL,
+    lease_until timestamp NOT NULL,
+    last_owner varchar(100),
+    last_started_at timestamp,
+    last_finished_at timestamp,
+    last_duration_ms bigint,
+    last_status varchar(10),
+    last_error text
+);
@@ -0,0 +1,78 @@
+-- 食べた記録の統合ログ（intake / intake_onceの行を1つの表に並べる。日付ごとの表示はこの表の範囲検索1回）
+-- ・intake_id：カタログから登録した記録（栄養情報はnutritionを参照）
+-- ・intake_once_id：簡易登録の記録（食品名・栄養は行に持つ）
+-- ・intake / intake_onceのトリガーで同期し、既存の行はIntakeLogMigrationが小分けにコピーする
+CREATE TABLE IF NOT EXISTS intake_log (
+    log_id bigint GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    regist_user_id varchar(36) NOT NULL,
+    eaten_date date,
+    eaten_time time,
+    qty numeric(10,1),
+    intake_id integer UNIQUE,
+    nutrition_id integer,
+    intake_once_id integer UNIQUE,
+    food_name varchar(50),
+    class_name varchar(50),
+    calorie integer,
+    protein numeric(10,1),
+    lipid numeric(10,1),
+    carbo numeric(10,1),
+    salt numeric(10,2),
+    CHECK ((intake_id IS NULL) <> (intake_once_id IS NULL))
+);
+
+-- intakeの変更をintake_logに反映する
+CREATE OR REPLACE FUNCTION intake_log_sync_intake() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM intake_log WHERE intake_id = OLD.intake_id;
+        RETURN OLD;
+    END IF;
+    INSERT INTO intake_log (regist_user_id, eaten_date, eaten_time, qty, intake_id, nutrition_id)
+    VALUES (NEW.regist_user_id, NEW.eaten_date, NEW.eaten_time, NEW.qty, NEW.intake_id, NEW.nutrition_id)
+    ON CONFLICT (intake_id) DO UPDATE
+    SET regist_user_id = EXCLUDED.regist_user_id,
+        eaten_date = EXCLUDED.eaten_date,
+        eaten_time = EXCLUDED.eaten_time,
+        qty = EXCLUDED.qty,
+        nutrition_id = EXCLUDED.nutrition_id;
+    RETURN NEW;
+END
+$$;
+
+-- intake_onceの変更をintake_logに反映する
+CREATE OR REPLACE FUNCTION intake_log_sync_intake_once() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM intake_log WHERE intake_once_id = OLD.intake_id;
+        RETURN OLD;
+    END IF;
+    INSERT INTO intake_log (regist_user_id, eaten_date, eaten_time, qty, intake_once_id,
+        food_name, class_name, calorie, protein, lipid, carbo, salt)
+    VALUES (NEW.regist_user_id, NEW.eaten_date, NEW.eaten_time, NEW.qty, NEW.intake_id,
+        NEW.food_name, NEW.class_name, NEW.calorie, NEW.protein, NEW.lipid, NEW.carbo, NEW.salt)
+    ON CONFLICT (intake_once_id) DO UPDATE
+    SET regist_user_id = EXCLUDED.regist_user_id,
+        eaten_date = EXCLUDED.eaten_date,
+        eaten_time = EXCLUDED.eaten_time,
+        qty = EXCLUDED.qty,
+        food_name = EXCLUDED.food_name,
+        class_name = EXCLUDED.class_name,
+        calorie = EXCLUDED.calorie,
+        protein = EXCLUDED.protein,
+        lipid = EXCLUDED.lipid,
+        carbo = EXCLUDED.carbo,
+        salt = EXCLUDED.salt;
+    RETURN NEW;
+END
+$$;
+
+CREATE OR REPLACE TRIGGER intake_log_sync
+AFTER INSERT OR UPDATE OR DELETE ON intake
+FOR EACH ROW EXECUTE FUNCTION intake_log_sync_intake();
+
+CREATE OR REPLACE TRIGGER intake_log_sync
+AFTER INSERT OR UPDATE OR DELETE ON intake_once
+FOR EACH ROW EXECUTE FUNCTION intake_log_sync_intake_once();
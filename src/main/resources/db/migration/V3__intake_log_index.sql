@@ -0,0 +1,4 @@
+-- no-transaction
+-- 統合ログの日付ごとの範囲検索用（書き込みを止めないようにCONCURRENTLYで作る）
+-- 中断されて無効なインデックスが残った場合は、DROP INDEX CONCURRENTLY idx_intake_log_user_time; してから起動し直す
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_intake_log_user_time ON intake_log(regist_user_id, eaten_date, eaten_time);
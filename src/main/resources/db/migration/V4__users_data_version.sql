@@ -0,0 +1,3 @@
+-- 画面のETagに使うデータの版（DataVersion。書き込みのトランザクションで+1する）
+-- 定数のDEFAULTなので、既存の行は書き換えずに追加される
+ALTER TABLE users ADD COLUMN IF NOT EXISTS data_version bigint NOT NULL DEFAULT 0;
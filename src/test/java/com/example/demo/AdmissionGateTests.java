@@ -0,0 +1,73 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class AdmissionGateTests {
+
+	@Test
+	void shedsWithServiceUnavailableWhenWaitBudgetIsExceeded() throws Exception {
+		AdmissionGate gate = new AdmissionGate(1, 10, 50);
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		// 1件目は許可を持ったまま止めておく
+		ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+		Future<MockHttpServletResponse> first = pool.submit(() -> {
+			MockHttpServletResponse res = new MockHttpServletResponse();
+			gate.doFilter(new MockHttpServletRequest("GET", "/home"), res, new MockFilterChain(new HttpServlet() {
+				@Override
+				protected void service(HttpServletRequest req, HttpServletResponse resp) {
+					entered.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}));
+			return res;
+		});
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		assertEquals(1, gate.getInFlight());
+
+		// 2件目は待ち時間の上限を過ぎて503
+		MockHttpServletResponse second = new MockHttpServletResponse();
+		gate.doFilter(new MockHttpServletRequest("GET", "/home"), second, new MockFilterChain());
+		assertEquals(503, second.getStatus());
+		assertEquals("1", second.getHeader("Retry-After"));
+		assertEquals(1, gate.getShed());
+
+		// 静的ファイルは制限しない
+		MockHttpServletResponse css = new MockHttpServletResponse();
+		gate.doFilter(new MockHttpServletRequest("GET", "/css/style.css"), css, new MockFilterChain());
+		assertEquals(200, css.getStatus());
+
+		release.countDown();
+		assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatus());
+		pool.shutdown();
+
+		// 空いたら通る
+		MockHttpServletResponse third = new MockHttpServletResponse();
+		gate.doFilter(new MockHttpServletRequest("GET", "/home"), third, new MockFilterChain());
+		assertEquals(200, third.getStatus());
+		assertEquals(0, gate.getInFlight());
+		assertEquals(0, gate.getQueueDepth());
+		assertEquals(2, gate.getAdmitted());
+	}
+}
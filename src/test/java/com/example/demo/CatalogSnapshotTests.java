@@ -0,0 +1,73 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class CatalogSnapshotTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Test
+	void snapshotMatchesRepositoryAndFollowsWrites() {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+
+		int makerA = intakeSvc.insFoodMaker(userId, "メーカーB");
+		int makerB = intakeSvc.insFoodMaker(userId, "メーカーA");
+		int food1 = intakeSvc.insFood(userId, "チョコ", makerA);
+		int food2 = intakeSvc.insFood(userId, "ガム", makerA);
+		int food3 = intakeSvc.insFood(userId, "チョコ", makerB);
+		intakeSvc.insNutrition(userId, "普通", food1, 200, 1.5, 2.5, 3.5, 0.25);
+		intakeSvc.insNutrition(userId, "大", food1, 300, 1.0, 1.0, 1.0, 0.1);
+		intakeSvc.insNutrition(userId, "普通", food3, 150, null, null, null, null);
+		long nutritionId = intakeRepo.getNutritionList(userId, food1).get(0).nutritionId();
+		intakeSvc.insFavorite(userId, nutritionId);
+
+		// スナップショットから返す内容はDBから直接取得した内容と同じ
+		assertSnapshotMatches(userId, makerA, food1, nutritionId);
+		assertEquals(intakeRepo.getFoodList(userId, makerB), intakeSvc.getFoodList(userId, makerB));
+		assertEquals(intakeRepo.getNutritionList(userId, food2), intakeSvc.getNutritionList(userId, food2));
+		assertSame(intakeSvc.getMakerList(userId), intakeSvc.getMakerList(userId));
+
+		// 更新・削除のたびに作り直される
+		intakeSvc.updMaker(userId, makerA, "メーカーC");
+		intakeSvc.updFood(userId, food1, "ビターチョコ");
+		intakeSvc.updNutrition(userId, nutritionId, "小", 100, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO);
+		assertSnapshotMatches(userId, makerA, food1, nutritionId);
+
+		intakeSvc.delFoodWithFavorites(userId, food2);
+		assertEquals(intakeRepo.getFoodListAll(userId), intakeSvc.getFoodListAll(userId));
+
+		intakeSvc.delNutritionWithFavorites(userId, nutritionId);
+		intakeSvc.delFoodWithFavorites(userId, food1);
+		intakeSvc.delFoodWithFavorites(userId, food3);
+		intakeSvc.delMakerWithFavorites(userId, makerA);
+		intakeSvc.delMakerWithFavorites(userId, makerB);
+		assertEquals(List.of(), intakeSvc.getMakerList(userId));
+	}
+
+	private void assertSnapshotMatches(String userId, long makerId, long foodId, long nutritionId) {
+		assertEquals(intakeRepo.getMakerList(userId), intakeSvc.getMakerList(userId));
+		assertEquals(intakeRepo.getMakerName(userId, makerId), intakeSvc.getMakerName(userId, makerId));
+		assertEquals(intakeRepo.getFoodList(userId, makerId), intakeSvc.getFoodList(userId, makerId));
+		assertEquals(intakeRepo.getFoodListAll(userId), intakeSvc.getFoodListAll(userId));
+		assertEquals(intakeRepo.getHeaderInfo(userId, foodId), intakeSvc.getHeaderInfo(userId, foodId));
+		assertEquals(intakeRepo.getNutritionList(userId, foodId), intakeSvc.getNutritionList(userId, foodId));
+		assertEquals(intakeRepo.getNutritionListAll(userId), intakeSvc.getNutritionListAll(userId));
+		assertEquals(intakeRepo.getNutritionInfo(userId, nutritionId), intakeSvc.getNutritionInfo(userId, nutritionId));
+		assertEquals(intakeRepo.getFavoriteList(userId).get(0).favoriteId(), intakeSvc.getFavoriteId(userId, nutritionId));
+	}
+}
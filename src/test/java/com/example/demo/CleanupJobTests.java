@@ -0,0 +1,189 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(properties = { "app.cleanup.chunk-size=2", "app.cleanup.pause-ms=0", "app.cleanup.flush-wait-ms=0" })
+class CleanupJobTests {
+
+	private static final List<String> TABLES = List.of(
+			"favorite", "intake", "intake_once", "daily_summary", "nutrition", "food", "maker");
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Autowired
+	private CleanupJob cleanupJob;
+
+	@Autowired
+	private TransactionTemplate tx;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Autowired
+	private JobCoordinator jobCoordinator;
+
+	@Autowired
+	private UserIdCache userIdCache;
+
+	@Autowired
+	private LastAccessBuffer lastAccessBuffer;
+
+	@Autowired
+	private FavoriteCache favoriteCache;
+
+	@Autowired
+	private CatalogCache catalogCache;
+
+	private int rows(String userId) {
+		int total = jdbc.queryForObject("SELECT count(*) FROM users WHERE user_id = ?", Integer.class, userId);
+		for (String table : TABLES) {
+			total += jdbc.queryForObject("SELECT count(*) FROM " + table + " WHERE regist_user_id = ?", Integer.class, userId);
+		}
+		return total;
+	}
+
+	private void setState(String jobName, String phase, Timestamp cutoff, Long lastKey) {
+		jdbc.update("""
+				INSERT INTO job_state (job_name, phase, cutoff, last_key)
+				VALUES (?, ?, ?, ?)
+				ON CONFLICT (job_name) DO UPDATE
+				SET phase = EXCLUDED.phase, cutoff = EXCLUDED.cutoff, last_key = EXCLUDED.last_key
+				""", jobName, phase, cutoff, lastKey);
+	}
+
+	@Test
+	void purgesUnusedUsersWithAllTheirRows() {
+		// 登録後に再訪していないユーザー（関連行はチャンクより多く作る）
+		String unused = UUID.randomUUID().toString();
+		intakeRepo.registUserId(unused);
+		int makerId = intakeSvc.insFoodMaker(unused, "テストメーカー");
+		int foodId = intakeSvc.insFood(unused, "テスト食品", makerId);
+		intakeSvc.insNutrition(unused, "普通", foodId, 200, 10.0, 5.0, 20.0, 0.5);
+		long nutritionId = intakeRepo.getNutritionListAll(unused).get(0).nutritionId();
+		for (int i = 0; i < 3; i++) {
+			intakeSvc.insIntake(unused, nutritionId, new BigDecimal("1.0"));
+			intakeSvc.insIntakeOnce(unused, "おにぎり", 181, 1.0, 1.0, 1.0, 0.1);
+		}
+		intakeSvc.insFavorite(unused, nutritionId);
+
+		// 再訪したユーザーは残す
+		String active = UUID.randomUUID().toString();
+		intakeRepo.registUserId(active);
+		int activeMakerId = intakeSvc.insFoodMaker(active, "テストメーカー");
+		jdbc.update("UPDATE users SET last_access_date = last_access_date + interval '1 day' WHERE user_id = ?", active);
+
+		// 以前の版でusersだけ削除されたユーザーの行（お気に入りの続きから探させる）
+		long lastFavoriteId = jdbc.queryForObject("SELECT coalesce(max(favorite_id), 0) FROM favorite", Long.class);
+		String orphan = UUID.randomUUID().toString();
+		jdbc.update("INSERT INTO favorite (regist_user_id, nutrition_id) VALUES (?, ?)", orphan, nutritionId);
+		setState(CleanupJob.ORPHAN_JOB_NAME, "favorite", null, lastFavoriteId);
+		setState(CleanupJob.JOB_NAME, "idle", null, null);
+
+		cleanupJob.deleteUnusedUser();
+
+		assertEquals(0, rows(unused));
+		assertEquals(0, rows(orphan));
+		assertEquals(2, rows(active));
+		assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM user_purge", Integer.class));
+		assertEquals("idle", jdbc.queryForObject("SELECT phase FROM job_state WHERE job_name = ?", String.class, CleanupJob.JOB_NAME));
+		assertEquals("done", jdbc.queryForObject("SELECT phase FROM job_state WHERE job_name = ?", String.class, CleanupJob.ORPHAN_JOB_NAME));
+
+		intakeSvc.delMakerWithFavorites(active, activeMakerId);
+		jdbc.update("DELETE FROM users WHERE user_id = ?", active);
+	}
+
+	@Test
+	void keepsUsersWhoReturnedOnTheirRegistrationDay() {
+		// 本日0時に登録したユーザーが、同じ日に再訪した（mode=daily）
+		String returned = UUID.randomUUID().toString();
+		intakeRepo.registUserId(returned);
+		jdbc.update("UPDATE users SET regist_date = current_date, last_access_date = current_date WHERE user_id = ?", returned);
+		LastAccessBuffer buffer = new LastAccessBuffer(intakeRepo, Integer.MAX_VALUE, Integer.MAX_VALUE, "daily");
+		buffer.record(returned);
+		assertEquals(1, buffer.flush());
+		setState(CleanupJob.JOB_NAME, "idle", null, null);
+		setState(CleanupJob.ORPHAN_JOB_NAME, "done", null, null);
+
+		cleanupJob.deleteUnusedUser();
+
+		assertEquals(1, rows(returned));
+
+		// 同じ日の2回目は書かない
+		buffer.record(returned);
+		assertEquals(0, buffer.flush());
+		jdbc.update("DELETE FROM users WHERE user_id = ?", returned);
+	}
+
+	@Test
+	void waitsForOtherInstancesToFlushBeforeDeleting() throws Exception {
+		// 昨日登録し、基準日時より前に再訪したが、他のインスタンスのバッファにまだ残っているユーザー
+		String returned = UUID.randomUUID().toString();
+		intakeRepo.registUserId(returned);
+		jdbc.update("UPDATE users SET regist_date = now() - interval '1 day', last_access_date = now() - interval '1 day' WHERE user_id = ?", returned);
+		LastAccessBuffer otherInstance = new LastAccessBuffer(intakeRepo, Integer.MAX_VALUE, Integer.MAX_VALUE, "always");
+		otherInstance.record(returned);
+		setState(CleanupJob.JOB_NAME, "idle", null, null);
+		setState(CleanupJob.ORPHAN_JOB_NAME, "done", null, null);
+
+		// 待っている間に他のインスタンスが書き出す
+		CleanupJob job = new CleanupJob(jdbc, tx, userIdCache, lastAccessBuffer, favoriteCache, catalogCache,
+				registry, jobCoordinator, 2, 0, 2000);
+		CompletableFuture<Integer> run = CompletableFuture.supplyAsync(job::deleteUnusedUser);
+		Thread.sleep(500);
+		assertEquals(1, otherInstance.flush());
+		run.get(30, TimeUnit.SECONDS);
+
+		assertEquals(1, rows(returned));
+		jdbc.update("DELETE FROM users WHERE user_id = ?", returned);
+	}
+
+	@Test
+	void resumesAnInterruptedRunWithTheSameCutoff() {
+		// 関連行の削除の途中で止まった状態（基準日時は1時間前）
+		String stuck = UUID.randomUUID().toString();
+		intakeRepo.registUserId(stuck);
+		intakeSvc.insIntakeOnce(stuck, "おにぎり", 181, 1.0, 1.0, 1.0, 0.1);
+		jdbc.update("DELETE FROM users WHERE user_id = ?", stuck);
+		jdbc.update("INSERT INTO user_purge (user_id) VALUES (?)", stuck);
+		Timestamp cutoff = jdbc.queryForObject("SELECT localtimestamp - interval '1 hour'", Timestamp.class);
+		setState(CleanupJob.JOB_NAME, "purge", cutoff, null);
+		setState(CleanupJob.ORPHAN_JOB_NAME, "done", null, null);
+
+		// 基準日時より前に登録したユーザーは対象、後に登録したユーザーは次回
+		String before = UUID.randomUUID().toString();
+		intakeRepo.registUserId(before);
+		jdbc.update("UPDATE users SET regist_date = now() - interval '2 hours', last_access_date = now() - interval '2 hours' WHERE user_id = ?", before);
+		String after = UUID.randomUUID().toString();
+		intakeRepo.registUserId(after);
+
+		cleanupJob.deleteUnusedUser();
+
+		assertEquals(0, rows(stuck));
+		assertEquals(0, rows(before));
+		assertEquals(1, rows(after));
+
+		jdbc.update("DELETE FROM users WHERE user_id = ?", after);
+	}
+}
@@ -0,0 +1,122 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import jakarta.servlet.http.Cookie;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalGetTests {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	private MvcResult fetch(String userId, String page, String etag) throws Exception {
+		var request = get(page).cookie(new Cookie("cc_uid", userId));
+		if (etag != null) {
+			request.header(HttpHeaders.IF_NONE_MATCH, etag);
+		}
+		return mvc.perform(request).andReturn();
+	}
+
+	@Test
+	void unchangedPagesAreAnsweredWithoutQueries() throws Exception {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		LocalDate today = LocalDate.now();
+
+		for (String page : new String[] { "/", "/?date=" + today.minusDays(1), "/daily/detail?date=" + today, "/list/maker" }) {
+			MvcResult first = fetch(userId, page, null);
+			assertEquals(200, first.getResponse().getStatus(), page);
+			String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+			assertNotNull(etag, page);
+			assertEquals("private, no-cache", first.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+
+			// 変わっていなければ304（SQLは版の確認1件だけ）
+			MvcResult second = fetch(userId, page, etag);
+			assertEquals(304, second.getResponse().getStatus(), page);
+			assertEquals("", second.getResponse().getContentAsString());
+			assertTrue(second.getResponse().getHeader(SqlStatsFilter.HEADER).contains("statements=1"), page);
+		}
+
+		// 日付・ユーザーが違えば別のETag
+		String home = fetch(userId, "/", null).getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotEquals(home, fetch(userId, "/?date=" + today.minusDays(1), null).getResponse().getHeader(HttpHeaders.ETAG));
+		String otherUserId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(otherUserId);
+		assertEquals(200, fetch(otherUserId, "/", home).getResponse().getStatus());
+	}
+
+	@Test
+	void writesChangeTheEtag() throws Exception {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+
+		String home = fetch(userId, "/", null).getResponse().getHeader(HttpHeaders.ETAG);
+		String makers = fetch(userId, "/list/maker", null).getResponse().getHeader(HttpHeaders.ETAG);
+
+		// 食べた記録の登録で変わる
+		intakeSvc.insIntakeOnce(userId, "おにぎり", 181, 1.0, 1.0, 1.0, 0.1);
+		MvcResult changed = fetch(userId, "/", home);
+		assertEquals(200, changed.getResponse().getStatus());
+		assertTrue(changed.getResponse().getContentAsString().contains("おにぎり"));
+		home = changed.getResponse().getHeader(HttpHeaders.ETAG);
+		assertEquals(304, fetch(userId, "/", home).getResponse().getStatus());
+
+		// カタログの登録でも変わる
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		assertEquals(200, fetch(userId, "/list/maker", makers).getResponse().getStatus());
+		assertEquals(200, fetch(userId, "/", home).getResponse().getStatus());
+
+		intakeSvc.delMakerWithFavorites(userId, makerId);
+	}
+
+	@Test
+	void changedAssetsChangeTheEtagWithoutAVersionBump() {
+		// app.versionが同じでも、静的ファイル・テンプレートが変われば前のETagとは一致しない
+		String userId = UUID.randomUUID().toString();
+		String fingerprint = DataVersion.resourceFingerprint();
+		assertEquals(fingerprint, DataVersion.resourceFingerprint());
+		assertEquals(new DataVersion(intakeRepo, "1.5.0", fingerprint).etag(userId, "/"),
+				new DataVersion(intakeRepo, "1.5.0", fingerprint).etag(userId, "/"));
+		assertNotEquals(new DataVersion(intakeRepo, "1.5.0", "previous-assets").etag(userId, "/"),
+				new DataVersion(intakeRepo, "1.5.0", fingerprint).etag(userId, "/"));
+	}
+
+	@Test
+	void flashMessagesAreAlwaysRendered() throws Exception {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		String etag = fetch(userId, "/", null).getResponse().getHeader(HttpHeaders.ETAG);
+
+		MvcResult result = mvc.perform(get("/").cookie(new Cookie("cc_uid", userId))
+				.header(HttpHeaders.IF_NONE_MATCH, etag)
+				.flashAttr("msg", "食べた！を記録しました。")).andReturn();
+		assertEquals(200, result.getResponse().getStatus());
+		assertTrue(result.getResponse().getContentAsString().contains("食べた！を記録しました。"));
+		assertNull(result.getResponse().getHeader(HttpHeaders.ETAG));
+		assertEquals("no-store", result.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+	}
+}
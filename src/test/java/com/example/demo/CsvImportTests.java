@@ -0,0 +1,98 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.demo.HomeController.CsvImportError;
+import com.example.demo.HomeController.CsvImportResult;
+import com.example.demo.HomeController.MakerRow;
+import com.example.demo.HomeController.NutritionRow;
+
+@SpringBootTest
+class CsvImportTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	private static final String HEADER = "maker_name,food_name,class_name,calorie,protein,lipid,carbo,salt,eaten_date,eaten_time,qty\n";
+
+	@Test
+	void importsCatalogAndIntakesAndReportsRowErrors() {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		intakeSvc.insFoodMaker(userId, "既存メーカー");
+		// カタログをキャッシュに載せておく
+		intakeSvc.getMakerList(userId);
+
+		String csv = HEADER
+				+ "既存メーカー,ポテトチップス,うすしお,336,3.1,21.6,32.6,0.6,2026-01-27,15:00,1\n"
+				+ "既存メーカー,ポテトチップス,うすしお,999,0,0,0,0,2026-01-28,,\n"
+				+ "新メーカー,\"おにぎり, 鮭\",普通,181,,,,,,,\n"
+				+ "新メーカー,おにぎり,普通,abc,,,,,,,\n"
+				+ "新メーカー,おにぎり,普通,100,,,,,2026-02-30,,\n"
+				+ ",名前なし,普通,100,,,,,,,\n";
+		CsvImportResult result = intakeSvc.importCsv(userId, new StringReader(csv));
+
+		assertEquals(6, result.rows());
+		assertEquals(1, result.makersCreated());
+		assertEquals(2, result.foodsCreated());
+		assertEquals(2, result.nutritionsCreated());
+		assertEquals(2, result.intakesCreated());
+		assertEquals(3, result.errorCount());
+		assertEquals(List.of(new CsvImportError(5, "カロリーが整数ではありません"),
+				new CsvImportError(6, "食べた日付が不正です"),
+				new CsvImportError(7, "メーカー名がありません")), result.errors());
+		LocalDate day1 = LocalDate.of(2026, 1, 27);
+		LocalDate day2 = day1.plusDays(1);
+		assertEquals(List.of(day1, day2), result.dates());
+
+		// 同じ栄養情報は先の行の値で登録し、カタログのキャッシュも入れ替わる
+		assertEquals(Set.of("既存メーカー", "新メーカー"),
+				intakeSvc.getMakerList(userId).stream().map(MakerRow::makerName).collect(Collectors.toSet()));
+		assertEquals(336, intakeSvc.calcTotalCal(userId, day1));
+		assertEquals(336, intakeSvc.calcTotalCal(userId, day2));
+		assertTrue(intakeRepo.verifyDailySummary().stream()
+				.noneMatch(m -> userId.equals(m.get("regist_user_id"))));
+
+		// 取り込み直しても重複して登録しない
+		CsvImportResult again = intakeSvc.importCsv(userId, new StringReader(csv));
+		assertEquals(0, again.makersCreated() + again.foodsCreated() + again.nutritionsCreated() + again.intakesCreated());
+		assertEquals(2, again.intakesSkipped());
+		assertEquals(336, intakeSvc.calcTotalCal(userId, day1));
+
+		for (NutritionRow n : intakeRepo.getNutritionListAll(userId)) {
+			intakeSvc.delNutritionWithFavorites(userId, n.nutritionId());
+			intakeSvc.delFoodWithFavorites(userId, n.foodId());
+		}
+		for (MakerRow m : intakeRepo.getMakerList(userId)) {
+			intakeSvc.delMakerWithFavorites(userId, m.makerId());
+		}
+	}
+
+	@Test
+	void rejectsMalformedCsvWithoutChanges() {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+
+		String csv = HEADER
+				+ "メーカー,食品,普通,100,,,,,,,\n"
+				+ "メーカー,食品,大盛,200,,,,,,,,余分な列\n";
+		assertThrows(IllegalArgumentException.class, () -> intakeSvc.importCsv(userId, new StringReader(csv)));
+		assertEquals(0, intakeRepo.getMakerList(userId).size());
+	}
+}
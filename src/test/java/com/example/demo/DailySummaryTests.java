@@ -0,0 +1,106 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@SpringBootTest
+@Transactional
+class DailySummaryTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Test
+	void summaryFollowsWrites() {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeSvc.insFood(userId, "テスト食品", makerId);
+		intakeSvc.insNutrition(userId, "普通", foodId, 200, 10.0, 5.0, 20.0, 0.5);
+		long nutritionId = intakeRepo.getNutritionListAll(userId).get(0).nutritionId();
+
+		LocalDate today = LocalDate.now();
+		intakeSvc.insIntake(userId, nutritionId, new BigDecimal("1.5"));
+		intakeSvc.insIntakeOnce(userId, "おにぎり", 181, 3.0, 1.0, 40.0, 1.2);
+		assertEquals(300 + 181, intakeSvc.calcTotalCal(userId, today));
+
+		// 栄養情報の更新は使っている日すべてに反映
+		intakeSvc.updNutrition(userId, nutritionId, "普通", 100, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO);
+		assertEquals(150 + 181, intakeSvc.calcTotalCal(userId, today));
+
+		// 日付を移すと移動元・移動先の両方が変わる
+		long intakeId = intakeSvc.loadHomePage(userId, today).records().stream()
+				.filter(r -> r.intakeOnceId() == 0)
+				.findFirst().orElseThrow().intakeId();
+		LocalDate yesterday = today.minusDays(1);
+		intakeSvc.updIntake(userId, intakeId, yesterday, LocalTime.of(9, 0));
+		assertEquals(181, intakeSvc.calcTotalCal(userId, today));
+		assertEquals(150, intakeSvc.calcTotalCal(userId, yesterday));
+
+		// 栄養情報を消すとカロリーの集計からも外れる
+		intakeSvc.delNutritionWithFavorites(userId, nutritionId);
+		assertEquals(0, intakeSvc.calcTotalCal(userId, yesterday));
+
+		assertTrue(intakeRepo.verifyDailySummary().stream()
+				.noneMatch(m -> userId.equals(m.get("regist_user_id"))));
+	}
+
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	void concurrentWritersLeaveTheLatestTotal() throws Exception {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeSvc.insFood(userId, "テスト食品", makerId);
+		intakeSvc.insNutrition(userId, "普通", foodId, 100, 1.0, 1.0, 1.0, 0.1);
+		long nutritionId = intakeRepo.getNutritionListAll(userId).get(0).nutritionId();
+		try {
+			// 同じユーザー・同じ日への登録を別々のトランザクションで並行して行う
+			ExecutorService pool = Executors.newFixedThreadPool(4);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				futures.add(pool.submit(() -> intakeSvc.insIntake(userId, nutritionId, BigDecimal.ONE)));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+			pool.shutdown();
+
+			// 最後にコミットした再計算が、すべての登録を含んだ合計になっていること
+			LocalDate today = jdbc.queryForObject("SELECT max(eaten_date) FROM intake WHERE regist_user_id = ?",
+					LocalDate.class, userId);
+			assertEquals(100 * 100, intakeSvc.calcTotalCal(userId, today));
+			assertTrue(intakeRepo.verifyDailySummary().stream()
+					.noneMatch(m -> userId.equals(m.get("regist_user_id"))));
+		} finally {
+			for (String table : List.of("intake", "nutrition", "food", "maker", "daily_summary")) {
+				jdbc.update("DELETE FROM " + table + " WHERE regist_user_id = ?", userId);
+			}
+			jdbc.update("DELETE FROM users WHERE user_id = ?", userId);
+		}
+	}
+}
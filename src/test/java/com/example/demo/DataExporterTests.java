@@ -0,0 +1,87 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.demo.HomeController.CsvImportResult;
+import com.example.demo.HomeController.NutritionRow;
+
+@SpringBootTest
+class DataExporterTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Autowired
+	private DataExporter dataExporter;
+
+	private String export(String userId, String data, String format) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		dataExporter.stream(userId, data, format).writeTo(out);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void exportedCsvCanBeImportedAgain() throws Exception {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeSvc.insFood(userId, "ポテト, \"うすしお\"", makerId);
+		intakeSvc.insNutrition(userId, "普通", foodId, 200, 10.0, 5.0, 20.0, 0.5);
+		long nutritionId = intakeRepo.getNutritionListAll(userId).get(0).nutritionId();
+		intakeSvc.insIntake(userId, nutritionId, new BigDecimal("1.5"));
+		intakeSvc.insIntakeOnce(userId, "おにぎり", 181, 1.0, 1.0, 1.0, 0.1);
+
+		String csv = export(userId, DataExporter.DATA_INTAKE, DataExporter.FORMAT_CSV);
+		String[] lines = csv.split("\r\n");
+		assertEquals(2, lines.length);
+		assertEquals("\uFEFF" + IntakeRepository.CSV_IMPORT_COLUMNS.replace(" ", ""), lines[0]);
+		assertTrue(lines[1].startsWith("テストメーカー,\"ポテト, \"\"うすしお\"\"\",普通,200,10.0,5.0,20.0,0.50,"));
+
+		String json = export(userId, DataExporter.DATA_INTAKE_ONCE, DataExporter.FORMAT_JSON);
+		assertTrue(json.startsWith("[\n{\"food_name\":\"おにぎり\",\"class_name\":null,\"calorie\":181,"));
+		assertTrue(json.endsWith("}\n]\n"));
+		assertEquals("[\n]\n", export(UUID.randomUUID().toString(), DataExporter.DATA_CATALOG, DataExporter.FORMAT_JSON));
+
+		// 別のユーザーに取り込むと同じ合計になる
+		String otherUserId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(otherUserId);
+		intakeSvc.importCsv(otherUserId, new StringReader(export(userId, DataExporter.DATA_CATALOG, DataExporter.FORMAT_CSV)));
+		CsvImportResult result = intakeSvc.importCsv(otherUserId, new StringReader(csv));
+		assertEquals(0, result.errorCount());
+		assertEquals(1, result.intakesCreated());
+		LocalDate today = LocalDate.now();
+		assertEquals(300 + 181, intakeSvc.calcTotalCal(userId, today));
+		assertEquals(300, intakeSvc.calcTotalCal(otherUserId, today));
+
+		for (String id : List.of(userId, otherUserId)) {
+			for (NutritionRow n : intakeRepo.getNutritionListAll(id)) {
+				intakeSvc.delNutritionWithFavorites(id, n.nutritionId());
+				intakeSvc.delFoodWithFavorites(id, n.foodId());
+				intakeSvc.delMakerWithFavorites(id, n.makerId());
+			}
+		}
+	}
+
+	@Test
+	void rejectsUnknownDataAndFormat() {
+		assertThrows(IllegalArgumentException.class, () -> dataExporter.stream("u", "users", DataExporter.FORMAT_CSV));
+		assertThrows(IllegalArgumentException.class, () -> dataExporter.stream("u", DataExporter.DATA_INTAKE, "xml"));
+	}
+}
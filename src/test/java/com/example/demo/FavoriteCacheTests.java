@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.HomeController.FavoriteRow;
+import com.example.demo.HomeController.NutritionRow;
+
+@SpringBootTest
+class FavoriteCacheTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	private final String userId = UUID.randomUUID().toString();
+
+	@AfterEach
+	void deleteUser() {
+		// テストで作った行とユーザーを消す（途中で失敗しても残らないよう、参照される側を後に消す）
+		for (String table : List.of("favorite", "nutrition", "food", "maker")) {
+			jdbc.update("DELETE FROM " + table + " WHERE regist_user_id = ?", userId);
+		}
+		jdbc.update("DELETE FROM users WHERE user_id = ?", userId);
+	}
+
+	@Test
+	void favoritesFollowWrites() {
+		intakeRepo.registUserId(userId);
+
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeSvc.insFood(userId, "テスト食品", makerId);
+		intakeSvc.insNutrition(userId, "普通", foodId, 200, 1.0, 1.0, 1.0, 0.1);
+		intakeSvc.insNutrition(userId, "大", foodId, 300, 1.0, 1.0, 1.0, 0.1);
+		List<NutritionRow> nutritions = intakeRepo.getNutritionListAll(userId);
+		long firstId = nutritions.get(0).nutritionId();
+		long secondId = nutritions.get(1).nutritionId();
+
+		// 2回目はキャッシュから同じ一覧が返る
+		List<FavoriteRow> empty = intakeSvc.loadHomePage(userId, LocalDate.now()).favorites();
+		assertEquals(0, empty.size());
+		assertSame(empty, intakeSvc.getFavoriteList(userId));
+
+		intakeSvc.insFavorite(userId, firstId);
+		intakeSvc.insFavorite(userId, secondId);
+		assertEquals(intakeRepo.getFavoriteList(userId), intakeSvc.loadHomePage(userId, LocalDate.now()).favorites());
+
+		long favoriteId = intakeSvc.getFavoriteList(userId).get(1).favoriteId();
+		intakeSvc.swapFavorite(userId, favoriteId, "UP");
+		assertEquals(intakeRepo.getFavoriteList(userId), intakeSvc.getFavoriteList(userId));
+
+		intakeSvc.updFood(userId, foodId, "改名した食品");
+		assertEquals("改名した食品", intakeSvc.getFavoriteList(userId).get(0).foodName());
+
+		intakeSvc.updNutrition(userId, firstId, "小", 100, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO);
+		assertEquals(intakeRepo.getFavoriteList(userId), intakeSvc.getFavoriteList(userId));
+
+		intakeSvc.delFavorite(userId, secondId);
+		assertEquals(1, intakeSvc.getFavoriteList(userId).size());
+
+		intakeSvc.delMakerWithFavorites(userId, makerId);
+		assertEquals(0, intakeSvc.loadHomePage(userId, LocalDate.now()).favorites().size());
+
+		intakeSvc.delFoodWithFavorites(userId, foodId);
+		intakeSvc.delNutritionWithFavorites(userId, firstId);
+		intakeSvc.delNutritionWithFavorites(userId, secondId);
+	}
+}
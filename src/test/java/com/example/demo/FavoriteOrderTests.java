@@ -0,0 +1,100 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.HomeController.FavoriteRow;
+import com.example.demo.HomeController.NutritionRow;
+
+@SpringBootTest
+class FavoriteOrderTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	private final String userId = UUID.randomUUID().toString();
+
+	@AfterEach
+	void deleteUser() {
+		// テストで作った行とユーザーを消す（途中で失敗しても残らないよう、参照される側を後に消す）
+		for (String table : List.of("favorite", "nutrition", "food", "maker")) {
+			jdbc.update("DELETE FROM " + table + " WHERE regist_user_id = ?", userId);
+		}
+		jdbc.update("DELETE FROM users WHERE user_id = ?", userId);
+	}
+
+	@Test
+	void orderStaysConsistentUnderParallelSwapsAndDeletes() throws Exception {
+		intakeRepo.registUserId(userId);
+
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeSvc.insFood(userId, "テスト食品", makerId);
+		for (int i = 0; i < 12; i++) {
+			intakeSvc.insNutrition(userId, "分類" + i, foodId, 100 + i, 1.0, 1.0, 1.0, 0.1);
+		}
+		List<Long> nutritionIds = intakeRepo.getNutritionListAll(userId).stream()
+				.map(NutritionRow::nutritionId)
+				.toList();
+		for (long nutritionId : nutritionIds) {
+			intakeSvc.insFavorite(userId, nutritionId);
+		}
+		List<Long> favoriteIds = intakeRepo.getFavoriteList(userId).stream()
+				.map(FavoriteRow::favoriteId)
+				.toList();
+
+		// 並び替えと削除を並行して実行
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			futures.add(pool.submit(() -> {
+				ThreadLocalRandom r = ThreadLocalRandom.current();
+				long favoriteId = favoriteIds.get(r.nextInt(favoriteIds.size()));
+				intakeSvc.swapFavorite(userId, favoriteId, r.nextBoolean() ? "UP" : "DOWN");
+			}));
+		}
+		for (int i = 0; i < 4; i++) {
+			long nutritionId = nutritionIds.get(i * 3);
+			futures.add(pool.submit(() -> intakeSvc.delFavorite(userId, nutritionId)));
+		}
+		for (Future<?> f : futures) {
+			f.get();
+		}
+		pool.shutdown();
+
+		// 削除した分だけ減り、sort_orderに重複が無いこと
+		List<Integer> orders = jdbc.queryForList(
+				"SELECT sort_order FROM favorite WHERE regist_user_id = ? ORDER BY sort_order", Integer.class, userId);
+		assertEquals(8, orders.size());
+		assertEquals(orders.size(), new HashSet<>(orders).size());
+
+		// 振り直しても並び順は変わらない
+		List<FavoriteRow> before = intakeRepo.getFavoriteList(userId);
+		intakeRepo.rebalanceFavorites(userId);
+		assertEquals(before, intakeRepo.getFavoriteList(userId));
+		Set<Integer> rebalanced = new HashSet<>(jdbc.queryForList(
+				"SELECT sort_order FROM favorite WHERE regist_user_id = ?", Integer.class, userId));
+		assertTrue(rebalanced.stream().allMatch(o -> o % IntakeRepository.FAVORITE_ORDER_GAP == 0));
+	}
+}
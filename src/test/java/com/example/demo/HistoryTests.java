@@ -0,0 +1,59 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.demo.HomeController.HistorySeries;
+
+@SpringBootTest
+class HistoryTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Test
+	void pastPeriodIsCachedUntilWrittenDay() {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeSvc.insFood(userId, "テスト食品", makerId);
+		intakeSvc.insNutrition(userId, "普通", foodId, 200, 10.0, 5.0, 20.0, 0.5);
+		long nutritionId = intakeRepo.getNutritionListAll(userId).get(0).nutritionId();
+
+		LocalDate to = LocalDate.now().minusDays(1);
+		LocalDate from = to.minusDays(6);
+
+		// 記録の無い日も0で全日分返る
+		HistorySeries first = intakeSvc.getHistory(userId, from, to);
+		assertEquals(7, first.days().size());
+		assertEquals(0, first.days().get(3).kcal());
+		assertSame(first, intakeSvc.getHistory(userId, from, to));
+
+		// 期間内の日付に記録を移すと取り直される
+		intakeSvc.insIntake(userId, nutritionId, BigDecimal.ONE);
+		long intakeId = intakeSvc.loadHomePage(userId, LocalDate.now()).records().get(0).intakeId();
+		intakeSvc.updIntake(userId, intakeId, from.plusDays(3), LocalTime.of(9, 0));
+
+		HistorySeries second = intakeSvc.getHistory(userId, from, to);
+		assertEquals(200, second.days().get(3).kcal());
+		assertEquals(0, new BigDecimal("10").compareTo(second.days().get(3).protein()));
+
+		intakeSvc.delIntake(userId, intakeId);
+		intakeSvc.delNutritionWithFavorites(userId, nutritionId);
+		intakeSvc.delFoodWithFavorites(userId, foodId);
+		intakeSvc.delMakerWithFavorites(userId, makerId);
+	}
+}
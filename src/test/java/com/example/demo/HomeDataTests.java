@@ -0,0 +1,88 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.HomeController.HomeData;
+import com.example.demo.HomeController.NutritionRow;
+
+@SpringBootTest
+@Transactional
+class HomeDataTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Test
+	void totalKcalMatchesCalcTotalCal() {
+		String userId = UUID.randomUUID().toString();
+		LocalDate date = LocalDate.of(2026, 1, 27);
+		intakeRepo.registUserId(userId);
+
+		int makerId = intakeRepo.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeRepo.insFood(userId, "テスト食品", makerId);
+		intakeRepo.insNutrition(userId, "普通", foodId, 333, 1.5, 2.5, 3.5, 0.25);
+		intakeRepo.insNutrition(userId, "小", foodId, 77, null, null, null, null);
+		long nutritionId = intakeRepo.getNutritionListAll(userId).stream()
+				.filter(n -> "普通".equals(n.className()))
+				.map(NutritionRow::nutritionId)
+				.findFirst().orElseThrow();
+		long smallId = intakeRepo.getNutritionListAll(userId).stream()
+				.filter(n -> "小".equals(n.className()))
+				.map(NutritionRow::nutritionId)
+				.findFirst().orElseThrow();
+
+		// 小数の数量を混ぜて切り捨て位置まで一致することを確認
+		intakeRepo.insIntake(userId, nutritionId, date, LocalTime.of(10, 0), new BigDecimal("1.5"));
+		intakeRepo.insIntake(userId, nutritionId, date, LocalTime.of(15, 0), new BigDecimal("0.4"));
+		intakeRepo.insIntake(userId, smallId, date, LocalTime.of(21, 30), new BigDecimal("2.7"));
+		// 別日の記録は含まない
+		intakeRepo.insIntake(userId, nutritionId, date.plusDays(1), LocalTime.of(10, 0), BigDecimal.ONE);
+		jdbc.update("""
+				INSERT INTO intake_once (food_name, calorie, regist_user_id, eaten_date, eaten_time, qty)
+				VALUES (?, ?, ?, ?, ?, ?)
+				""", "おにぎり", 181, userId, date, LocalTime.of(12, 0), new BigDecimal("1.0"));
+		jdbc.update("""
+				INSERT INTO intake_once (food_name, calorie, regist_user_id, eaten_date, eaten_time, qty)
+				VALUES (?, ?, ?, ?, ?, ?)
+				""", null, 55, userId, date, LocalTime.of(12, 5), new BigDecimal("1.0"));
+		intakeRepo.insFavorite(userId, nutritionId);
+		// 直接登録した分の日別集計を作る
+		intakeRepo.refreshDailySummary(userId, date);
+
+		HomeData homeData = intakeSvc.loadHomePage(userId, date);
+
+		assertEquals(intakeRepo.calcTotalCal(userId, date), homeData.totalKcal());
+		assertEquals(intakeRepo.getDailyRecords(userId, date), homeData.records());
+		assertEquals(intakeRepo.getFavoriteList(userId), homeData.favorites());
+	}
+
+	@Test
+	void emptyDayIsZero() {
+		String userId = UUID.randomUUID().toString();
+		LocalDate date = LocalDate.of(2026, 1, 27);
+		intakeRepo.registUserId(userId);
+
+		HomeData homeData = intakeSvc.loadHomePage(userId, date);
+
+		assertEquals(intakeRepo.calcTotalCal(userId, date), homeData.totalKcal());
+		assertEquals(0, homeData.records().size());
+		assertEquals(0, homeData.favorites().size());
+	}
+}
@@ -0,0 +1,145 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.demo.HomeController.IntakeBatchResult;
+import com.example.demo.HomeController.IntakeOp;
+import com.example.demo.HomeController.IntakeRow;
+
+@SpringBootTest
+class IntakeBatchTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	private static IntakeOp insert(long nutritionId, LocalDate date, LocalTime time, String qty) {
+		return new IntakeOp(IntakeOp.OP_INSERT, IntakeOp.KIND_INTAKE, null, nutritionId, new BigDecimal(qty),
+				date, time, null, null, null, null, null, null);
+	}
+
+	private static IntakeOp insertOnce(String foodName, int calorie, LocalDate date, LocalTime time) {
+		return new IntakeOp(IntakeOp.OP_INSERT, IntakeOp.KIND_INTAKE_ONCE, null, null, null,
+				date, time, foodName, calorie, 1.0, 1.0, 1.0, 0.1);
+	}
+
+	private static IntakeOp update(String kind, long id, LocalDate date, LocalTime time) {
+		return new IntakeOp(IntakeOp.OP_UPDATE, kind, id, null, null, date, time, null, null, null, null, null, null);
+	}
+
+	private static IntakeOp delete(String kind, long id) {
+		return new IntakeOp(IntakeOp.OP_DELETE, kind, id, null, null, null, null, null, null, null, null, null, null);
+	}
+
+	@Test
+	void appliesMixedOperationsInOneTransaction() {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeSvc.insFood(userId, "テスト食品", makerId);
+		intakeSvc.insNutrition(userId, "普通", foodId, 200, 10.0, 5.0, 20.0, 0.5);
+		long nutritionId = intakeRepo.getNutritionListAll(userId).get(0).nutritionId();
+
+		LocalDate day1 = LocalDate.of(2026, 1, 27);
+		LocalDate day2 = day1.plusDays(1);
+		IntakeBatchResult first = intakeSvc.applyIntakeBatch(userId, List.of(
+				insert(nutritionId, day1, LocalTime.of(8, 0), "1.5"),
+				insert(nutritionId, day1, LocalTime.of(12, 0), "1.0"),
+				insertOnce("おにぎり", 181, day1, LocalTime.of(15, 0))));
+		assertEquals(3, first.inserted());
+		assertEquals(List.of(1, 1, 1), first.results());
+		assertEquals(List.of(day1), first.dates());
+		assertEquals(300 + 200 + 181, intakeSvc.calcTotalCal(userId, day1));
+
+		List<IntakeRow> records = intakeRepo.getDailyRecords(userId, day1);
+		long moveId = records.stream().filter(r -> r.intakeOnceId() == 0).findFirst().orElseThrow().intakeId();
+		long onceId = records.stream().filter(r -> r.intakeOnceId() != 0).findFirst().orElseThrow().intakeOnceId();
+
+		// 移動・削除、存在しないIDの削除は0件
+		IntakeBatchResult second = intakeSvc.applyIntakeBatch(userId, List.of(
+				update(IntakeOp.KIND_INTAKE, moveId, day2, LocalTime.of(9, 0)),
+				delete(IntakeOp.KIND_INTAKE_ONCE, onceId),
+				delete(IntakeOp.KIND_INTAKE, -1)));
+		assertEquals(1, second.updated());
+		assertEquals(1, second.deleted());
+		assertEquals(List.of(1, 1, 0), second.results());
+		assertEquals(List.of(day1, day2), second.dates());
+		assertEquals(200, intakeSvc.calcTotalCal(userId, day1));
+		assertEquals(300, intakeSvc.calcTotalCal(userId, day2));
+		assertTrue(intakeRepo.verifyDailySummary().stream()
+				.noneMatch(m -> userId.equals(m.get("regist_user_id"))));
+
+		intakeSvc.delNutritionWithFavorites(userId, nutritionId);
+		intakeSvc.delFoodWithFavorites(userId, foodId);
+		intakeSvc.delMakerWithFavorites(userId, makerId);
+	}
+
+	@Test
+	void appliesOperationsInTheOrderSent() {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		LocalDate day1 = LocalDate.of(2026, 1, 27);
+		LocalDate day2 = day1.plusDays(1);
+		intakeSvc.applyIntakeBatch(userId, List.of(
+				insertOnce("おにぎり", 181, day1, LocalTime.of(12, 0)),
+				insertOnce("パン", 250, day1, LocalTime.of(8, 0))));
+		List<Long> onceIds = intakeRepo.getDailyRecords(userId, day1).stream().map(IntakeRow::intakeOnceId).toList();
+
+		// 削除してから更新すると、更新は対象が無く0件（1件ずつ送った場合と同じ）
+		// 更新してから削除すると、移動先の日からも消える
+		IntakeBatchResult result = intakeSvc.applyIntakeBatch(userId, List.of(
+				delete(IntakeOp.KIND_INTAKE_ONCE, onceIds.get(0)),
+				update(IntakeOp.KIND_INTAKE_ONCE, onceIds.get(0), day2, LocalTime.of(9, 0)),
+				update(IntakeOp.KIND_INTAKE_ONCE, onceIds.get(1), day2, LocalTime.of(9, 0)),
+				delete(IntakeOp.KIND_INTAKE_ONCE, onceIds.get(1))));
+		assertEquals(List.of(1, 0, 1, 1), result.results());
+		assertEquals(1, result.updated());
+		assertEquals(2, result.deleted());
+		assertEquals(0, intakeRepo.getDailyRecords(userId, day1).size());
+		assertEquals(0, intakeRepo.getDailyRecords(userId, day2).size());
+		assertEquals(0, intakeSvc.calcTotalCal(userId, day2));
+	}
+
+	@Test
+	void rejectsWholeBatchOnInvalidOperation() {
+		String userId = UUID.randomUUID().toString();
+		String otherUserId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		intakeRepo.registUserId(otherUserId);
+		int makerId = intakeSvc.insFoodMaker(otherUserId, "他人のメーカー");
+		int foodId = intakeSvc.insFood(otherUserId, "他人の食品", makerId);
+		intakeSvc.insNutrition(otherUserId, "普通", foodId, 200, 1.0, 1.0, 1.0, 0.1);
+		long othersNutritionId = intakeRepo.getNutritionListAll(otherUserId).get(0).nutritionId();
+
+		LocalDate day = LocalDate.of(2026, 1, 27);
+		IntakeOp once = insertOnce("おにぎり", 181, day, LocalTime.of(12, 0));
+
+		// 入力チェックで弾く
+		assertThrows(IllegalArgumentException.class, () -> intakeSvc.applyIntakeBatch(userId, List.of(
+				once, new IntakeOp("upsert", IntakeOp.KIND_INTAKE, 1L, null, null, null, null, null, null, null, null, null, null))));
+		// 他のユーザーの栄養情報は登録できず、先に登録した分も戻る
+		assertThrows(IllegalArgumentException.class, () -> intakeSvc.applyIntakeBatch(userId, List.of(
+				once, insert(othersNutritionId, day, LocalTime.of(8, 0), "1.0"))));
+
+		assertEquals(0, intakeSvc.calcTotalCal(userId, day));
+		assertEquals(0, intakeRepo.getDailyRecords(userId, day).size());
+
+		intakeSvc.delNutritionWithFavorites(otherUserId, othersNutritionId);
+		intakeSvc.delFoodWithFavorites(otherUserId, foodId);
+		intakeSvc.delMakerWithFavorites(otherUserId, makerId);
+	}
+}
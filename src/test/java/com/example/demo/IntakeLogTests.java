@@ -0,0 +1,132 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.HomeController.IntakeRow;
+
+@SpringBootTest(properties = "app.intake-log.pause-ms=0")
+class IntakeLogTests {
+
+	private static final LocalDate DATE = LocalDate.of(2026, 1, 27);
+	private static final LocalTime NOON = LocalTime.of(12, 0);
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Autowired
+	private IntakeLogMigration migration;
+
+	// カタログの「おにぎり 普通 181kcal」と、同じ内容の簡易登録を同じ日時に1件ずつ
+	private String registSameLookingRows() {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeSvc.insFood(userId, "おにぎり", makerId);
+		intakeSvc.insNutrition(userId, "普通", foodId, 181, 1.0, 1.0, 1.0, 0.1);
+		long nutritionId = intakeRepo.getNutritionListAll(userId).get(0).nutritionId();
+		intakeRepo.insIntake(userId, nutritionId, DATE, NOON, new BigDecimal("1.0"));
+		jdbc.update("""
+				INSERT INTO intake_once (food_name, class_name, calorie, regist_user_id, eaten_date, eaten_time, qty)
+				VALUES (?, ?, ?, ?, ?, ?, ?)
+				""", "おにぎり", "普通", 181, userId, DATE, NOON, new BigDecimal("1.0"));
+		return userId;
+	}
+
+	private void deleteUser(String userId) {
+		for (String table : List.of("intake", "intake_once", "nutrition", "food", "maker", "daily_summary")) {
+			jdbc.update("DELETE FROM " + table + " WHERE regist_user_id = ?", userId);
+		}
+		jdbc.update("DELETE FROM users WHERE user_id = ?", userId);
+	}
+
+	// 起動時の移行（@Scheduled）と重なっても、切り替わるまで待つ
+	private void awaitMigrated() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (!intakeRepo.isIntakeLogReady() && System.nanoTime() < deadline) {
+			migration.migrate();
+			Thread.sleep(100);
+		}
+		assertTrue(intakeRepo.isIntakeLogReady());
+	}
+
+	private int logRows(String userId) {
+		return jdbc.queryForObject("SELECT count(*) FROM intake_log WHERE regist_user_id = ?", Integer.class, userId);
+	}
+
+	@Test
+	void logReadsMatchLegacyReadsAndKeepSameLookingRows() throws Exception {
+		String userId = registSameLookingRows();
+		try {
+			awaitMigrated();
+			List<IntakeRow> fromLog = intakeRepo.getDailyRecords(userId, DATE);
+			assertEquals(fromLog, intakeRepo.getHomeData(userId, DATE, false).records());
+
+			List<IntakeRow> legacy;
+			intakeRepo.setIntakeLogReady(false);
+			try {
+				legacy = intakeRepo.getDailyRecords(userId, DATE);
+			} finally {
+				intakeRepo.setIntakeLogReady(true);
+			}
+
+			// 内容が同じでも別々の記録として2件（同じ時刻なので順序は比べない）
+			assertEquals(2, fromLog.size());
+			assertEquals(new HashSet<>(legacy), new HashSet<>(fromLog));
+		} finally {
+			deleteUser(userId);
+		}
+	}
+
+	@Test
+	void triggersAndBackfillKeepTheLogInSync() throws Exception {
+		String userId = registSameLookingRows();
+		try {
+			awaitMigrated();
+			assertEquals(2, logRows(userId));
+
+			// 更新・削除はトリガーで反映される
+			long onceId = jdbc.queryForObject("SELECT intake_id FROM intake_once WHERE regist_user_id = ?", Long.class, userId);
+			intakeRepo.updIntakeOnce(userId, onceId, DATE, LocalTime.of(13, 0));
+			assertEquals(Time.valueOf(LocalTime.of(13, 0)), jdbc.queryForObject(
+					"SELECT eaten_time FROM intake_log WHERE intake_once_id = ?", Time.class, onceId));
+			intakeRepo.delIntakeOnce(onceId, userId);
+			assertEquals(1, logRows(userId));
+
+			// トリガーより前からある行（ログに無い行）は、保存した位置の続きからコピーされる
+			long intakeId = jdbc.queryForObject("SELECT intake_id FROM intake WHERE regist_user_id = ?", Long.class, userId);
+			jdbc.update("DELETE FROM intake_log WHERE regist_user_id = ?", userId);
+			jdbc.update("""
+					UPDATE job_state SET phase = 'intake', last_key = ?
+					WHERE job_name = ?
+					""", intakeId - 1, IntakeLogMigration.JOB_NAME);
+			migration.backfill();
+			assertEquals(1, logRows(userId));
+			assertEquals("done", jdbc.queryForObject(
+					"SELECT phase FROM job_state WHERE job_name = ?", String.class, IntakeLogMigration.JOB_NAME));
+		} finally {
+			deleteUser(userId);
+		}
+		assertEquals(0, logRows(userId));
+	}
+}
@@ -0,0 +1,133 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// 同じDBに2つのアプリ（インスタンスA・B）を起動して確かめる
+class JobCoordinatorTests {
+
+	private static ConfigurableApplicationContext a;
+	private static ConfigurableApplicationContext b;
+
+	private static ConfigurableApplicationContext start(String owner) {
+		return new SpringApplicationBuilder(CalorieCheckerApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("app.jobs.owner=" + owner, "spring.main.banner-mode=off")
+				.run();
+	}
+
+	@BeforeAll
+	static void startInstances() {
+		a = start("instance-a");
+		b = start("instance-b");
+	}
+
+	@AfterAll
+	static void stopInstances() {
+		a.close();
+		b.close();
+	}
+
+	private static JdbcTemplate jdbc() {
+		return a.getBean(JdbcTemplate.class);
+	}
+
+	private static Map<String, Object> status(String jobName) {
+		return a.getBean(JobCoordinator.class).getStatuses().stream()
+				.filter(s -> jobName.equals(s.get("job_name")))
+				.findFirst().orElseThrow();
+	}
+
+	@Test
+	void onlyOneInstanceRunsEachJob() throws Exception {
+		String jobName = "test-" + UUID.randomUUID();
+		JobCoordinator coordinatorA = a.getBean(JobCoordinator.class);
+		JobCoordinator coordinatorB = b.getBean(JobCoordinator.class);
+		try {
+			// Aの実行中はBは実行しない
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			CompletableFuture<Boolean> runA = CompletableFuture.supplyAsync(() -> coordinatorA.runExclusive(jobName, () -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			assertFalse(coordinatorB.runExclusive(jobName, () -> {
+				throw new AssertionError("ran on instance-b");
+			}));
+			assertEquals(Boolean.TRUE, status(jobName).get("running"));
+			assertEquals("instance-a", status(jobName).get("owner"));
+
+			release.countDown();
+			assertTrue(runA.get(10, TimeUnit.SECONDS));
+
+			// 終了後も最短間隔まではBは実行しない（同じ回を2回実行しない）
+			assertFalse(coordinatorB.runExclusive(jobName, () -> {
+				throw new AssertionError("ran on instance-b");
+			}));
+
+			Map<String, Object> last = status(jobName);
+			assertEquals(Boolean.FALSE, last.get("running"));
+			assertEquals("instance-a", last.get("last_owner"));
+			assertEquals(JobCoordinator.STATUS_SUCCESS, last.get("last_status"));
+			assertTrue(((Number) last.get("last_duration_ms")).longValue() >= 0);
+		} finally {
+			jdbc().update("DELETE FROM job_lease WHERE job_name = ?", jobName);
+		}
+	}
+
+	@Test
+	void expiredLeaseOfCrashedInstanceIsTakenOver() {
+		String jobName = "test-" + UUID.randomUUID();
+		try {
+			// 実行中に落ちたインスタンス（延長されずに期限切れ）
+			jdbc().update("""
+					INSERT INTO job_lease (job_name, owner, acquired_at, lease_until)
+					VALUES (?, 'crashed', now() - interval '10 minutes', now() - interval '1 second')
+					""", jobName);
+			assertTrue(b.getBean(JobCoordinator.class).runExclusive(jobName, () -> {
+			}));
+
+			Map<String, Object> last = status(jobName);
+			assertEquals("instance-b", last.get("last_owner"));
+			assertEquals(JobCoordinator.STATUS_SUCCESS, last.get("last_status"));
+		} finally {
+			jdbc().update("DELETE FROM job_lease WHERE job_name = ?", jobName);
+		}
+	}
+
+	@Test
+	void failureIsRecordedAndRethrown() {
+		String jobName = "test-" + UUID.randomUUID();
+		try {
+			assertThrows(IllegalStateException.class, () -> a.getBean(JobCoordinator.class).runExclusive(jobName, () -> {
+				throw new IllegalStateException("boom");
+			}));
+			Map<String, Object> last = status(jobName);
+			assertEquals(JobCoordinator.STATUS_FAILED, last.get("last_status"));
+			assertTrue(((String) last.get("last_error")).contains("boom"));
+		} finally {
+			jdbc().update("DELETE FROM job_lease WHERE job_name = ?", jobName);
+		}
+	}
+}
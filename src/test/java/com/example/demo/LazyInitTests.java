@@ -0,0 +1,45 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(properties = "spring.main.lazy-initialization=true")
+@AutoConfigureMockMvc
+class LazyInitTests {
+
+	@Autowired
+	private ConfigurableApplicationContext context;
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Test
+	void homeMigratorAndScheduledJobsStayEager() throws Exception {
+		ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+		for (Class<?> type : new Class<?>[] { HomeController.class, SchemaMigrator.class, LastAccessBuffer.class,
+				CleanupJob.class, FavoriteRebalanceJob.class, IntakeLogMigration.class }) {
+			String name = beanFactory.getBeanNamesForType(type)[0];
+			assertFalse(beanFactory.getBeanDefinition(name).isLazyInit(), name);
+		}
+		// 管理画面・エクスポートでだけ使うBeanは、起動しただけでは作られていない
+		// （DailySummaryJobは起動完了時のbuildIfEmptyで作られるので対象外）
+		for (Class<?> type : new Class<?>[] { ManageController.class, DataExporter.class }) {
+			String name = beanFactory.getBeanNamesForType(type)[0];
+			assertTrue(beanFactory.getBeanDefinition(name).isLazyInit(), name);
+			assertFalse(beanFactory.containsSingleton(name), name);
+		}
+
+		assertEquals("ok", mvc.perform(get("/healthz")).andReturn().getResponse().getContentAsString());
+		assertFalse(beanFactory.containsSingleton(beanFactory.getBeanNamesForType(DataExporter.class)[0]));
+	}
+}
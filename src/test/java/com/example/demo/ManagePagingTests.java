@@ -0,0 +1,55 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+@SpringBootTest
+@Transactional
+class ManagePagingTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Test
+	void keysetPagesCoverAllRowsOnce() {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		int makerId = intakeRepo.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeRepo.insFood(userId, "テスト食品", makerId);
+		intakeRepo.insNutrition(userId, "普通", foodId, 100, 1.0, 1.0, 1.0, 0.1);
+		long nutritionId = intakeRepo.getNutritionListAll(userId).get(0).nutritionId();
+		for (int i = 0; i < 7; i++) {
+			intakeRepo.insIntake(userId, nutritionId, LocalDate.of(2026, 1, 1), LocalTime.of(9, i), BigDecimal.ONE);
+		}
+
+		// 3件ずつ（次ページ判定用に1件多く）取得して、全件が1回ずつ出ること
+		List<Object> ids = new ArrayList<>();
+		Long afterId = null;
+		while (true) {
+			List<Map<String, Object>> rows = intakeRepo.getManageIntakes(userId, afterId, 4);
+			List<Map<String, Object>> page = rows.subList(0, Math.min(3, rows.size()));
+			page.forEach(r -> ids.add(r.get("intake_id")));
+			if (rows.size() <= 3) {
+				break;
+			}
+			afterId = ((Number) page.get(page.size() - 1).get("intake_id")).longValue();
+		}
+		assertEquals(7, ids.size());
+		assertEquals(7, ids.stream().distinct().count());
+
+		assertEquals(1, intakeRepo.getManageUsers(userId, null, null, 10).size());
+		assertEquals(1, intakeRepo.getManageMakers(userId, null, 10).size());
+	}
+}
@@ -0,0 +1,132 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.HomeController.FavoriteRow;
+import com.example.demo.HomeController.MakerRow;
+
+// 同じDBに2つのアプリ（インスタンスA・B）を起動し、Aでの書き込みがBのキャッシュに反映されることを確かめる
+class ReplicaCacheTests {
+
+	private static ConfigurableApplicationContext a;
+	private static ConfigurableApplicationContext b;
+
+	private static ConfigurableApplicationContext start(String owner) {
+		return new SpringApplicationBuilder(CalorieCheckerApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("app.jobs.owner=" + owner, "spring.main.banner-mode=off")
+				.run();
+	}
+
+	@BeforeAll
+	static void startInstances() {
+		a = start("instance-a");
+		b = start("instance-b");
+	}
+
+	@AfterAll
+	static void stopInstances() {
+		a.close();
+		b.close();
+	}
+
+	private static String newUser() {
+		String userId = UUID.randomUUID().toString();
+		a.getBean(IntakeRepository.class).registUserId(userId);
+		return userId;
+	}
+
+	private static void deleteUser(String userId) {
+		JdbcTemplate jdbc = a.getBean(JdbcTemplate.class);
+		for (String table : List.of("favorite", "intake", "intake_once", "daily_summary", "nutrition", "food", "maker")) {
+			jdbc.update("DELETE FROM " + table + " WHERE regist_user_id = ?", userId);
+		}
+		jdbc.update("DELETE FROM users WHERE user_id = ?", userId);
+	}
+
+	@Test
+	void catalogWrittenOnOneInstanceIsSeenOnTheOther() {
+		IntakeService svcA = a.getBean(IntakeService.class);
+		IntakeService svcB = b.getBean(IntakeService.class);
+		String userId = newUser();
+		try {
+			svcA.insFoodMaker(userId, "メーカー1");
+			// Bでカタログを読み込んでキャッシュしておく
+			assertEquals(List.of("メーカー1"), svcB.getMakerList(userId).stream().map(MakerRow::makerName).toList());
+
+			// Aでの登録・変更は、次にBで読んだときに反映される
+			int makerId = svcA.insFoodMaker(userId, "メーカー2");
+			assertEquals(2, svcB.getMakerList(userId).size());
+			svcA.updMaker(userId, makerId, "メーカー3");
+			assertEquals("メーカー3", svcB.getMakerName(userId, makerId));
+		} finally {
+			deleteUser(userId);
+		}
+	}
+
+	@Test
+	void favoritesWrittenOnOneInstanceAreSeenOnTheOther() {
+		IntakeService svcA = a.getBean(IntakeService.class);
+		IntakeService svcB = b.getBean(IntakeService.class);
+		String userId = newUser();
+		try {
+			int makerId = svcA.insFoodMaker(userId, "テストメーカー");
+			int foodId = svcA.insFood(userId, "テスト食品", makerId);
+			svcA.insNutrition(userId, "普通", foodId, 200, 1.0, 1.0, 1.0, 0.1);
+			svcA.insNutrition(userId, "大", foodId, 300, 1.0, 1.0, 1.0, 0.1);
+			long firstId = svcA.getNutritionListAll(userId).get(0).nutritionId();
+			long secondId = svcA.getNutritionListAll(userId).get(1).nutritionId();
+			svcA.insFavorite(userId, firstId);
+			assertEquals(1, svcB.getFavoriteList(userId).size());
+
+			// Aでの登録・並び替えは、次にBで読んだときに反映される
+			svcA.insFavorite(userId, secondId);
+			assertEquals(2, svcB.loadHomePage(userId, LocalDate.now()).favorites().size());
+			long favoriteId = svcA.getFavoriteList(userId).get(1).favoriteId();
+			svcA.swapFavorite(userId, favoriteId, "UP");
+			assertEquals(svcA.getFavoriteList(userId).stream().map(FavoriteRow::favoriteId).toList(),
+					svcB.getFavoriteList(userId).stream().map(FavoriteRow::favoriteId).toList());
+		} finally {
+			deleteUser(userId);
+		}
+	}
+
+	@Test
+	void pastDayEditedOnOneInstanceIsSeenInTheOthersHistory() {
+		IntakeService svcA = a.getBean(IntakeService.class);
+		IntakeService svcB = b.getBean(IntakeService.class);
+		String userId = newUser();
+		try {
+			int makerId = svcA.insFoodMaker(userId, "テストメーカー");
+			int foodId = svcA.insFood(userId, "テスト食品", makerId);
+			svcA.insNutrition(userId, "普通", foodId, 200, 10.0, 5.0, 20.0, 0.5);
+			long nutritionId = svcA.getNutritionListAll(userId).get(0).nutritionId();
+			LocalDate to = LocalDate.now().minusDays(1);
+			LocalDate from = to.minusDays(6);
+			// Bで終了済みの週を読み込んでキャッシュしておく
+			assertEquals(0, svcB.getHistory(userId, from, to).days().get(3).kcal());
+
+			// Aで記録を週の中の日付に移すと、次にBで読んだときに反映される
+			svcA.insIntake(userId, nutritionId, BigDecimal.ONE);
+			long intakeId = svcA.loadHomePage(userId, LocalDate.now()).records().get(0).intakeId();
+			svcA.updIntake(userId, intakeId, from.plusDays(3), LocalTime.of(9, 0));
+			assertEquals(200, svcB.getHistory(userId, from, to).days().get(3).kcal());
+		} finally {
+			deleteUser(userId);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest
+class RepositoryMetricsTests {
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	private long count(String method, String outcome) {
+		var timer = registry.find(RepositoryMetrics.METRIC_NAME).tag("method", method).tag("outcome", outcome).timer();
+		return (timer == null) ? 0 : timer.count();
+	}
+
+	@Test
+	void timesRepositoryCallsByMethodAndOutcome() {
+		String userId = UUID.randomUUID().toString();
+		long success = count("getMakerList", "success");
+		long error = count("getMakerName", "error");
+
+		intakeRepo.getMakerList(userId);
+		assertThrows(EmptyResultDataAccessException.class, () -> intakeRepo.getMakerName(userId, -1));
+
+		assertEquals(success + 1, count("getMakerList", "success"));
+		assertEquals(error + 1, count("getMakerName", "error"));
+		assertNotNull(registry.find(RepositoryMetrics.METRIC_NAME)
+				.tags("method", "getMakerName", "exception", "EmptyResultDataAccessException").timer());
+	}
+
+	@Test
+	void publishesPoolAndApplicationGauges() {
+		intakeRepo.getMakerList(UUID.randomUUID().toString());
+		assertNotNull(registry.find("hikaricp.connections.active").gauge());
+		assertNotNull(registry.find("hikaricp.connections.pending").gauge());
+		assertNotNull(registry.find("app.admission.in.flight").gauge());
+		assertNotNull(registry.find("app.cache.gets").tags("cache", "catalog", "result", "hit").functionCounter());
+	}
+}
@@ -0,0 +1,85 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.SchemaMigrator.Migration;
+
+@SpringBootTest
+class SchemaMigratorTests {
+
+	@Autowired
+	private SchemaMigrator migrator;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Test
+	void allVersionsAreRecordedOnce() {
+		List<Integer> files = SchemaMigrator.load().stream().map(Migration::version).toList();
+		assertEquals(files, jdbc.queryForList("SELECT version FROM schema_version ORDER BY version", Integer.class));
+		assertEquals(files.get(files.size() - 1), migrator.getCurrentVersion());
+	}
+
+	@Test
+	void upToDateBootIssuesNoDdl() {
+		// このテストのコンテキストで適用済みのDBに、もう1つのインスタンスを起動する
+		try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(CalorieCheckerApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("spring.main.banner-mode=off")
+				.run()) {
+			SchemaMigrator second = ctx.getBean(SchemaMigrator.class);
+			assertEquals(0, second.getExecutedStatements());
+			assertEquals(migrator.getCurrentVersion(), second.getCurrentVersion());
+		}
+
+		// 最新かどうかの確認は参照2回だけ
+		SqlStats stats = SqlStats.begin();
+		try {
+			assertEquals(0, migrator.migrate());
+		} finally {
+			SqlStats.end();
+		}
+		assertEquals(2, stats.getStatements());
+	}
+
+	@Test
+	void splitsOnlyOnSemicolonsOutsideQuotesAndComments() {
+		List<String> statements = SchemaMigrator.split("""
+				-- comment; not a statement
+				CREATE TABLE t (a text DEFAULT 'x;y''z', "b;c" integer);
+				/* block; comment */
+				CREATE FUNCTION f() RETURNS trigger LANGUAGE plpgsql AS $$
+				BEGIN
+				    RETURN NEW; -- inside the body
+				END
+				$$;
+				CREATE FUNCTION g(integer) RETURNS text LANGUAGE sql AS $body$ SELECT 'a;b' || $1 $body$;
+				""");
+
+		assertEquals(3, statements.size());
+		assertEquals("CREATE TABLE t (a text DEFAULT 'x;y''z', \"b;c\" integer)", statements.get(0));
+		assertTrue(statements.get(1).contains("RETURN NEW; -- inside the body"));
+		assertTrue(statements.get(2).endsWith("$body$"));
+	}
+
+	@Test
+	void onlyMarkedFilesRunOutsideATransaction() {
+		for (Migration migration : SchemaMigrator.load()) {
+			boolean concurrently = migration.script().contains("CONCURRENTLY");
+			assertEquals(!concurrently, migration.transactional(), "V" + migration.version());
+		}
+		assertFalse(new Migration(9, "x", "-- no-transaction\nCREATE INDEX CONCURRENTLY i ON t(a);", 0).transactional());
+	}
+}
@@ -0,0 +1,169 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.http.Cookie;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.example.demo.HomeController.IntakeRow;
+import com.example.demo.HomeController.NutritionRow;
+
+/*
+ * 	画面ごとのSQLの件数が@SqlBudgetを超えていないかを確かめる
+ * 	（キャッシュを空にしてから1画面ずつ表示し、Server-Timingヘッダーの件数を比べる）
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SqlBudgetTests {
+
+	private static final Pattern STATEMENTS = Pattern.compile("statements=(\\d+)");
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	@Qualifier("requestMappingHandlerMapping")
+	private RequestMappingHandlerMapping handlerMapping;
+
+	@Autowired
+	private IntakeRepository intakeRepo;
+
+	@Autowired
+	private IntakeService intakeSvc;
+
+	@Autowired
+	private UserIdCache userIdCache;
+
+	@Autowired
+	private FavoriteCache favoriteCache;
+
+	@Autowired
+	private CatalogCache catalogCache;
+
+	@Autowired
+	private HistoryCache historyCache;
+
+	private static long statements(MvcResult result) {
+		String header = result.getResponse().getHeader(SqlStatsFilter.HEADER);
+		assertNotNull(header, result.getRequest().getRequestURI() + " にServer-Timingがありません");
+		Matcher m = STATEMENTS.matcher(header);
+		assertTrue(m.find(), header);
+		return Long.parseLong(m.group(1));
+	}
+
+	@Test
+	void serverTimingDoesNotDependOnTheDefaultLocale() {
+		// 小数点がカンマになるロケールでも「dur=1.500」の形で出す
+		Locale saved = Locale.getDefault();
+		Locale.setDefault(Locale.GERMANY);
+		try {
+			assertEquals("sql;desc=\"statements=0\";dur=0.000, total;dur=1.500",
+					SqlStats.begin().toServerTiming(1_500_000));
+		} finally {
+			SqlStats.end();
+			Locale.setDefault(saved);
+		}
+	}
+
+	@Test
+	void everyUserPageDeclaresABudget() {
+		List<String> missing = new ArrayList<>();
+		for (Map.Entry<RequestMappingInfo, HandlerMethod> e : handlerMapping.getHandlerMethods().entrySet()) {
+			HandlerMethod handler = e.getValue();
+			boolean get = e.getKey().getMethodsCondition().getMethods().contains(RequestMethod.GET);
+			boolean manage = e.getKey().getPatternValues().stream().anyMatch(p -> p.startsWith("/manage"));
+			if (handler.getBeanType() == HomeController.class && get && !manage
+					&& !handler.hasMethodAnnotation(SqlBudget.class)) {
+				missing.add(e.getKey().getPatternValues().toString());
+			}
+		}
+		assertEquals(List.of(), missing);
+	}
+
+	@Test
+	void pagesStayWithinTheirStatementBudget() throws Exception {
+		String userId = UUID.randomUUID().toString();
+		intakeRepo.registUserId(userId);
+		int makerId = intakeSvc.insFoodMaker(userId, "テストメーカー");
+		int foodId = intakeSvc.insFood(userId, "テスト食品", makerId);
+		intakeSvc.insNutrition(userId, "普通", foodId, 200, 10.0, 5.0, 20.0, 0.5);
+		long nutritionId = intakeRepo.getNutritionListAll(userId).get(0).nutritionId();
+		intakeSvc.insIntake(userId, nutritionId, new BigDecimal("1.0"));
+		intakeSvc.insIntakeOnce(userId, "おにぎり", 181, 1.0, 1.0, 1.0, 0.1);
+		intakeSvc.insFavorite(userId, nutritionId);
+
+		LocalDate today = LocalDate.now();
+		List<IntakeRow> records = intakeRepo.getDailyRecords(userId, today);
+		long intakeId = records.stream().filter(r -> r.intakeOnceId() == 0).findFirst().orElseThrow().intakeId();
+		long intakeOnceId = records.stream().filter(r -> r.intakeOnceId() != 0).findFirst().orElseThrow().intakeOnceId();
+
+		List<String> pages = List.of(
+				"/", "/?date=" + today.minusDays(1), "/daily/detail?date=" + today,
+				"/history/week", "/history/month?month=" + today.minusMonths(1).toString().substring(0, 7),
+				"/history/range?from=" + today.minusDays(30) + "&to=" + today.minusDays(1),
+				"/info", "/howto", "/menu", "/eat/menu", "/makers/new", "/import",
+				"/intake/detail?intakeId=" + intakeId + "&date=" + today,
+				"/intake_once/detail?intakeOnceId=" + intakeOnceId + "&date=" + today,
+				"/intake/edit?intakeId=" + intakeId + "&date=" + today,
+				"/intake_once/edit?intakeOnceId=" + intakeOnceId + "&date=" + today,
+				"/eat", "/eat/foods?makerId=" + makerId, "/eat/nutritions?foodId=" + foodId,
+				"/foods/new", "/nutritions/new", "/list/maker", "/list/food", "/list/food/to/eat", "/list/nutrition",
+				"/edit/maker?makerId=" + makerId, "/edit/food?foodId=" + foodId,
+				"/nutrition/detail?nutritionId=" + nutritionId, "/edit/nutrition?nutritionId=" + nutritionId);
+
+		List<String> over = new ArrayList<>();
+		for (String page : pages) {
+			// キャッシュが空の状態（一番SQLが多い状態）で数える
+			userIdCache.invalidate(List.of(userId));
+			favoriteCache.invalidate(userId);
+			catalogCache.invalidate(userId);
+			historyCache.invalidateAll();
+
+			MvcResult result = mvc.perform(get(page).cookie(new Cookie("cc_uid", userId))).andReturn();
+			assertEquals(200, result.getResponse().getStatus(), page);
+			SqlBudget budget = ((HandlerMethod) result.getHandler()).getMethodAnnotation(SqlBudget.class);
+			long count = statements(result);
+			if (count > budget.value()) {
+				over.add(page + "：" + count + "件（上限" + budget.value() + "件）");
+			}
+		}
+		assertEquals(List.of(), over);
+
+		// 初回アクセス（ユーザー登録あり）も上限内
+		assertTrue(statements(mvc.perform(get("/")).andReturn()) <= 3);
+
+		// 版の確認と、合計カロリー・PFCの合計（daily_summaryの同じ行なので1回で読む）
+		MvcResult detail = mvc.perform(get("/daily/detail?date=" + today).cookie(new Cookie("cc_uid", userId))).andReturn();
+		assertEquals(2, statements(detail));
+
+		for (NutritionRow n : intakeRepo.getNutritionListAll(userId)) {
+			intakeSvc.delNutritionWithFavorites(userId, n.nutritionId());
+		}
+		intakeSvc.delFoodWithFavorites(userId, foodId);
+		intakeSvc.delMakerWithFavorites(userId, makerId);
+	}
+}
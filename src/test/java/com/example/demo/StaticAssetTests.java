@@ -0,0 +1,59 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class StaticAssetTests {
+
+	private static final Pattern CSS = Pattern.compile("/css/base-[0-9a-f]{32}\\.css");
+	private static final Pattern ICON = Pattern.compile("/apple-touch-icon-[0-9a-f]{32}\\.png");
+
+	@Autowired
+	private MockMvc mvc;
+
+	private static String find(Pattern pattern, String html) {
+		Matcher m = pattern.matcher(html);
+		assertTrue(m.find(), pattern.pattern());
+		return m.group();
+	}
+
+	@Test
+	void templatesLinkToHashedUrlsServedAsImmutable() throws Exception {
+		String html = mvc.perform(get("/howto")).andReturn().getResponse().getContentAsString();
+		assertFalse(html.contains("href=\"/css/base.css"));
+
+		for (String url : new String[] { find(CSS, html), find(ICON, html) }) {
+			MvcResult result = mvc.perform(get(url)).andReturn();
+			assertEquals(200, result.getResponse().getStatus(), url);
+			assertEquals(StaticCacheControlFilter.IMMUTABLE, result.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+		}
+	}
+
+	@Test
+	void otherStaticUrlsAreRevalidated() throws Exception {
+		MvcResult plain = mvc.perform(get("/css/base.css")).andReturn();
+		assertEquals(200, plain.getResponse().getStatus());
+		assertEquals(StaticCacheControlFilter.REVALIDATE, plain.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+
+		// 存在しないハッシュは404で、長期間キャッシュさせない
+		MvcResult missing = mvc.perform(get("/css/base-00000000000000000000000000000000.css")).andReturn();
+		assertEquals(404, missing.getResponse().getStatus());
+		assertNull(missing.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+	}
+}